@@ -2,15 +2,53 @@ package Controller;
 
 import Model.Account;
 import Model.Message;
+import Model.MessageBatchResult;
+import Model.MessageCursor;
+import Model.MessagePage;
+import Model.MessageSearchResult;
 import Service.AccountService;
 import Service.MessageService;
+import Util.BoundedCache;
+import Util.ConnectionPool;
+import Util.ConnectionUtil;
+import Util.DatabaseExecutor;
+import Util.DatabaseGate;
+import Util.ExecutionMode;
+import Util.JsonCodec;
+import Util.Metrics;
+import Util.ResponseCompression;
+import Util.Span;
+import Util.Trace;
+import Util.Tracer;
+import Util.WireFormat;
 
+import DAO.MessageStore;
+import DAO.MeteredAccountDAO;
+import DAO.MeteredMessageDAO;
+import DAO.RowConsumer;
+import DAO.SqlExecutor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HandlerType;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 /**
  * TODO: You will need to write your own endpoints and handlers for your controller. The endpoints you will need can be
@@ -19,56 +57,195 @@ import io.javalin.http.Context;
  */
 public class SocialMediaController {
 
+    /**
+     * Page size for GET /messages when a page is requested without a limit.
+     */
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    /**
+     * The largest page GET /messages will return.
+     */
+    private static final int MAX_PAGE_SIZE = Integer.getInteger("api.messages.maxLimit", 1000);
+    /**
+     * The most messages POST /messages/batch accepts in one request.
+     */
+    private static final int MAX_BATCH_SIZE = Integer.getInteger("api.messages.maxBatchSize", 10000);
+
+    /**
+     * Whether the list endpoints stream their results unless a request says otherwise with ?stream=false.
+     * Requests can always opt in with ?stream=true.
+     */
+    private static final boolean STREAM_BY_DEFAULT = Boolean.getBoolean("api.streaming");
+
+    /**
+     * A request carrying this header is traced whatever the trace.sampleRate, and gets its trace id back in
+     * X-Trace-Id.
+     */
+    private static final String TRACE_HEADER = "X-Trace";
+
+    /**
+     * The Cache-Control header sent alongside ETags. The default has caches revalidate every time, which costs a 304
+     * without touching the database; an empty api.cacheControl sends no header.
+     */
+    private static final String CACHE_CONTROL = System.getProperty("api.cacheControl", "no-cache");
+
+    /**
+     * In ExecutionMode.ASYNC, how many database calls may wait for one of the executor's api.async.threads threads
+     * (by default one per pooled connection) before requests are turned away with a 503, and how many seconds those
+     * responses ask the client to wait in their Retry-After header.
+     */
+    private static final int ASYNC_QUEUE_SIZE = Integer.getInteger("api.async.queueSize", 1000);
+    private static final int RETRY_AFTER_SECONDS = Integer.getInteger("api.async.retryAfterSeconds", 1);
+
+    /**
+     * The context attribute holding the future a handler's response is waiting on, when it is not written before the
+     * handler returns.
+     */
+    private static final String PENDING_RESPONSE = "pendingResponse";
+
     AccountService accountService;
     MessageService messageService;
+    /**
+     * The shared JSON codec, registered as Javalin's JsonMapper. Handlers read and write through the cached readers
+     * and writers of the codec for the request's WireFormat instead of building an ObjectMapper per request.
+     */
+    JsonCodec jsonCodec = JsonCodec.getInstance();
+    /**
+     * Limits how many connections are borrowed at once when handlers run on virtual threads, null otherwise.
+     */
+    DatabaseGate databaseGate;
+    /**
+     * How handlers run, from api.executionMode.
+     */
+    ExecutionMode executionMode;
+    /**
+     * Runs the services' database calls: on its own threads in ExecutionMode.ASYNC, otherwise on the handler's.
+     */
+    DatabaseExecutor databaseExecutor;
+    /**
+     * Route and DAO latencies, and everything else served at GET /metrics.
+     */
+    Metrics metrics = new Metrics();
+    /**
+     * How response bodies are compressed, from api.compression, api.compression.minSize and api.compression.level.
+     */
+    ResponseCompression compression = ResponseCompression.fromSystemProperties();
+    /**
+     * Serialized, and once asked for compressed, bodies of the unpaged message lists, keyed by path and ETag, so
+     * repeat requests for a list that has not changed skip the database, serialization and compression. A changed
+     * list gets a new ETag, and so a new key; the old entry is never read again and ages out. Sized and timed with
+     * cache.responses.capacity and cache.responses.ttlMillis.
+     */
+    BoundedCache<String, EncodedResponse> responseCache = new BoundedCache<>(
+            Integer.getInteger("cache.responses.capacity", 256),
+            Long.getLong("cache.responses.ttlMillis", 60000));
 
     public SocialMediaController(){
-        this.accountService = new AccountService();
-        this.messageService = new MessageService();
+        this.executionMode = ExecutionMode.fromSystemProperties();
+        this.databaseExecutor = executionMode == ExecutionMode.ASYNC
+                ? new DatabaseExecutor(Integer.getInteger("api.async.threads", ConnectionUtil.getPool().getMaxSize()),
+                        ASYNC_QUEUE_SIZE)
+                : DatabaseExecutor.inline();
+        this.accountService = new AccountService(new MeteredAccountDAO(metrics), databaseExecutor);
+        this.messageService = new MessageService(
+                new MeteredMessageDAO(MessageStore.fromSystemProperties().createDAO(), metrics), accountService,
+                databaseExecutor);
     }
 
     /**
      * In order for the test cases to work, you will need to write the endpoints in the startAPI() method, as the test
      * suite must receive a Javalin object from this method.
+     *
+     * With api.executionMode=VIRTUAL, handlers run on virtual threads and borrow their connections through a
+     * DatabaseGate sized to the connection pool. With api.executionMode=ASYNC, handlers hand their database calls to the DatabaseExecutor and
+     * their responses are written once those complete, without holding a server thread; when the executor is
+     * saturated requests get a 503 with a Retry-After header.
+     *
+     * Every route is timed, and GET /metrics serves those timings along with the DAO, connection pool and cache
+     * numbers in the Prometheus text format. Sampled requests are also traced, and GET /admin/traces serves the most
+     * recent traces.
      * @return a Javalin app object which defines the behavior of the Javalin controller.
      */
     public Javalin startAPI() {
-        Javalin app = Javalin.create();
+        if (executionMode == ExecutionMode.VIRTUAL){
+            databaseGate = new DatabaseGate(ConnectionUtil.getPool().getMaxSize());
+            ConnectionUtil.getPool().setGate(databaseGate);
+        }
+
+        Javalin app = Javalin.create(config -> {
+            config.jsonMapper(jsonCodec);
+            //responses are compressed by writeBody and streamArray, which know when a body is worth it
+            config.compression.none();
+            if (executionMode == ExecutionMode.VIRTUAL){
+                config.jetty.server(() -> new Server(virtualThreadPool()));
+            }
+        });
+
+        //stopping the server stops the services' background threads, so restarting the API leaks none of them
+        app.events(event -> event.serverStopped(() -> {
+            messageService.shutdown();
+            databaseExecutor.shutdown();
+            if (databaseGate != null){
+                ConnectionUtil.getPool().setGate(null);
+            }
+        }));
+
+        //the database executor is too busy to take more work
+        app.exception(RejectedExecutionException.class, (e, ctx) -> {
+            ctx.status(503);
+            ctx.header("Retry-After", Integer.toString(RETRY_AFTER_SECONDS));
+        });
 
         //////////////////////
         /* ACCOUNT HANDLERS */
         //////////////////////
 
         //get all accounts
-        app.get("/accounts", this::getAllAccountsHandler);
+        handle(app, HandlerType.GET, "/accounts", this::getAllAccountsHandler);
         
         //create new account
-        app.post("/register", this::addAccountHandler);
+        handle(app, HandlerType.POST, "/register", this::addAccountHandler);
         
         //login to an account
-        app.post("/login", this::loginAccountHandler);
+        handle(app, HandlerType.POST, "/login", this::loginAccountHandler);
 
         //////////////////////
         /* MESSAGE HANDLERS */
         //////////////////////
 
         //get all messages
-        app.get("/messages", this::getAllMessagesHandler);
+        handle(app, HandlerType.GET, "/messages", this::getAllMessagesHandler);
         
+        //search messages by keywords (registered before /messages/{message_id} so "search" is not taken for an id)
+        handle(app, HandlerType.GET, "/messages/search", this::searchMessagesHandler);
+
         //get a message by message ID
-        app.get("/messages/{message_id}", this::getMessageByIdHandler);
+        handle(app, HandlerType.GET, "/messages/{message_id}", this::getMessageByIdHandler);
         
         //get all the messages posted by an account
-        app.get("/accounts/{account_id}/messages", this::getAllMessagesOfAccountHandler);
+        handle(app, HandlerType.GET, "/accounts/{account_id}/messages", this::getAllMessagesOfAccountHandler);
         
         //post messages
-        app.post("/messages", this::postMessageHandler);
+        handle(app, HandlerType.POST, "/messages", this::postMessageHandler);
+
+        //post many messages at once
+        handle(app, HandlerType.POST, "/messages/batch", this::postMessagesBatchHandler);
 
         //update message text
-        app.patch("/messages/{message_id}", this::updateMessageHandler);
+        handle(app, HandlerType.PATCH, "/messages/{message_id}", this::updateMessageHandler);
         
         //delete a message
-        app.delete("/messages/{message_id}", this::deleteMessageHandler);
+        handle(app, HandlerType.DELETE, "/messages/{message_id}", this::deleteMessageHandler);
+
+        //////////////////////
+        /*    MONITORING    */
+        //////////////////////
+
+        //scrape metrics (not timed itself, and never waits for the database gate)
+        registerMetrics();
+        app.get("/metrics", this::metricsHandler);
+
+        //inspect recently traced requests
+        app.get("/admin/traces", this::tracesHandler);
 
         return app;
     }
@@ -79,9 +256,13 @@ public class SocialMediaController {
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin. It will
      *            be available to this method automatically thanks to the app.put method.
      */
-    private void getAllAccountsHandler(Context ctx) {
-        List<Account> accounts = accountService.getAllAccounts();
-        ctx.json(accounts);
+    private void getAllAccountsHandler(Context ctx) throws Exception {
+        if (streaming(ctx)){
+            streamArray(ctx, accountService::streamAllAccounts);
+            return;
+        }
+        respond(ctx, accountService.getAllAccountsAsync(),
+                accounts -> writeValue(ctx, JsonCodec::getAccountListWriter, accounts));
     }
 
     /**
@@ -90,21 +271,26 @@ public class SocialMediaController {
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin. It will
      *            be available to this method automatically thanks to the app.put method.
      */
-    private void addAccountHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        Account account = mapper.readValue(ctx.body(), Account.class);
+    private void addAccountHandler(Context ctx) throws Exception {
+        Account account = readValue(ctx, JsonCodec::getAccountReader);
         
         //username is not blank and
-        //the password is at least 4 characters long and
-        //and an Account with that username does not already exist.
-        System.out.println(accountService.getAccountByUsername(account));
+        //the password is at least 4 characters long
         if (account.getUsername() != "" &&
-            account.getPassword().length() > 3 &&
-            accountService.getAccountByUsername(account) == null){
-                
+            account.getPassword().length() > 3){
+
+                //and an Account with that username does not already exist:
                 //add account and return it through context
-                Account addedAccount = accountService.addAccount(account);
-                ctx.json(mapper.writeValueAsString(addedAccount));
+                CompletableFuture<Account> added = accountService.getAccountByUsernameAsync(account)
+                        .thenCompose(existing -> existing == null
+                                ? accountService.addAccountAsync(account)
+                                : CompletableFuture.completedFuture(null));
+                respond(ctx, added, addedAccount -> {
+                    if (addedAccount != null){
+                        writeValue(ctx, JsonCodec::getAccountWriter, addedAccount);
+                    }
+                    else{ ctx.status(400); }
+                });
         }
         else{
             ctx.status(400);
@@ -116,29 +302,111 @@ public class SocialMediaController {
      * 
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin. It will
      *            be available to this method automatically thanks to the app.put method.
-     * @throws JsonProcessingException
+     * @throws IOException
      */
-    private void loginAccountHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
+    private void loginAccountHandler(Context ctx) throws Exception {
+        Account account = readValue(ctx, JsonCodec::getAccountReader);
+        respond(ctx, accountService.getAccountByUsernameAndPasswordAsync(account), loggedAccount -> {
+            if(loggedAccount == null){ ctx.status(401); }
+            else{
+                writeValue(ctx, JsonCodec::getAccountWriter, loggedAccount);
+            }
+        });
+    }
 
-        Account account = mapper.readValue(ctx.body(), Account.class);
-        Account loggedAccount = accountService.getAccountByUsernameAndPassword(account);
+    /**
+     * Handler to retrieve all messages.
+     *
+     * If any of the query parameters limit, after, since or until are given, only one page of messages is returned,
+     * ordered by time_posted_epoch and then message_id:
+     *  limit: the most messages to return (default 100, at most api.messages.maxLimit)
+     *  after: the cursor token of the previous page
+     *  since/until: only messages with since <= time_posted_epoch < until
+     * The cursor for the following page is sent back in the X-Next-Cursor header, which is left out on the last page.
+     * 
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin. It will
+     *            be available to this method automatically thanks to the app.put method.
+     */
+    private void getAllMessagesHandler(Context ctx) throws Exception {
+        //without any paging parameters, keep returning the whole feed
+        if (ctx.queryParam("limit") == null && ctx.queryParam("after") == null &&
+            ctx.queryParam("since") == null && ctx.queryParam("until") == null){
+            //read the feed's version before the messages, so the ETag is never newer than the body
+            String etag = messageService.getAllMessagesETag();
+            if (notModified(ctx, etag)){
+                return;
+            }
+            if (streaming(ctx)){
+                streamArray(ctx, messageService::streamAllMessages);
+                return;
+            }
+            respondCached(ctx, "/messages", etag, messageService::getAllMessagesAsync,
+                    JsonCodec::getMessageListWriter);
+            return;
+        }
 
-        if(loggedAccount == null){ ctx.status(401); }
-        else{
-            ctx.json(mapper.writeValueAsString(loggedAccount));
+        int limit;
+        long since;
+        long until;
+        MessageCursor after;
+        try {
+            limit = ctx.queryParam("limit") == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(ctx.queryParam("limit"));
+            since = ctx.queryParam("since") == null ? Long.MIN_VALUE : Long.parseLong(ctx.queryParam("since"));
+            until = ctx.queryParam("until") == null ? Long.MAX_VALUE : Long.parseLong(ctx.queryParam("until"));
+            after = ctx.queryParam("after") == null ? null : MessageCursor.decode(ctx.queryParam("after"));
+        }
+        catch (IllegalArgumentException e){
+            ctx.status(400);
+            return;
         }
+
+        //the limit has to be positive and no bigger than the configured maximum
+        if (limit < 1 || limit > MAX_PAGE_SIZE){
+            ctx.status(400);
+            return;
+        }
+
+        respond(ctx, messageService.getMessagesPageAsync(since, until, after, limit), page -> {
+            if (page.getNext_cursor() != null){
+                ctx.header("X-Next-Cursor", page.getNext_cursor().encode());
+            }
+            writeValue(ctx, JsonCodec::getMessageListWriter, page.getMessages());
+        });
     }
 
     /**
-     * Handler to retrieve all messages.
-     * 
+     * Handler to search messages by keywords in their message_text, best match first.
+     *  q: the search terms, required; a message matches if it holds any of them
+     *  limit: the most messages to return (default 100, at most api.messages.maxLimit)
+     *  offset: how many of the best matches to skip (default 0)
+     * The number of matching messages across all pages is sent back in the X-Total-Count header.
+     *
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin. It will
      *            be available to this method automatically thanks to the app.put method.
      */
-    private void getAllMessagesHandler(Context ctx) {
-        List<Message> messages = messageService.getAllMessages();
-        ctx.json(messages);
+    private void searchMessagesHandler(Context ctx) throws Exception {
+        String query = ctx.queryParam("q");
+        int limit;
+        int offset;
+        try {
+            limit = ctx.queryParam("limit") == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(ctx.queryParam("limit"));
+            offset = ctx.queryParam("offset") == null ? 0 : Integer.parseInt(ctx.queryParam("offset"));
+        }
+        catch (NumberFormatException e){
+            ctx.status(400);
+            return;
+        }
+
+        //there has to be something to search for, and the page has to make sense
+        if (query == null || query.isBlank() || limit < 1 || limit > MAX_PAGE_SIZE || offset < 0){
+            ctx.status(400);
+            return;
+        }
+
+        respond(ctx, messageService.searchMessagesAsync(query, offset, limit), result -> {
+            ctx.header("X-Total-Count", Integer.toString(result.getTotal_matches()));
+            writeValue(ctx, JsonCodec::getMessageListWriter, result.getMessages());
+        });
     }
 
     /**
@@ -147,9 +415,7 @@ public class SocialMediaController {
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin. It will
      *            be available to this method automatically thanks to the app.put method.
      */
-    private void getMessageByIdHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-
+    private void getMessageByIdHandler(Context ctx) throws Exception {
         /* Get message id from path /messages/{message_id} */
 
         //get the index where the last slash appears
@@ -167,13 +433,19 @@ public class SocialMediaController {
         //turn the substring into an integer
         int message_id = Integer.parseInt(id);
 
+        //answer from the message's version alone if the client already has it
+        if (notModified(ctx, messageService.getMessageETag(message_id))){
+            return;
+        }
+
         //get the target message
-        Message targetMessage = messageService.getMessageById(message_id);
+        respond(ctx, messageService.getMessageByIdAsync(message_id), targetMessage -> {
 
-        //if the message exists, return it through the context
-        if (targetMessage != null){
-            ctx.json(mapper.writeValueAsString(targetMessage));
-        }
+            //if the message exists, return it through the context
+            if (targetMessage != null){
+                writeValue(ctx, JsonCodec::getMessageWriter, targetMessage);
+            }
+        });
     }
 
     /**
@@ -181,24 +453,45 @@ public class SocialMediaController {
      * 
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
      */
-    private void postMessageHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        Message message = mapper.readValue(ctx.body(), Message.class);
-        Message addedMessage = messageService.addMessage(message);
-        
-        //the posted message is not null and
+    private void postMessageHandler(Context ctx) throws Exception {
+        Message message = readValue(ctx, JsonCodec::getMessageReader);
+
         //message_text is not blank and
         //is under 255 characters and
         //posted_by refers to a real, existing user.
-        if (addedMessage != null &&
-            message.getMessage_text() != "" &&
-            message.getMessage_text().length() < 255 &&
-            accountService.getAccountById(message.getPosted_by()) != null){
-            
-            //add the message
-            ctx.json(mapper.writeValueAsString(addedMessage));
+        //then add the message
+        CompletableFuture<Message> added = messageService.validateMessageAsync(message)
+                .thenCompose(error -> error == null
+                        ? messageService.addMessageAsync(message)
+                        : CompletableFuture.completedFuture(null));
+        respond(ctx, added, addedMessage -> {
+            if (addedMessage != null){
+                writeValue(ctx, JsonCodec::getMessageWriter, addedMessage);
+            }
+            else{ ctx.status(400); }
+        });
+    }
+
+    /**
+     * Handler to post many messages at once. The body is a JSON array of messages. Every message is validated the
+     * same way as in postMessageHandler, and the valid ones are stored together in one transaction.
+     *
+     * Responds with one result per message, in request order, giving either the generated message_id or the
+     * reason the message was rejected. An empty array, or one with more than api.messages.maxBatchSize entries,
+     * is rejected as a whole with a 400.
+     *
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     */
+    private void postMessagesBatchHandler(Context ctx) throws Exception {
+        List<Message> messages = readValue(ctx, JsonCodec::getMessageListReader);
+
+        if (messages == null || messages.isEmpty() || messages.size() > MAX_BATCH_SIZE){
+            ctx.status(400);
+            return;
         }
-        else{ ctx.status(400); }
+
+        respond(ctx, messageService.addMessagesAsync(messages),
+                results -> writeValue(ctx, JsonCodec::getBatchResultListWriter, results));
     }
 
     /**
@@ -206,11 +499,9 @@ public class SocialMediaController {
      *
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin. It will
      *            be available to this method automatically thanks to the app.put method.
-     * @throws JsonProcessingException will be thrown if there is an issue converting JSON into an object.
+     * @throws IOException will be thrown if there is an issue converting JSON into an object.
      */
-    private void updateMessageHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-
+    private void updateMessageHandler(Context ctx) throws Exception {
         /* Get message id from path /messages/{message_id} */
 
         //get the index where the last slash appears
@@ -228,26 +519,27 @@ public class SocialMediaController {
         //turn the substring into an integer
         int message_id = Integer.parseInt(id);
 
-        //get the message with a matching id
-        Message targetMessage = messageService.getMessageById(message_id);
-
         //get the updated message information
-        Message message = mapper.readValue(ctx.body(), Message.class);
+        Message message = readValue(ctx, JsonCodec::getMessageReader);
 
         /* Update the message */
 
-        //make sure the message exists and
-        //the new message_text is not blank and
+        //make sure the new message_text is not blank and
         //the new message_text is not over 255 characters
-        if (targetMessage != null &&
-            message.getMessage_text() != "" &&
+        if (message.getMessage_text() != "" &&
             message.getMessage_text().length() < 255){
 
-                //write the updated message into the database
-                Message updatedMessage = messageService.updateMessage(message_id, message);
+                //write the updated message into the database, which only finds a row
+                //if a message with a matching id exists
+                CompletableFuture<Message> updated = messageService.updateMessageAsync(message_id, message);
 
                 //write the updated message into the return body
-                ctx.json(mapper.writeValueAsString(updatedMessage));
+                respond(ctx, updated, updatedMessage -> {
+                    if (updatedMessage != null){
+                        writeValue(ctx, JsonCodec::getMessageWriter, updatedMessage);
+                    }
+                    else{ ctx.status(400); }
+                });
             }
         else{ ctx.status(400); }
     }
@@ -258,9 +550,7 @@ public class SocialMediaController {
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin. It will
      *            be available to this method automatically thanks to the app.put method.
      */
-    private void deleteMessageHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        
+    private void deleteMessageHandler(Context ctx) throws Exception {
         /* Get message id from path /messages/{message_id} */
 
         //get the index where the last slash appears
@@ -278,26 +568,27 @@ public class SocialMediaController {
         //turn the substring into an integer
         int message_id = Integer.parseInt(id);
 
-        //get the target message
-        Message targetMessage = messageService.getMessageById(message_id);
+        //delete the target message, getting it back if it existed
+        CompletableFuture<Message> deleted = messageService.deleteMessageAsync(message_id);
 
-        //if the message exists, return it through the context and delete it
-        if (targetMessage != null){
-            /* Tried to turn this into one line, but this works just as well */
-            ctx.json(mapper.writeValueAsString(targetMessage));
-            messageService.deleteMessage(targetMessage);
-        }
+        //if the message existed, return it through the context
+        respond(ctx, deleted, targetMessage -> {
+            if (targetMessage != null){
+                writeValue(ctx, JsonCodec::getMessageWriter, targetMessage);
+            }
+        });
     }
 
     /**
-     * TODO: Handler to retrieve all messages of an account
+     * TODO: Handler to retrieve all messages of an account, newest first.
+     * A single page can be asked for instead:
+     *  limit: the most messages to return (at most api.messages.maxLimit)
+     *  offset: how many of the newest messages to skip (default 0)
      * 
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin. It will
      *            be available to this method automatically thanks to the app.put method.
      */
-    private void getAllMessagesOfAccountHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-
+    private void getAllMessagesOfAccountHandler(Context ctx) throws Exception {
         /* Get account id from path /accounts/{account_id}/messages */
 
         //get the indexes where the account number appears
@@ -320,10 +611,498 @@ public class SocialMediaController {
         //turn the substring into an integer
         int account_id = Integer.parseInt(id);
 
-        //get the messages
-        List<Message> messages = messageService.getMessagesByAccount(account_id);
-        
-        //return the messages through the context body
-        ctx.json(messages);
+        //read the account's version before its messages, so the ETag is never newer than the body
+        String etag = messageService.getMessagesByAccountETag(account_id);
+
+        //stream the messages straight into the context body if asked to
+        if (streaming(ctx)){
+            if (notModified(ctx, etag)){
+                return;
+            }
+            this.<Message>streamArray(ctx, consumer -> messageService.streamMessagesByAccount(account_id, consumer));
+            return;
+        }
+
+        //get one page of the messages if asked to
+        if (ctx.queryParam("limit") != null || ctx.queryParam("offset") != null){
+            int limit;
+            int offset;
+            try {
+                limit = ctx.queryParam("limit") == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(ctx.queryParam("limit"));
+                offset = ctx.queryParam("offset") == null ? 0 : Integer.parseInt(ctx.queryParam("offset"));
+            }
+            catch (NumberFormatException e){
+                ctx.status(400);
+                return;
+            }
+            if (limit < 1 || limit > MAX_PAGE_SIZE || offset < 0){
+                ctx.status(400);
+                return;
+            }
+            if (notModified(ctx, etag)){
+                return;
+            }
+            respond(ctx, messageService.getMessagesByAccountAsync(account_id, offset, limit),
+                    list -> writeValue(ctx, JsonCodec::getMessageListWriter, list));
+            return;
+        }
+
+        //otherwise all of them, which is the list asked for again and again, so it is served from the response cache
+        if (notModified(ctx, etag)){
+            return;
+        }
+        respondCached(ctx, "/accounts/" + account_id + "/messages", etag,
+                () -> messageService.getMessagesByAccountAsync(account_id), JsonCodec::getMessageListWriter);
+    }
+
+    /**
+     * Handler to serve the metrics in the Prometheus text format.
+     *
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin. It will
+     *            be available to this method automatically thanks to the app.put method.
+     */
+    private void metricsHandler(Context ctx) throws IOException {
+        ctx.contentType("text/plain; version=0.0.4; charset=utf-8");
+        writeBody(ctx, metrics.scrape().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Handler to retrieve the most recently traced requests, newest first.
+     *
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin. It will
+     *            be available to this method automatically thanks to the app.put method.
+     */
+    private void tracesHandler(Context ctx) throws IOException {
+        int limit;
+        long minMillis;
+        try {
+            limit = ctx.queryParam("limit") == null ? 20 : Integer.parseInt(ctx.queryParam("limit"));
+            minMillis = ctx.queryParam("minMillis") == null ? 0 : Long.parseLong(ctx.queryParam("minMillis"));
+        }
+        catch (NumberFormatException e){
+            ctx.status(400);
+            return;
+        }
+        if (limit < 1){
+            ctx.status(400);
+            return;
+        }
+        List<Trace> traces = Tracer.getRecentTraces(limit, minMillis);
+        writeValue(ctx, codec -> codec.getMapper().writer(), traces);
+    }
+
+    /**
+     * Register a route. The handler is timed, with its in-flight requests, status classes and exceptions counted,
+     * under the route's method and path. Sampled
+     * requests are traced under the same name.
+     */
+    private void handle(Javalin app, HandlerType method, String path, Handler handler) {
+        Metrics.Route route = metrics.route(method.name(), path);
+        String traceName = method.name() + " " + path;
+        app.addHandler(method, path, ctx -> {
+            long start = System.nanoTime();
+            route.started();
+            Span trace = Tracer.startTrace(traceName, ctx.header(TRACE_HEADER) != null);
+            if (trace != Span.NOOP){
+                ctx.header("X-Trace-Id", Long.toString(Tracer.currentTraceId()));
+            }
+            Throwable failure = null;
+            try {
+                handler.handle(ctx);
+            }
+            catch (Throwable e){
+                failure = e;
+                throw e;
+            }
+            finally {
+                CompletableFuture<?> pending = failure == null ? ctx.attribute(PENDING_RESPONSE) : null;
+                if (pending == null){
+                    finished(ctx, route, trace, failure, start);
+                }
+                else {
+                    //whichever thread completes the response finishes the timing and the trace
+                    Tracer.detach();
+                    pending.whenComplete((value, e) -> finished(ctx, route, trace, e, start));
+                }
+            }
+        });
+    }
+
+    /**
+     * Record a request's status and latency, and end its trace, once its response has been written or has failed.
+     */
+    private static void finished(Context ctx, Metrics.Route route, Span trace, Throwable failure, long start) {
+        if (failure != null){ route.failed(); }
+        //an exception becomes a 500 once it leaves the handler, or a 503 if the database executor turned it away
+        int status = failure == null ? ctx.statusCode()
+                : unwrap(failure) instanceof RejectedExecutionException ? 503 : 500;
+        trace.tag("status", status);
+        trace.close();
+        route.finished(status, System.nanoTime() - start);
+    }
+
+    /**
+     * Register everything served at GET /metrics that is read from elsewhere when scraped.
+     */
+    private void registerMetrics() {
+        ConnectionPool pool = ConnectionUtil.getPool();
+        metrics.timer("db_pool_wait_duration_seconds", "Time spent waiting to borrow a database connection.", "",
+                pool.getWaitTimes());
+        metrics.counter("db_pool_acquire_failures_total", "Borrows that timed out or could not open a connection.", "",
+                pool::getAcquireFailures);
+        metrics.gauge("db_pool_connections", "Open database connections.", "", pool::size);
+        metrics.gauge("db_pool_connections_idle", "Open database connections that are not borrowed.", "",
+                pool::idleCount);
+        metrics.gauge("db_pool_connections_max", "The most database connections the pool will open.", "",
+                pool::getMaxSize);
+        metrics.counter("db_statement_cache_hits_total", "Statements found already prepared on a connection.", "",
+                pool::getStatementCacheHits);
+        metrics.counter("db_statement_cache_misses_total", "Statements that had to be prepared.", "",
+                pool::getStatementCacheMisses);
+        metrics.counter("db_errors_total", "SQL operations that failed.", "", SqlExecutor::getErrorCount);
+        if (databaseGate != null){
+            metrics.gauge("db_gate_waiting", "Borrowers waiting for the database gate.", "", databaseGate::queueLength);
+        }
+        if (executionMode == ExecutionMode.ASYNC){
+            metrics.gauge("db_executor_queued", "Database calls waiting for an executor thread.", "",
+                    databaseExecutor::queueLength);
+            metrics.gauge("db_executor_active", "Database calls running on executor threads.", "",
+                    databaseExecutor::activeCount);
+            metrics.counter("db_executor_rejected_total", "Database calls turned away because the queue was full.",
+                    "", databaseExecutor::getRejectedCount);
+        }
+
+        registerCache("messages", messageService.getMessageCache());
+        registerCache("timelines", messageService.getTimelineStore().getTimelines());
+        registerCache("accounts_by_id", accountService.getAccountsById());
+        registerCache("accounts_by_username", accountService.getAccountsByUsername());
+        registerCache("unknown_usernames", accountService.getUnknownUsernames());
+        registerCache("responses", responseCache);
+    }
+
+    private void registerCache(String name, BoundedCache<?, ?> cache) {
+        String labels = Metrics.labels("cache", name);
+        metrics.counter("cache_hits_total", "Cache lookups that found their entry.", labels, cache::getHitCount);
+        metrics.counter("cache_misses_total", "Cache lookups that did not.", labels, cache::getMissCount);
+        metrics.counter("cache_evictions_total", "Entries evicted to stay within capacity.", labels,
+                cache::getEvictionCount);
+        metrics.counter("cache_loads_total", "Missing entries loaded.", labels, cache::getLoadCount);
+        metrics.secondsCounter("cache_load_seconds_total", "Time spent loading missing entries.", labels,
+                cache::getTotalLoadNanos);
+        metrics.gauge("cache_entries", "Entries in the cache.", labels, cache::size);
+    }
+
+    /**
+     * @return Jetty's usual thread pool, set to hand each request to a new virtual thread. On a JDK without virtual
+     *         threads Jetty ignores the setting and keeps using platform threads.
+     */
+    private static QueuedThreadPool virtualThreadPool() {
+        QueuedThreadPool threadPool = new QueuedThreadPool(250, 8, 60_000);
+        threadPool.setName("JettyServerThreadPool");
+        threadPool.setUseVirtualThreads(true);
+        return threadPool;
+    }
+
+    /**
+     * Serialize a value into the response body, in the format the request accepts, with one of that format's codec's
+     * cached writers.
+     *
+     * @param ctx the context to write the value to.
+     * @param writer picks the writer for the value's type from the codec.
+     * @param value the value to write.
+     */
+    private void writeValue(Context ctx, Function<JsonCodec, ObjectWriter> writer, Object value) throws IOException {
+        JsonCodec codec = responseCodec(ctx);
+        writeBody(ctx, serialize(codec, writer.apply(codec), value));
+    }
+
+    /**
+     * @return the value serialized with one of the codec's cached writers.
+     */
+    private byte[] serialize(JsonCodec codec, ObjectWriter writer, Object value) throws IOException {
+        try (Span span = Tracer.span(codec.getFormat().getName() + ".write")) {
+            byte[] body = writer.writeValueAsBytes(value);
+            span.tag("bytes", body.length);
+            return body;
+        }
+    }
+
+    /**
+     * @return the codec for the format of the request's body, from its Content-Type. Anything that is not one of
+     *         the WireFormats is read as JSON.
+     */
+    private JsonCodec requestCodec(Context ctx) {
+        return JsonCodec.getInstance(WireFormat.fromContentType(ctx.header("Content-Type")));
+    }
+
+    /**
+     * Pick the format of the response from the request's Accept header, falling back to the format of the request's
+     * body, and set the Content-Type to match.
+     *
+     * @return the codec for the response's format.
+     */
+    private JsonCodec responseCodec(Context ctx) {
+        WireFormat format = responseFormat(ctx);
+        ctx.contentType(format.getContentType());
+        vary(ctx, "Accept");
+        return JsonCodec.getInstance(format);
+    }
+
+    private WireFormat responseFormat(Context ctx) {
+        return WireFormat.negotiate(ctx.header("Accept"), WireFormat.fromContentType(ctx.header("Content-Type")));
+    }
+
+    /**
+     * Add a request header to the ones the response's Vary header says it depends on.
+     */
+    private static void vary(Context ctx, String header) {
+        String vary = ctx.res().getHeader("Vary");
+        ctx.header("Vary", vary == null ? header : vary + ", " + header);
+    }
+
+    /**
+     * Write a response body, compressed if it is at least api.compression.minSize bytes and the request accepts one
+     * of the offered encodings.
+     */
+    private void writeBody(Context ctx, byte[] body) throws IOException {
+        writeBody(ctx, body, encoding -> compress(body, encoding));
+    }
+
+    /**
+     * Write a response body, taking its compressed form from the encoder when it is worth compressing.
+     *
+     * @param ctx the context to write the body to.
+     * @param body the uncompressed body.
+     * @param encoder gives the body compressed with an encoding.
+     */
+    private void writeBody(Context ctx, byte[] body, Function<ResponseCompression.Encoding, byte[]> encoder)
+            throws IOException {
+        if (compression.worthCompressing(body.length)){
+            vary(ctx, "Accept-Encoding");
+            ResponseCompression.Encoding encoding = compression.negotiate(ctx.header("Accept-Encoding"));
+            if (encoding != null){
+                ctx.header("Content-Encoding", encoding.getToken());
+                body = encoder.apply(encoding);
+            }
+        }
+        ctx.outputStream().write(body);
+    }
+
+    /**
+     * @return the body compressed with the encoding.
+     */
+    private byte[] compress(byte[] body, ResponseCompression.Encoding encoding) {
+        try (Span span = Tracer.span("compress")) {
+            byte[] compressed = compression.compress(body, encoding);
+            span.tag("encoding", encoding.getToken()).tag("bytes", compressed.length);
+            return compressed;
+        }
+    }
+
+    /**
+     * A serialized response body, along with the compressed forms of it that have been asked for so far.
+     */
+    private static final class EncodedResponse {
+        private final byte[] body;
+        private final AtomicReferenceArray<byte[]> encoded =
+                new AtomicReferenceArray<>(ResponseCompression.Encoding.values().length);
+
+        private EncodedResponse(byte[] body){
+            this.body = body;
+        }
+
+        /**
+         * @return the body compressed with the encoding, compressing it with the compressor on first use.
+         */
+        private byte[] encoded(ResponseCompression.Encoding encoding,
+                               Function<ResponseCompression.Encoding, byte[]> compressor){
+            byte[] bytes = encoded.get(encoding.ordinal());
+            if (bytes == null){
+                //two requests may both compress the body, but they produce the same bytes
+                bytes = compressor.apply(encoding);
+                encoded.set(encoding.ordinal(), bytes);
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Respond with a list from the response cache, or load, serialize and cache it if this version of it has not been
+     * served in the response's format yet.
+     *
+     * @param ctx the context to respond to.
+     * @param path the path the list is served at.
+     * @param etag the list's ETag, read before the list is loaded.
+     * @param loader loads the list.
+     * @param writer picks the writer for the list's type from the codec.
+     */
+    private <T> void respondCached(Context ctx, String path, String etag, Supplier<CompletableFuture<T>> loader,
+                                   Function<JsonCodec, ObjectWriter> writer) throws Exception {
+        JsonCodec codec = responseCodec(ctx);
+        String key = path + " " + codec.getFormat().getName() + " " + etag;
+        EncodedResponse cached = responseCache.getIfPresent(key);
+        if (cached != null){
+            writeBody(ctx, cached.body, encoding -> cached.encoded(encoding, e -> compress(cached.body, e)));
+            return;
+        }
+        respond(ctx, loader.get(), value -> {
+            EncodedResponse response = new EncodedResponse(serialize(codec, writer.apply(codec), value));
+            responseCache.put(key, response);
+            writeBody(ctx, response.body, encoding -> response.encoded(encoding, e -> compress(response.body, e)));
+        });
+    }
+
+    /**
+     * Parse the request body, in the format its Content-Type names, with one of that format's codec's cached readers.
+     *
+     * @param ctx the context to read the body from.
+     * @param reader picks the reader for the body's type from the codec.
+     * @return the parsed body.
+     */
+    private <T> T readValue(Context ctx, Function<JsonCodec, ObjectReader> reader) throws IOException {
+        JsonCodec codec = requestCodec(ctx);
+        try (Span span = Tracer.span(codec.getFormat().getName() + ".read")) {
+            byte[] body = ctx.bodyAsBytes();
+            span.tag("bytes", body.length);
+            return reader.apply(codec).readValue(body);
+        }
+    }
+
+    /**
+     * A query whose rows can be streamed to a consumer.
+     */
+    @FunctionalInterface
+    private interface RowSource<T> {
+        void stream(RowConsumer<T> consumer) throws IOException;
+    }
+
+    /**
+     * Set the ETag and Cache-Control headers of a response, and answer it with a 304 Not Modified if the request's
+     * If-None-Match already names that ETag. If-None-Match compares weakly, so a W/ prefix is ignored. Each
+     * WireFormat is a different representation, so formats other than JSON get their name added to the ETag.
+     *
+     * @return whether the response was answered with a 304, in which case the handler has nothing left to do.
+     */
+    private boolean notModified(Context ctx, String etag) {
+        WireFormat format = responseFormat(ctx);
+        if (format != WireFormat.JSON){
+            etag = etag.substring(0, etag.length() - 1) + "-" + format.getName() + "\"";
+        }
+        ctx.header("ETag", etag);
+        if (!CACHE_CONTROL.isEmpty()){
+            ctx.header("Cache-Control", CACHE_CONTROL);
+        }
+
+        String ifNoneMatch = ctx.header("If-None-Match");
+        if (ifNoneMatch == null){
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")){
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")){
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)){
+                ctx.status(304);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the list in this response should be streamed, from ?stream=true|false or the api.streaming
+     *         default.
+     */
+    private boolean streaming(Context ctx) {
+        String stream = ctx.queryParam("stream");
+        return stream == null ? STREAM_BY_DEFAULT : Boolean.parseBoolean(stream);
+    }
+
+    /**
+     * Write the rows of a query to the response as an array, in the format the request accepts, while the query is
+     * still being read, so memory use
+     * does not grow with the size of the result. The opening bracket is flushed straight away, so the client gets
+     * the response headers and its first bytes before the query has finished. The query runs, and writes, on the
+     * database executor.
+     *
+     * @param ctx the context to write the array to.
+     * @param source the query to stream.
+     */
+    private <T> void streamArray(Context ctx, RowSource<T> source) throws Exception {
+        JsonCodec codec = responseCodec(ctx);
+        //the length is not known up front, so a stream is compressed whenever the client accepts it
+        ResponseCompression.Encoding encoding = compression.negotiate(ctx.header("Accept-Encoding"));
+        if (encoding != null){
+            vary(ctx, "Accept-Encoding");
+            ctx.header("Content-Encoding", encoding.getToken());
+        }
+        CompletableFuture<Void> streamed = databaseExecutor.submit(() -> {
+            try (Span span = Tracer.span(codec.getFormat().getName() + ".stream");
+                 OutputStream out = compression.compress(ctx.outputStream(), encoding, true);
+                 JsonGenerator generator = codec.createGenerator(out)) {
+                //if the query fails part way, leave the array open, so the client cannot take it for the whole list
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+                generator.writeStartArray();
+                generator.flush();
+                source.stream(generator::writeObject);
+                generator.writeEndArray();
+            }
+            return null;
+        });
+        respond(ctx, streamed, done -> {});
+    }
+
+    /**
+     * Writes a response from the value its request's future completed with.
+     */
+    @FunctionalInterface
+    private interface Responder<T> {
+        void respond(T value) throws IOException;
+    }
+
+    /**
+     * Write a response once the future it depends on completes. A future that is already done, as every future is
+     * unless the server runs in ExecutionMode.ASYNC, is handled straight away on this thread; otherwise the request
+     * is handed to Javalin with ctx.future() and this thread goes back to the server. A failed future is handled as
+     * if the handler had thrown its exception.
+     *
+     * @param ctx the context to respond to.
+     * @param future the work the response waits for.
+     * @param responder writes the response from the future's value.
+     */
+    private <T> void respond(Context ctx, CompletableFuture<T> future, Responder<T> responder) throws Exception {
+        CompletableFuture<Void> response = future.thenAccept(value -> {
+            try {
+                responder.respond(value);
+            }
+            catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (!response.isDone()){
+            ctx.attribute(PENDING_RESPONSE, response);
+            //Javalin hands the exception inside a failed future's CompletionException to the exception handlers
+            ctx.future(() -> response);
+            return;
+        }
+        try {
+            response.join();
+        }
+        catch (CompletionException e){
+            Throwable cause = unwrap(e);
+            if (cause instanceof Exception){ throw (Exception) cause; }
+            throw e;
+        }
+    }
+
+    /**
+     * @return the exception behind the CompletionException and UncheckedIOException wrappers a future adds.
+     */
+    private static Throwable unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof UncheckedIOException) && e.getCause() != null){
+            e = e.getCause();
+        }
+        return e;
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,10 @@
 package DAO;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import Model.Account;
-import Util.ConnectionUtil;
 
 /**
  * A DAO is a class that mediates the transformation of data between the format of 
@@ -17,31 +17,55 @@ import Util.ConnectionUtil;
  */
 public class AccountDAO {
 
+    /**
+     * The columns every account query selects, in the order ACCOUNT reads them.
+     */
+    private static final String ACCOUNT_COLUMNS = "account_id, username, password";
+
+    /**
+     * Builds an Account from the current row of a result set that selected ACCOUNT_COLUMNS, reading the columns by
+     * position.
+     */
+    private static final SqlExecutor.RowMapper<Account> ACCOUNT = rs ->
+            new Account(rs.getInt(1), rs.getString(2), rs.getString(3));
+
     /**
      * Retrieve all accounts from the account table.
      *
      * @return all accounts.
      */
     public List<Account> getAllAccounts(){
-        Connection connection = ConnectionUtil.getConnection();
-        List<Account> accounts = new ArrayList<>();
         try {
             //SQL query
-            String sql = "SELECT * FROM account;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM account;";
 
             //get the result set of accounts
-            ResultSet rs = preparedStatement.executeQuery();
-            while(rs.next()){
-                Account account = new Account(rs.getInt("account_id"), rs.getString("username"),
-                                              rs.getString("password"));
-                accounts.add(account);
-            }
+            return SqlExecutor.queryList(sql, SqlExecutor.NO_PARAMETERS, ACCOUNT);
         }catch(SQLException e){
             System.out.println(e.getMessage());
         }
         
-        return accounts;
+        return new ArrayList<>();
+    }
+
+    /**
+     * Stream all accounts from the account table to the consumer while they are being read.
+     *
+     * @param consumer receives each account.
+     * @throws IOException if the query fails, or the consumer fails to write an account.
+     */
+    public void streamAllAccounts(RowConsumer<Account> consumer) throws IOException {
+        try {
+            //SQL query
+            String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM account;";
+
+            //execute the query, handing each account over as it is read
+            SqlExecutor.stream(sql, SqlExecutor.NO_PARAMETERS, ACCOUNT, consumer);
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+            //part of the rows may already have been written, so the caller has to abort rather than finish the list
+            throw new IOException(e);
+        }
     }
 
     /**
@@ -52,24 +76,18 @@ public class AccountDAO {
      * @param Account an object modelling an Account. the Account object does not contain an account ID.
      */
     public Account insertAccount(Account account){
-        Connection connection = ConnectionUtil.getConnection();
-        
         try {
             //SQL Query
             String sql = "INSERT INTO account (username, password) VALUES (?, ?);";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-
-            //set the username and password
-            preparedStatement.setString(1, account.getUsername());
-            preparedStatement.setString(2, account.getPassword());
 
-            //execute query and generate primary key
-            preparedStatement.executeUpdate();
-            ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys();
+            //set the username and password, execute query and generate primary key
+            int generated_account_id = SqlExecutor.insert(sql, preparedStatement -> {
+                preparedStatement.setString(1, account.getUsername());
+                preparedStatement.setString(2, account.getPassword());
+            });
 
             //return account with generated primary key
-            if(pkeyResultSet.next()){
-                int generated_account_id = (int) pkeyResultSet.getLong(1);
+            if(generated_account_id >= 0){
                 return new Account(generated_account_id, account.getUsername(), account.getPassword());
             }
         }
@@ -85,22 +103,12 @@ public class AccountDAO {
      * @param username an account username.
      */
     public Account getAccountByUsername(String username){
-        Connection connection = ConnectionUtil.getConnection();
         try {
             //SQL Query
-            String sql = "SELECT * FROM account WHERE username=?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-
-            //set the username
-            preparedStatement.setString(1, username);
+            String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM account WHERE username=?;";
 
-            //get the result set and return the account
-            ResultSet rs = preparedStatement.executeQuery();
-            while(rs.next()){
-                Account account = new Account(rs.getInt("account_id"), rs.getString("username"),
-                                              rs.getString("password"));
-                return account;
-            }
+            //set the username, get the result set and return the account
+            return SqlExecutor.queryOne(sql, preparedStatement -> preparedStatement.setString(1, username), ACCOUNT);
         }
         catch (SQLException e){
             System.out.println(e.getMessage());
@@ -114,22 +122,12 @@ public class AccountDAO {
      * @param id an account ID.
      */
     public Account getAccountById(int id){
-        Connection connection = ConnectionUtil.getConnection();
         try {
             //SQL query
-            String sql = "SELECT * FROM account WHERE account_id=?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-
-            //set the id
-            preparedStatement.setInt(1, id);
+            String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM account WHERE account_id=?;";
 
-            //get the result set and return the account
-            ResultSet rs = preparedStatement.executeQuery();
-            while(rs.next()){
-                Account account = new Account(rs.getInt("account_id"), rs.getString("username"),
-                                              rs.getString("password"));
-                return account;
-            }
+            //set the id, get the result set and return the account
+            return SqlExecutor.queryOne(sql, preparedStatement -> preparedStatement.setInt(1, id), ACCOUNT);
         }catch(SQLException e){
             System.out.println(e.getMessage());
         }
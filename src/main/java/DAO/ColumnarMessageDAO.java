@@ -0,0 +1,507 @@
+package DAO;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import Model.Message;
+import Model.MessageCursor;
+
+/**
+ * A MessageDAO that keeps every message in memory, column by column, instead of as one object per message.
+ *
+ * Each message is a row across parallel primitive arrays: message_id and posted_by in int[]s, time_posted_epoch in a
+ * long[], and message_text as an offset and length into one UTF-8 byte arena. A message therefore costs its text bytes
+ * plus a few dozen bytes of array slots, instead of a Message, a String and its byte[] with three object headers, and
+ * the garbage collector sees a handful of large arrays instead of millions of small objects. Message objects are only
+ * built for the rows a call actually returns.
+ *
+ * Rows are kept in message_id order. rowById, a primitive int-to-int map, finds the row of a message_id, and
+ * latestRowByAuthor together with previousRowByAuthor chains the rows of each posted_by together, newest row first,
+ * so an account's messages are found without a scan. rowsByTime keeps the rows in time order, so a page of a time
+ * window starts with a binary search.
+ *
+ * Deleting a message only marks its row dead (message_id 0) and updating one appends the new text to the arena; once
+ * dead rows or dead arena bytes outweigh the live ones, everything is compacted in one pass.
+ *
+ * Nothing here is written to disk: the store starts from whatever it is loaded with and is lost when the process
+ * exits. Reads share a read lock and writes take the write lock. The streaming methods take the message_ids to stream
+ * under the read lock, then read the messages a batch at a time and run their consumer between batches without it,
+ * so a slow client does not hold up writes.
+ */
+public class ColumnarMessageDAO implements MessageDAO {
+
+    private static final int NONE = -1;
+    /**
+     * Compaction is not worth it below this many rows.
+     */
+    private static final int MIN_COMPACTION_ROWS = 1024;
+    /**
+     * How many messages the streaming methods read under the lock at a time.
+     */
+    private static final int STREAM_BATCH = 256;
+
+    private int[] ids;
+    private int[] postedBy;
+    private long[] epochs;
+    private int[] textOffsets;
+    private int[] textLengths;
+    /**
+     * For each row, the row of the same account's previous message, or NONE.
+     */
+    private int[] previousRowByAuthor;
+    /**
+     * The rows in (time_posted_epoch, message_id) order, for time window pages. New rows are appended while they
+     * come in order; once one does not, or rows move in a compaction, the order is rebuilt by the next page read.
+     */
+    private int[] rowsByTime;
+    private int timeOrdered;
+    private boolean timeOrderStale;
+    private byte[] arena;
+    private int arenaSize;
+    private int rows;
+    private int liveRows;
+    private long deadBytes;
+    private int nextId = 1;
+
+    private final IntIntMap rowById;
+    private final IntIntMap latestRowByAuthor;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ColumnarMessageDAO(){
+        this(1024);
+    }
+
+    /**
+     * @param initialCapacity how many messages to make room for up front.
+     */
+    public ColumnarMessageDAO(int initialCapacity){
+        int capacity = Math.max(16, initialCapacity);
+        ids = new int[capacity];
+        postedBy = new int[capacity];
+        epochs = new long[capacity];
+        textOffsets = new int[capacity];
+        textLengths = new int[capacity];
+        previousRowByAuthor = new int[capacity];
+        rowsByTime = new int[capacity];
+        arena = new byte[capacity * 64];
+        rowById = new IntIntMap(capacity);
+        latestRowByAuthor = new IntIntMap(64);
+    }
+
+    /**
+     * Add a message that already has a message_id, for filling the store from another one. Messages have to be
+     * loaded in message_id order; new message_ids continue after the largest one loaded.
+     */
+    public void load(Message message){
+        lock.writeLock().lock();
+        try {
+            if (message.getMessage_id() < nextId){
+                throw new IllegalArgumentException("Messages must be loaded in message_id order");
+            }
+            append(message.getMessage_id(), message);
+            nextId = message.getMessage_id() + 1;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of messages stored.
+     */
+    public int size(){
+        lock.readLock().lock();
+        try {
+            return liveRows;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> getAllMessages(){
+        lock.readLock().lock();
+        try {
+            List<Message> messages = new ArrayList<>(liveRows);
+            for (int row = 0; row < rows; row++){
+                if (ids[row] != 0){ messages.add(message(row)); }
+            }
+            return messages;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void streamAllMessages(RowConsumer<Message> consumer) throws IOException {
+        int[] message_ids;
+        lock.readLock().lock();
+        try {
+            message_ids = new int[liveRows];
+            int count = 0;
+            for (int row = 0; row < rows; row++){
+                if (ids[row] != 0){ message_ids[count++] = ids[row]; }
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        stream(message_ids, consumer);
+    }
+
+    @Override
+    public List<Message> getMessagesPage(long since, long until, MessageCursor after, int limit){
+        lock.readLock().lock();
+        try {
+            if (timeOrderStale){
+                //sorting needs the write lock, which cannot be taken while holding the read lock
+                lock.readLock().unlock();
+                lock.writeLock().lock();
+                try {
+                    if (timeOrderStale){ sortRowsByTime(); }
+                    //downgrade, so no write can make the order stale again before the page is read
+                    lock.readLock().lock();
+                }
+                finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            //start at the later of the window's start and the cursor
+            long startTime = since;
+            long startId = Long.MIN_VALUE;
+            if (after != null && after.getTime_posted_epoch() >= since){
+                startTime = after.getTime_posted_epoch();
+                startId = after.getMessage_id() + 1L;
+            }
+            List<Message> page = new ArrayList<>(Math.min(limit, liveRows));
+            for (int at = firstByTime(startTime, startId); at < timeOrdered && page.size() < limit; at++){
+                int row = rowsByTime[at];
+                if (epochs[row] >= until){ break; }
+                if (ids[row] != 0){ page.add(message(row)); }
+            }
+            return page;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Message getMessageById(int message_id){
+        lock.readLock().lock();
+        try {
+            int row = rowById.get(message_id, NONE);
+            return row == NONE ? null : message(row);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> getMessagesById(int[] message_ids){
+        List<Message> messages = new ArrayList<>(message_ids.length);
+        lock.readLock().lock();
+        try {
+            for (int message_id : message_ids){
+                int row = rowById.get(message_id, NONE);
+                if (row != NONE){
+                    messages.add(message(row));
+                }
+            }
+            return messages;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Message insertMessage(Message message){
+        lock.writeLock().lock();
+        try {
+            int message_id = nextId++;
+            append(message_id, message);
+            return new Message(message_id, message.getPosted_by(), message.getMessage_text(),
+                    message.getTime_posted_epoch());
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> insertMessages(List<Message> messages, int chunkSize){
+        lock.writeLock().lock();
+        try {
+            List<Message> inserted = new ArrayList<>(messages.size());
+            for (Message message : messages){
+                int message_id = nextId++;
+                append(message_id, message);
+                inserted.add(new Message(message_id, message.getPosted_by(), message.getMessage_text(),
+                        message.getTime_posted_epoch()));
+            }
+            return inserted;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Message updateMessage(int message_id, Message message){
+        lock.writeLock().lock();
+        try {
+            int row = rowById.get(message_id, NONE);
+            if (row == NONE){ return null; }
+            //the old text stays in the arena until the next compaction
+            deadBytes += textLengths[row];
+            writeText(row, message.getMessage_text());
+            Message updated = message(row);
+            compactIfWorthIt();
+            return updated;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Message deleteMessage(int message_id){
+        lock.writeLock().lock();
+        try {
+            int row = rowById.get(message_id, NONE);
+            if (row == NONE){ return null; }
+            Message message = message(row);
+            rowById.remove(message_id);
+            ids[row] = 0;
+            liveRows--;
+            deadBytes += textLengths[row];
+            compactIfWorthIt();
+            return message;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> getAllMessagesPostedBy(int account_id){
+        return getMessagesPostedByPage(account_id, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Message> getMessagesPostedByPage(int account_id, int offset, int limit){
+        lock.readLock().lock();
+        try {
+            int[] authorRows = rowsPostedBy(account_id);
+            int end = (int) Math.min((long) offset + limit, authorRows.length);
+            List<Message> messages = new ArrayList<>(Math.max(0, end - offset));
+            for (int i = offset; i < end; i++){
+                messages.add(message(authorRows[i]));
+            }
+            return messages;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void streamAllMessagesPostedBy(int account_id, RowConsumer<Message> consumer) throws IOException {
+        int[] message_ids;
+        lock.readLock().lock();
+        try {
+            message_ids = rowsPostedBy(account_id);
+            for (int i = 0; i < message_ids.length; i++){
+                message_ids[i] = ids[message_ids[i]];
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        stream(message_ids, consumer);
+    }
+
+    /**
+     * Hand the messages with these ids to a consumer, in the same order. Each batch is read under the read lock and
+     * handed over after releasing it; rows can move in a compaction in between, so they are looked up by id, and
+     * messages deleted in the meantime are skipped.
+     */
+    private void stream(int[] message_ids, RowConsumer<Message> consumer) throws IOException {
+        for (int from = 0; from < message_ids.length; from += STREAM_BATCH){
+            int to = Math.min(from + STREAM_BATCH, message_ids.length);
+            for (Message message : getMessagesById(Arrays.copyOfRange(message_ids, from, to))){
+                consumer.accept(message);
+            }
+        }
+    }
+
+    /**
+     * @return the live rows of one account, newest first by time_posted_epoch and then message_id.
+     */
+    private int[] rowsPostedBy(int account_id){
+        int[] found = new int[16];
+        int count = 0;
+        for (int row = latestRowByAuthor.get(account_id, NONE); row != NONE; row = previousRowByAuthor[row]){
+            if (ids[row] == 0){ continue; }
+            if (count == found.length){ found = Arrays.copyOf(found, count * 2); }
+            found[count++] = row;
+        }
+        //the chain runs from the newest row back, which is nearly always newest first already, so an insertion
+        //sort only has the odd out-of-order timestamp to fix
+        for (int i = 1; i < count; i++){
+            int row = found[i];
+            int j = i - 1;
+            while (j >= 0 && compare(found[j], row) < 0){
+                found[j + 1] = found[j];
+                j--;
+            }
+            found[j + 1] = row;
+        }
+        return count == found.length ? found : Arrays.copyOf(found, count);
+    }
+
+    private Message message(int row){
+        String text = new String(arena, textOffsets[row], textLengths[row], StandardCharsets.UTF_8);
+        return new Message(ids[row], postedBy[row], text, epochs[row]);
+    }
+
+    private void append(int message_id, Message message){
+        if (rows == ids.length){
+            grow(rows + (rows >> 1) + 1);
+        }
+        int row = rows++;
+        ids[row] = message_id;
+        postedBy[row] = message.getPosted_by();
+        epochs[row] = message.getTime_posted_epoch();
+        writeText(row, message.getMessage_text());
+        previousRowByAuthor[row] = latestRowByAuthor.get(message.getPosted_by(), NONE);
+        latestRowByAuthor.put(message.getPosted_by(), row);
+        rowById.put(message_id, row);
+        liveRows++;
+        if (!timeOrderStale){
+            if (timeOrdered == 0 || compare(rowsByTime[timeOrdered - 1], row) <= 0){
+                rowsByTime[timeOrdered++] = row;
+            }
+            else {
+                timeOrderStale = true;
+            }
+        }
+    }
+
+    private void writeText(int row, String text){
+        byte[] bytes = text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+        if (arenaSize + bytes.length > arena.length){
+            arena = Arrays.copyOf(arena, Math.max(arenaSize + bytes.length, arena.length + (arena.length >> 1)));
+        }
+        System.arraycopy(bytes, 0, arena, arenaSize, bytes.length);
+        textOffsets[row] = arenaSize;
+        textLengths[row] = bytes.length;
+        arenaSize += bytes.length;
+    }
+
+    private void grow(int capacity){
+        ids = Arrays.copyOf(ids, capacity);
+        postedBy = Arrays.copyOf(postedBy, capacity);
+        epochs = Arrays.copyOf(epochs, capacity);
+        textOffsets = Arrays.copyOf(textOffsets, capacity);
+        textLengths = Arrays.copyOf(textLengths, capacity);
+        previousRowByAuthor = Arrays.copyOf(previousRowByAuthor, capacity);
+        rowsByTime = Arrays.copyOf(rowsByTime, capacity);
+    }
+
+    /**
+     * Squeeze out dead rows and dead arena bytes once they outweigh the live ones.
+     */
+    private void compactIfWorthIt(){
+        boolean deadRows = rows >= MIN_COMPACTION_ROWS && rows - liveRows > liveRows;
+        boolean deadText = arenaSize >= MIN_COMPACTION_ROWS * 64 && deadBytes > arenaSize - deadBytes;
+        if (!deadRows && !deadText){ return; }
+
+        byte[] compacted = new byte[Math.max(16, (int) (arenaSize - deadBytes) + (arena.length >> 2))];
+        int compactedSize = 0;
+        int live = 0;
+        rowById.clear();
+        latestRowByAuthor.clear();
+        for (int row = 0; row < rows; row++){
+            if (ids[row] == 0){ continue; }
+            int to = live++;
+            ids[to] = ids[row];
+            postedBy[to] = postedBy[row];
+            epochs[to] = epochs[row];
+            System.arraycopy(arena, textOffsets[row], compacted, compactedSize, textLengths[row]);
+            textOffsets[to] = compactedSize;
+            textLengths[to] = textLengths[row];
+            compactedSize += textLengths[row];
+            previousRowByAuthor[to] = latestRowByAuthor.get(postedBy[to], NONE);
+            latestRowByAuthor.put(postedBy[to], to);
+            rowById.put(ids[to], to);
+        }
+        rows = live;
+        timeOrderStale = true;
+        arena = compacted;
+        arenaSize = compactedSize;
+        deadBytes = 0;
+    }
+
+    /**
+     * Orders rows by time_posted_epoch and then message_id.
+     */
+    private int compare(int row, int other){
+        int byTime = Long.compare(epochs[row], epochs[other]);
+        return byTime != 0 ? byTime : Integer.compare(ids[row], ids[other]);
+    }
+
+    /**
+     * @return the first position in rowsByTime at or after (time_posted_epoch, message_id).
+     */
+    private int firstByTime(long time_posted_epoch, long message_id){
+        int low = 0;
+        int high = timeOrdered;
+        while (low < high){
+            int middle = (low + high) >>> 1;
+            int row = rowsByTime[middle];
+            boolean before = epochs[row] < time_posted_epoch
+                    || (epochs[row] == time_posted_epoch && ids[row] < message_id);
+            if (before){ low = middle + 1; }
+            else { high = middle; }
+        }
+        return low;
+    }
+
+    private void sortRowsByTime(){
+        timeOrdered = 0;
+        for (int row = 0; row < rows; row++){
+            if (ids[row] != 0){ rowsByTime[timeOrdered++] = row; }
+        }
+        mergeSort(rowsByTime, new int[timeOrdered], 0, timeOrdered);
+        timeOrderStale = false;
+    }
+
+    private void mergeSort(int[] sorted, int[] scratch, int from, int to){
+        if (to - from < 2){ return; }
+        int middle = (from + to) >>> 1;
+        mergeSort(sorted, scratch, from, middle);
+        mergeSort(sorted, scratch, middle, to);
+        if (compare(sorted[middle - 1], sorted[middle]) <= 0){ return; }
+        System.arraycopy(sorted, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int at = from; at < to; at++){
+            if (right >= to || (left < middle && compare(scratch[left], scratch[right]) <= 0)){
+                sorted[at] = scratch[left++];
+            }
+            else {
+                sorted[at] = scratch[right++];
+            }
+        }
+    }
+}
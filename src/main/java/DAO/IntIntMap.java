@@ -0,0 +1,111 @@
+package DAO;
+
+import java.util.Arrays;
+
+/**
+ * A map from int keys to int values stored in two primitive arrays, with open addressing and linear probing, so
+ * neither keys nor values are boxed and a lookup touches one or two cache lines.
+ *
+ * Integer.MIN_VALUE marks a free slot and cannot be used as a key. Not thread safe.
+ */
+final class IntIntMap {
+
+    private static final int FREE = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    IntIntMap(int expectedSize){
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return the value for the key, or missing if it has none.
+     */
+    int get(int key, int missing){
+        for (int slot = slot(key); ; slot = (slot + 1) & mask){
+            int found = keys[slot];
+            if (found == key){ return values[slot]; }
+            if (found == FREE){ return missing; }
+        }
+    }
+
+    void put(int key, int value){
+        if (key == FREE){
+            throw new IllegalArgumentException("Integer.MIN_VALUE cannot be a key");
+        }
+        int slot = slot(key);
+        while (keys[slot] != FREE && keys[slot] != key){
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == FREE){
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+        //keep at least half the slots free so probe runs stay short
+        if (size * 2 > keys.length){
+            resize(keys.length * 2);
+        }
+    }
+
+    /**
+     * Remove a key, shifting later entries of its probe run back so lookups never need tombstones.
+     */
+    void remove(int key){
+        int slot = slot(key);
+        while (keys[slot] != key){
+            if (keys[slot] == FREE){ return; }
+            slot = (slot + 1) & mask;
+        }
+        size--;
+        int gap = slot;
+        for (int next = (gap + 1) & mask; keys[next] != FREE; next = (next + 1) & mask){
+            int home = slot(keys[next]);
+            //move the entry into the gap unless its home slot lies cyclically between the gap and where it is
+            boolean between = gap <= next ? (gap < home && home <= next) : (gap < home || home <= next);
+            if (!between){
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = FREE;
+    }
+
+    int size(){
+        return size;
+    }
+
+    void clear(){
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    private int slot(int key){
+        //spread the bits, since ids are sequential
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void resize(int capacity){
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++){
+            if (oldKeys[i] != FREE){
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
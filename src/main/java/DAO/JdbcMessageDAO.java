@@ -0,0 +1,381 @@
+package DAO;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import Model.Message;
+import Model.MessageCursor;
+
+/**
+ * A DAO is a class that mediates the transformation of data between the format of 
+ * objects in Java to rows in a database. This is the MessageDAO backed by the H2 message table.
+ * 
+ * Table "Message"
+ * message_id integer primary key auto_increment,
+ * posted_by integer,
+ * message_text varchar(255),
+ * time_posted_epoch long,
+ * foreign key (posted_by) references Account(account_id)
+ */
+public class JdbcMessageDAO implements MessageDAO {
+
+    /**
+     * The columns every message query selects, in the order MESSAGE reads them.
+     */
+    private static final String MESSAGE_COLUMNS = "message_id, posted_by, message_text, time_posted_epoch";
+
+    /**
+     * Builds a Message from the current row of a result set that selected MESSAGE_COLUMNS. Columns are read by
+     * position, so the driver does not have to look each one up by name on every row.
+     */
+    private static final SqlExecutor.RowMapper<Message> MESSAGE = rs ->
+            new Message(rs.getInt(1), rs.getInt(2), rs.getString(3), rs.getLong(4));
+
+    /**
+     * Retrieve all messages from the Message table. The primary key index is already in message_id order, so the
+     * ORDER BY is read from it rather than sorted.
+     *
+     * @return all messages, in message_id order.
+     */
+    @Override
+    public List<Message> getAllMessages(){
+        try {
+            //SQL query
+            String sql = "SELECT " + MESSAGE_COLUMNS + " FROM Message ORDER BY message_id;";
+
+            //execute the query, adding each message to the list
+            return SqlExecutor.queryList(sql, SqlExecutor.NO_PARAMETERS, MESSAGE);
+        }
+        catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Stream all messages from the Message table to the consumer while they are being read, in message_id order.
+     *
+     * @param consumer receives each message.
+     * @throws IOException if the query fails, or the consumer fails to write a message.
+     */
+    @Override
+    public void streamAllMessages(RowConsumer<Message> consumer) throws IOException {
+        try {
+            //SQL query
+            String sql = "SELECT " + MESSAGE_COLUMNS + " FROM Message ORDER BY message_id;";
+
+            //execute the query, handing each message over as it is read
+            SqlExecutor.stream(sql, SqlExecutor.NO_PARAMETERS, MESSAGE, consumer);
+        }
+        catch(SQLException e){
+            System.out.println(e.getMessage());
+            //part of the rows may already have been written, so the caller has to abort rather than finish the list
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Retrieve one page of messages posted in a time window, ordered by time_posted_epoch and then message_id.
+     * The page is found with a range scan on the (time_posted_epoch, message_id) index rather than an OFFSET, so
+     * reading deep pages costs the same as reading the first one.
+     *
+     * @param since only messages posted at or after this epoch time.
+     * @param until only messages posted before this epoch time.
+     * @param after only messages that come after this cursor, or null to start at the beginning of the window.
+     * @param limit the most messages to return.
+     * @return up to limit messages.
+     */
+    @Override
+    public List<Message> getMessagesPage(long since, long until, MessageCursor after, int limit){
+        try {
+            //SQL query. the cursor comparison is split so the time bound can use the index
+            String sql = "SELECT " + MESSAGE_COLUMNS + " FROM Message " +
+                         "WHERE time_posted_epoch >= ? AND time_posted_epoch < ? " +
+                         "AND (time_posted_epoch > ? OR message_id > ?) " +
+                         "ORDER BY time_posted_epoch, message_id LIMIT ?;";
+
+            //start from whichever is later, the window or the cursor
+            long from = after == null ? since : Math.max(since, after.getTime_posted_epoch());
+            long afterTime = after == null ? Long.MIN_VALUE : after.getTime_posted_epoch();
+            int afterId = after == null ? Integer.MIN_VALUE : after.getMessage_id();
+
+            //set the bounds and limit, execute the query, adding each message to the list
+            return SqlExecutor.queryList(sql, preparedStatement -> {
+                preparedStatement.setLong(1, from);
+                preparedStatement.setLong(2, until);
+                preparedStatement.setLong(3, afterTime);
+                preparedStatement.setInt(4, afterId);
+                preparedStatement.setInt(5, limit);
+            }, MESSAGE);
+        }
+        catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Retrieve a specific message using its message ID.
+     *
+     * @param id a message ID.
+     */
+    @Override
+    public Message getMessageById(int message_id){
+        try {
+            //SQL query
+            String sql = "SELECT " + MESSAGE_COLUMNS + " FROM message WHERE message_id=?;";
+
+            //set the id, execute the query and return the message
+            return SqlExecutor.queryOne(sql, preparedStatement -> preparedStatement.setInt(1, message_id), MESSAGE);
+        }
+        catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Retrieve many messages by their message IDs in one query. The ids are bound as a single array parameter, so
+     * every batch runs the same prepared statement, and H2 looks each one up in the primary key index.
+     *
+     * @param message_ids message IDs.
+     * @return the messages with those ids, in the same order, skipping ids that have no message.
+     */
+    @Override
+    public List<Message> getMessagesById(int[] message_ids){
+        if (message_ids.length == 0){
+            return new ArrayList<>();
+        }
+        try {
+            //SQL query
+            String sql = "SELECT " + MESSAGE_COLUMNS + " FROM Message WHERE message_id = ANY(?);";
+
+            //set the ids, execute the query
+            Integer[] ids = new Integer[message_ids.length];
+            for (int i = 0; i < message_ids.length; i++){
+                ids[i] = message_ids[i];
+            }
+            List<Message> found = SqlExecutor.queryList(sql,
+                    preparedStatement -> preparedStatement.setObject(1, ids), MESSAGE);
+
+            //the rows come back in index order, so put them back in the order they were asked for
+            Map<Integer, Message> byId = new HashMap<>(found.size() * 2);
+            for (Message message : found){
+                byId.put(message.getMessage_id(), message);
+            }
+            List<Message> messages = new ArrayList<>(found.size());
+            for (int message_id : message_ids){
+                Message message = byId.get(message_id);
+                if (message != null){
+                    messages.add(message);
+                }
+            }
+            return messages;
+        }
+        catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Add a message record into the database which matches the values contained in the message object.
+     * The message_id will be automatically generated by the SQL database, and JDBC will be able
+     * to retrieve the generated ID automatically.
+     *
+     * @param Message an object modelling a message. the Message object does not contain an message ID.
+     */
+    @Override
+    public Message insertMessage(Message message){
+        try {
+            //SQL Query
+            String sql = "INSERT INTO Message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?);";
+
+            //set the posted_by, message_text, and time_posted_epoch, execute query, generate primary key
+            int generated_message_id = SqlExecutor.insert(sql, preparedStatement -> {
+                preparedStatement.setInt(1, message.getPosted_by());
+                preparedStatement.setString(2, message.getMessage_text());
+                preparedStatement.setLong(3, message.getTime_posted_epoch());
+            });
+
+            //return inserted message with its generated primary key
+            if(generated_message_id >= 0){
+                return new Message(generated_message_id, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
+            }
+        }
+        catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+
+    /**
+     * Add many message records in one transaction, written as JDBC batches of at most chunkSize messages.
+     * Either every message is stored or, if anything fails, none of them are.
+     *
+     * @param messages objects modelling messages. the Message objects do not contain message IDs.
+     * @param chunkSize the most messages to send to the database in one batch.
+     * @return the stored messages with their generated IDs, in the same order, or null if the batch failed.
+     */
+    @Override
+    public List<Message> insertMessages(List<Message> messages, int chunkSize){
+        try {
+            //SQL Query
+            String sql = "INSERT INTO Message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?);";
+
+            //set the posted_by, message_text, and time_posted_epoch of each message, execute the batches
+            int[] generated_message_ids = SqlExecutor.insertBatch(sql, messages, (preparedStatement, message) -> {
+                preparedStatement.setInt(1, message.getPosted_by());
+                preparedStatement.setString(2, message.getMessage_text());
+                preparedStatement.setLong(3, message.getTime_posted_epoch());
+            }, chunkSize);
+
+            //return inserted messages with their generated primary keys
+            List<Message> inserted = new ArrayList<>(messages.size());
+            for (int i = 0; i < messages.size(); i++){
+                Message message = messages.get(i);
+                inserted.add(new Message(generated_message_ids[i], message.getPosted_by(),
+                        message.getMessage_text(), message.getTime_posted_epoch()));
+            }
+            return inserted;
+        }
+        catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Update the message identified by the message id to the values contained in the message object.
+     *
+     * The updated row is read back from the UPDATE itself through H2's FINAL TABLE, so it takes one statement.
+     *
+     * @param id a message ID.
+     * @param message a message object. the message object does not contain a message ID.
+     * @return the updated message, or null if there was no message with that id.
+     */
+    @Override
+    public Message updateMessage(int message_id, Message message){
+        try {
+            //SQL query. FINAL TABLE holds the rows as the UPDATE left them
+            String sql = "SELECT " + MESSAGE_COLUMNS + " FROM FINAL TABLE "
+                    + "(UPDATE message SET message_text=? WHERE message_id = ?);";
+
+            //Set the message_text and id, then update the message and return it
+            return SqlExecutor.queryOne(sql, preparedStatement -> {
+                preparedStatement.setString(1, message.getMessage_text());
+                preparedStatement.setInt(2, message_id);
+            }, MESSAGE);
+        }
+        catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * delete a message identified by the message id.
+     * The deleted row is read back from the DELETE itself through H2's OLD TABLE, so it takes one statement.
+     *
+     * @param id a message ID.
+     * @return the deleted message, or null if there was no message with that id.
+     */
+    @Override
+    public Message deleteMessage(int id){
+        try {
+            //SQL Query. OLD TABLE holds the rows as they were before the DELETE
+            String sql = "SELECT " + MESSAGE_COLUMNS + " FROM OLD TABLE "
+                    + "(DELETE FROM Message WHERE Message.message_id=?);";
+
+            //Set the id and execute the delete, returning the deleted message
+            return SqlExecutor.queryOne(sql, preparedStatement -> preparedStatement.setInt(1, id), MESSAGE);
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Retrieve all messages from the Message table given a posted_by id, newest first by time_posted_epoch and then
+     * message_id, read in order from the (posted_by, time_posted_epoch desc) index without a sort.
+     *
+     * @return all messages posted by the user with id that matches posted_by.
+     */
+    @Override
+    public List<Message> getAllMessagesPostedBy(int account_id){
+        try {
+            //SQL query
+            //H2 would otherwise pick the foreign key's own posted_by index and sort the rows afterwards
+            String sql = "SELECT " + MESSAGE_COLUMNS + " FROM Message USE INDEX (message_posted_by_time_idx) "
+                    + "WHERE Message.posted_by=? "
+                    + "ORDER BY posted_by, time_posted_epoch DESC, message_id DESC;";
+
+            //set the posted_by, execute the query, adding each message to the list
+            return SqlExecutor.queryList(sql, preparedStatement -> preparedStatement.setInt(1, account_id), MESSAGE);
+        }
+        catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Retrieve one page of the messages from the Message table given a posted_by id, newest first.
+     *
+     * @param offset how many of the newest messages to skip.
+     * @param limit the most messages to return.
+     * @return the messages posted by the user with id that matches posted_by, from offset on.
+     */
+    @Override
+    public List<Message> getMessagesPostedByPage(int account_id, int offset, int limit){
+        try {
+            //SQL query
+            //H2 would otherwise pick the foreign key's own posted_by index and sort the rows afterwards
+            String sql = "SELECT " + MESSAGE_COLUMNS + " FROM Message USE INDEX (message_posted_by_time_idx) "
+                    + "WHERE Message.posted_by=? "
+                    + "ORDER BY posted_by, time_posted_epoch DESC, message_id DESC LIMIT ? OFFSET ?;";
+
+            //set the posted_by and page, execute the query, adding each message to the list
+            return SqlExecutor.queryList(sql, preparedStatement -> {
+                preparedStatement.setInt(1, account_id);
+                preparedStatement.setInt(2, limit);
+                preparedStatement.setInt(3, offset);
+            }, MESSAGE);
+        }
+        catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Stream all messages from the Message table given a posted_by id to the consumer while they are being read,
+     * newest first.
+     *
+     * @param consumer receives each message posted by the user with id that matches posted_by.
+     * @throws IOException if the query fails, or the consumer fails to write a message.
+     */
+    @Override
+    public void streamAllMessagesPostedBy(int account_id, RowConsumer<Message> consumer) throws IOException {
+        try {
+            //SQL query
+            //H2 would otherwise pick the foreign key's own posted_by index and sort the rows afterwards
+            String sql = "SELECT " + MESSAGE_COLUMNS + " FROM Message USE INDEX (message_posted_by_time_idx) "
+                    + "WHERE Message.posted_by=? "
+                    + "ORDER BY posted_by, time_posted_epoch DESC, message_id DESC;";
+
+            //set the posted_by, execute the query, handing each message over as it is read
+            SqlExecutor.stream(sql, preparedStatement -> preparedStatement.setInt(1, account_id), MESSAGE, consumer);
+        }
+        catch(SQLException e){
+            System.out.println(e.getMessage());
+            //part of the rows may already have been written, so the caller has to abort rather than finish the list
+            throw new IOException(e);
+        }
+    }
+}
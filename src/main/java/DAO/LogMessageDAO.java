@@ -0,0 +1,1049 @@
+package DAO;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import Model.Message;
+import Model.MessageCursor;
+
+/**
+ * A MessageDAO that keeps messages in an append-only log of memory-mapped segment files, instead of in H2.
+ *
+ * Every change is a record appended to the newest segment: inserting or updating a message appends the whole message,
+ * and deleting one appends a tombstone holding only its message_id. A record is
+ *   int length, int CRC32C of the body, then the body:
+ *   byte type, int message_id, and for a message also int posted_by, long time_posted_epoch and the UTF-8 text.
+ * Records are encoded straight into the mapped segment, and the length is written last, so a record is either whole
+ * or, after a crash, fails its checksum. Segments are preallocated, so a length of 0 marks the end of a segment.
+ * Inserting many messages at once appends a single batch record, whose body is its type byte followed by a whole
+ * message record for each message; its checksum covers them all, so a batch torn by a crash is dropped as a whole.
+ *
+ * The messages themselves stay off the heap, in the mapped files. What the heap holds is the index: message_id to the
+ * segment and offset of its newest record, each account's message_ids linked newest first, and the message_ids in
+ * time order for time window pages, together around a hundred bytes per message whatever the length of its text.
+ *
+ * When the log is opened every segment is replayed in order, checking each record's checksum, to rebuild the index.
+ * A damaged record, such as one torn by a crash, ends its segment there; the rest of that segment is zeroed and
+ * written over.
+ *
+ * Records that have been superseded or deleted stay in their segment until it is compacted. A background thread
+ * regularly compacts the full segments that are at most half live, by copying their live records into one new file
+ * that takes the place of the newest of them, and deleting the others. Tombstones are copied too while a segment
+ * older than theirs, which may still hold the deleted message, exists, and the tombstone of the highest message_id is
+ * always kept, so that replaying the log never hands out an id again. The copies are written and forced to disk
+ * without holding the lock; only swapping the new file in and pointing the index at it takes the write lock.
+ *
+ * Writes only reach the operating system's page cache, which survives the process crashing but not the machine; with
+ * fsync set, every write is also forced to disk before it returns. Reads share a read lock, and writes take the write
+ * lock. The streaming methods take the message_ids to stream under the read lock, then read the
+ * messages a batch at a time, each batch under the read lock so compaction cannot delete a segment mid-read, and run
+ * their consumer between batches without it.
+ */
+public class LogMessageDAO implements MessageDAO, Closeable {
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte BATCH = 3;
+    /**
+     * The length and checksum in front of every record body.
+     */
+    private static final int HEADER = 8;
+    /**
+     * The type, message_id, posted_by and time_posted_epoch in front of the text of a message body.
+     */
+    private static final int PUT_FIXED = 17;
+    private static final int DELETE_BODY = 5;
+    private static final long MISSING = -1;
+    /**
+     * No message has message_id 0, so it ends the per-account links.
+     */
+    private static final int NONE = 0;
+    /**
+     * How many messages the streaming methods read under the lock at a time.
+     */
+    private static final int STREAM_BATCH = 256;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean fsync;
+    /**
+     * Held on the directory's lock file while the log is open, so two writers never share a log.
+     */
+    private final FileLock directoryLock;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private Segment active;
+
+    /**
+     * message_id to the location of its newest record, the segment number in the high half and the offset in the
+     * low half.
+     */
+    private final IntLongMap locations = new IntLongMap(1024);
+    private final IntIntMap latestIdByAuthor = new IntIntMap(64);
+    private final IntIntMap previousIdByAuthor = new IntIntMap(1024);
+    private final IntIntMap nextIdByAuthor = new IntIntMap(1024);
+    /**
+     * The message_ids in (time_posted_epoch, message_id) order, with their times alongside. New messages are
+     * appended while they come in order; once one does not, or deleted ids pile up, the order is rebuilt by the next
+     * page read.
+     */
+    private int[] idsByTime = new int[1024];
+    private long[] epochsByTime = new long[1024];
+    private int timeOrdered;
+    private int deadInTimeOrder;
+    private boolean timeOrderStale;
+    private int nextId = 1;
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CRC32C crc = new CRC32C();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Held for a whole compaction, so two never copy the same segments.
+     */
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    private final ScheduledExecutorService compactor;
+    private boolean closed;
+
+    /**
+     * Open the log in a directory, creating it if needed, and replay it.
+     *
+     * @param segmentBytes the size of each segment file.
+     * @param fsync whether to force every write to disk before returning.
+     * @param compactionIntervalMillis how often to look for segments to compact, or 0 to only compact on compact().
+     * @throws IOException if the directory or a segment cannot be opened, or the log is already open.
+     */
+    public LogMessageDAO(Path directory, int segmentBytes, boolean fsync, long compactionIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        FileChannel lockChannel = FileChannel.open(directory.resolve("lock"), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = lockChannel.tryLock();
+        }
+        catch(OverlappingFileLockException e){
+            acquired = null;
+        }
+        if (acquired == null){
+            lockChannel.close();
+            throw new IOException("The message log in " + directory + " is already open");
+        }
+        directoryLock = acquired;
+
+        List<Integer> numbers = new ArrayList<>();
+        List<Path> unfinished = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)){
+            files.forEach(path -> {
+                String name = path.getFileName().toString();
+                if (name.matches("\\d{10}\\.log")){ numbers.add(Integer.parseInt(name.substring(0, 10))); }
+                else if (name.matches("\\d{10}\\.compact")){ unfinished.add(path); }
+            });
+        }
+        //a compaction that did not get to swap its copy in leaves the originals as they were
+        for (Path path : unfinished){
+            Files.delete(path);
+        }
+        numbers.sort(null);
+        for (int number : numbers){
+            Segment segment = openSegment(number, 0);
+            segments.put(number, segment);
+            replay(segment);
+        }
+        //a compacted segment is only as large as its records, so it is never written to again
+        active = segments.isEmpty() || segments.lastEntry().getValue().buffer.capacity() < segmentBytes
+                ? openSegment(segments.isEmpty() ? 1 : segments.lastKey() + 1, segmentBytes)
+                : segments.lastEntry().getValue();
+        segments.put(active.number, active);
+
+        if (compactionIntervalMillis > 0){
+            compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "message-log-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::compactQuietly, compactionIntervalMillis, compactionIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        else {
+            compactor = null;
+        }
+    }
+
+    /**
+     * @return whether the log holds no records at all, as when it has just been created.
+     */
+    public boolean isNew(){
+        lock.readLock().lock();
+        try {
+            return segments.size() == 1 && active.size == 0;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of messages stored.
+     */
+    public int size(){
+        lock.readLock().lock();
+        try {
+            return locations.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of segment files the log is spread over.
+     */
+    public int getSegmentCount(){
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add a message that already has a message_id, for filling the log from another store. Messages have to be
+     * loaded in message_id order; new message_ids continue after the largest one loaded.
+     *
+     * @throws IOException if the message could not be written.
+     */
+    public void load(Message message) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (message.getMessage_id() < nextId){
+                throw new IllegalArgumentException("Messages must be loaded in message_id order");
+            }
+            put(message.getMessage_id(), message.getPosted_by(), message.getTime_posted_epoch(),
+                    message.getMessage_text());
+            nextId = message.getMessage_id() + 1;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> getAllMessages(){
+        lock.readLock().lock();
+        try {
+            int[] ids = locations.keys();
+            Arrays.sort(ids);
+            List<Message> messages = new ArrayList<>(ids.length);
+            for (int id : ids){
+                messages.add(read(locations.get(id, MISSING)));
+            }
+            return messages;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void streamAllMessages(RowConsumer<Message> consumer) throws IOException {
+        int[] ids;
+        lock.readLock().lock();
+        try {
+            ids = locations.keys();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        Arrays.sort(ids);
+        stream(ids, consumer);
+    }
+
+    @Override
+    public List<Message> getMessagesPage(long since, long until, MessageCursor after, int limit){
+        lock.readLock().lock();
+        try {
+            if (timeOrderStale){
+                //sorting needs the write lock, which cannot be taken while holding the read lock
+                lock.readLock().unlock();
+                lock.writeLock().lock();
+                try {
+                    if (timeOrderStale){ sortIdsByTime(); }
+                    lock.readLock().lock();
+                }
+                finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            //start at the later of the window's start and the cursor
+            long startTime = since;
+            long startId = Long.MIN_VALUE;
+            if (after != null && after.getTime_posted_epoch() >= since){
+                startTime = after.getTime_posted_epoch();
+                startId = after.getMessage_id() + 1L;
+            }
+            List<Message> page = new ArrayList<>(Math.min(limit, locations.size()));
+            for (int at = firstByTime(startTime, startId); at < timeOrdered && page.size() < limit; at++){
+                if (epochsByTime[at] >= until){ break; }
+                long location = locations.get(idsByTime[at], MISSING);
+                if (location != MISSING){ page.add(read(location)); }
+            }
+            return page;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Message getMessageById(int message_id){
+        lock.readLock().lock();
+        try {
+            long location = locations.get(message_id, MISSING);
+            return location == MISSING ? null : read(location);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> getMessagesById(int[] message_ids){
+        List<Message> messages = new ArrayList<>(message_ids.length);
+        lock.readLock().lock();
+        try {
+            for (int message_id : message_ids){
+                long location = locations.get(message_id, MISSING);
+                if (location != MISSING){
+                    messages.add(read(location));
+                }
+            }
+            return messages;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Message insertMessage(Message message){
+        lock.writeLock().lock();
+        try {
+            int message_id = nextId;
+            put(message_id, message.getPosted_by(), message.getTime_posted_epoch(), message.getMessage_text());
+            nextId++;
+            return new Message(message_id, message.getPosted_by(), message.getMessage_text(),
+                    message.getTime_posted_epoch());
+        }
+        catch(IOException e){
+            System.out.println(e.getMessage());
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        return null;
+    }
+
+    @Override
+    public List<Message> insertMessages(List<Message> messages, int chunkSize){
+        if (messages.isEmpty()){ return new ArrayList<>(); }
+        lock.writeLock().lock();
+        try {
+            int first = nextId;
+            putBatch(first, messages);
+            nextId += messages.size();
+            List<Message> inserted = new ArrayList<>(messages.size());
+            for (int i = 0; i < messages.size(); i++){
+                Message message = messages.get(i);
+                inserted.add(new Message(first + i, message.getPosted_by(), message.getMessage_text(),
+                        message.getTime_posted_epoch()));
+            }
+            return inserted;
+        }
+        catch(IOException e){
+            System.out.println(e.getMessage());
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        return null;
+    }
+
+    @Override
+    public Message updateMessage(int message_id, Message message){
+        lock.writeLock().lock();
+        try {
+            long location = locations.get(message_id, MISSING);
+            if (location == MISSING){ return null; }
+            ByteBuffer buffer = segment(location).buffer;
+            int body = offset(location) + HEADER;
+            int posted_by = buffer.getInt(body + 5);
+            long time_posted_epoch = buffer.getLong(body + 9);
+            put(message_id, posted_by, time_posted_epoch, message.getMessage_text());
+            return new Message(message_id, posted_by, message.getMessage_text(), time_posted_epoch);
+        }
+        catch(IOException e){
+            System.out.println(e.getMessage());
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        return null;
+    }
+
+    @Override
+    public Message deleteMessage(int message_id){
+        lock.writeLock().lock();
+        try {
+            long location = locations.get(message_id, MISSING);
+            if (location == MISSING){ return null; }
+            Message message = read(location);
+            delete(message_id);
+            return message;
+        }
+        catch(IOException e){
+            System.out.println(e.getMessage());
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        return null;
+    }
+
+    @Override
+    public List<Message> getAllMessagesPostedBy(int account_id){
+        return getMessagesPostedByPage(account_id, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Message> getMessagesPostedByPage(int account_id, int offset, int limit){
+        lock.readLock().lock();
+        try {
+            int[] ids = idsPostedBy(account_id);
+            int end = (int) Math.min((long) offset + limit, ids.length);
+            List<Message> messages = new ArrayList<>(Math.max(0, end - offset));
+            for (int i = offset; i < end; i++){
+                messages.add(read(locations.get(ids[i], MISSING)));
+            }
+            return messages;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void streamAllMessagesPostedBy(int account_id, RowConsumer<Message> consumer) throws IOException {
+        int[] ids;
+        lock.readLock().lock();
+        try {
+            ids = idsPostedBy(account_id);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        stream(ids, consumer);
+    }
+
+    /**
+     * Hand the messages with these ids to a consumer, in the same order. Each batch is read under the read lock and
+     * handed over after releasing it; records can be moved by a compaction in between, so each batch looks its ids'
+     * locations up again, and messages deleted in the meantime are skipped.
+     */
+    private void stream(int[] message_ids, RowConsumer<Message> consumer) throws IOException {
+        for (int from = 0; from < message_ids.length; from += STREAM_BATCH){
+            int to = Math.min(from + STREAM_BATCH, message_ids.length);
+            for (Message message : getMessagesById(Arrays.copyOfRange(message_ids, from, to))){
+                consumer.accept(message);
+            }
+        }
+    }
+
+    /**
+     * Compact the full segments that are at most half live into one.
+     *
+     * @return the number of segments compacted.
+     * @throws IOException if a segment could not be written or deleted.
+     */
+    public int compact() throws IOException {
+        compactionLock.lock();
+        try {
+            TreeMap<Integer, Segment> compacting = new TreeMap<>();
+            long[] kept;
+            int keptBytes = 0;
+            int count = 0;
+            lock.readLock().lock();
+            try {
+                if (closed){ return 0; }
+                long sizes = 0;
+                for (Segment segment : segments.values()){
+                    //the copy has to fit in one mapping; the rest wait for the next compaction
+                    if (segment != active && segment.liveBytes * 2 <= segment.size
+                            && sizes + segment.size <= Integer.MAX_VALUE){
+                        compacting.put(segment.number, segment);
+                        sizes += segment.size;
+                    }
+                }
+                if (compacting.isEmpty()){ return 0; }
+                //decide what to copy; records are only ever added, never changed, so they can be copied after
+                kept = new long[16];
+                for (Segment segment : compacting.values()){
+                    boolean olderExists = segments.firstKey() < segment.number;
+                    for (int offset : recordOffsets(segment)){
+                        int id = segment.buffer.getInt(offset + HEADER + 1);
+                        long location = location(segment.number, offset);
+                        boolean live = segment.buffer.get(offset + HEADER) == PUT
+                                ? locations.get(id, MISSING) == location
+                                : olderExists || id == nextId - 1;
+                        if (live){
+                            if (count == kept.length){ kept = Arrays.copyOf(kept, count * 2); }
+                            kept[count++] = location;
+                            keptBytes += recordBytes(location);
+                        }
+                    }
+                }
+                if (compacting.size() == 1 && keptBytes == sizes){ return 0; }
+            }
+            finally {
+                lock.readLock().unlock();
+            }
+
+            //the copy takes the place of the newest segment compacted
+            int number = compacting.lastKey();
+            Path copy = directory.resolve(String.format("%010d.compact", number));
+            if (count > 0){
+                copy(compacting, kept, count, copy);
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (closed){
+                    Files.deleteIfExists(copy);
+                    return 0;
+                }
+                if (count > 0){
+                    Files.move(copy, compacting.get(number).path, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                    Segment compacted = openSegment(number, 0);
+                    compacted.size = keptBytes;
+                    segments.put(number, compacted);
+                    int offset = 0;
+                    for (int i = 0; i < count; i++){
+                        Segment from = compacting.get((int) (kept[i] >>> 32));
+                        int id = from.buffer.getInt(offset(kept[i]) + HEADER + 1);
+                        int bytes = HEADER + from.buffer.getInt(offset(kept[i]));
+                        //a message updated or deleted since it was copied stays where it is now
+                        if (from.buffer.get(offset(kept[i]) + HEADER) == PUT && locations.get(id, MISSING) == kept[i]){
+                            locations.put(id, location(number, offset));
+                            compacted.liveBytes += bytes;
+                        }
+                        offset += bytes;
+                    }
+                }
+                else {
+                    segments.remove(number);
+                }
+                //whatever a crash leaves of these is older than the copy, and replays to the same index
+                for (Segment segment : compacting.values()){
+                    if (segment.number != number){ segments.remove(segment.number); }
+                    segment.channel.close();
+                    if (segment.number != number || count == 0){ Files.delete(segment.path); }
+                }
+                return compacting.size();
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+        }
+        finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Stop compacting and force everything written to disk. The mapped memory itself is released once it is garbage
+     * collected.
+     */
+    @Override
+    public void close() throws IOException {
+        if (compactor != null){
+            compactor.shutdownNow();
+        }
+        lock.writeLock().lock();
+        try {
+            if (closed){ return; }
+            closed = true;
+            for (Segment segment : segments.values()){
+                segment.buffer.force();
+                segment.channel.close();
+            }
+            directoryLock.channel().close();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactQuietly(){
+        try {
+            compact();
+        }
+        catch(IOException e){
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Write the records at these locations one after another into a new file, and force it to disk. Neighbouring
+     * records are written together.
+     */
+    private static void copy(TreeMap<Integer, Segment> from, long[] locations, int count, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+            for (int i = 0; i < count; ){
+                Segment segment = from.get((int) (locations[i] >>> 32));
+                int start = offset(locations[i]);
+                int end = start;
+                for (; i < count && locations[i] == location(segment.number, end); i++){
+                    end += HEADER + segment.buffer.getInt(end);
+                }
+                ByteBuffer run = segment.buffer.slice(start, end - start);
+                while (run.hasRemaining()){
+                    channel.write(run);
+                }
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * @return the offsets of the message and tombstone records in a segment, including those inside batches.
+     */
+    private static int[] recordOffsets(Segment segment){
+        ByteBuffer buffer = segment.buffer;
+        int[] offsets = new int[64];
+        int count = 0;
+        for (int offset = 0; offset < segment.size; offset += HEADER + buffer.getInt(offset)){
+            boolean batch = buffer.get(offset + HEADER) == BATCH;
+            int end = offset + HEADER + buffer.getInt(offset);
+            for (int at = batch ? offset + HEADER + 1 : offset; at < end; at = batch ? at + HEADER + buffer.getInt(at) : end){
+                if (count == offsets.length){ offsets = Arrays.copyOf(offsets, count * 2); }
+                offsets[count++] = at;
+            }
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    /**
+     * Append a message record and point the index at it.
+     */
+    private void put(int message_id, int posted_by, long time_posted_epoch, String message_text) throws IOException {
+        String text = message_text == null ? "" : message_text;
+        Segment segment = reserve(HEADER + maxBody(text));
+        int offset = segment.size;
+        int length = encode(segment.buffer, offset, message_id, posted_by, time_posted_epoch, text);
+        long location = seal(segment, offset, length);
+        indexPut(message_id, posted_by, time_posted_epoch, location);
+    }
+
+    /**
+     * Append one batch record holding a message record for each message, with message_ids from firstId on, and point
+     * the index at them.
+     */
+    private void putBatch(int firstId, List<Message> messages) throws IOException {
+        long maxBody = 1;
+        for (Message message : messages){
+            maxBody += HEADER + maxBody(text(message));
+        }
+        if (HEADER + maxBody > Integer.MAX_VALUE){
+            throw new IOException("A batch of " + messages.size() + " messages is too large for the message log");
+        }
+        Segment segment = reserve((int) (HEADER + maxBody));
+        int offset = segment.size;
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.put(offset + HEADER, BATCH);
+        int at = offset + HEADER + 1;
+        for (int i = 0; i < messages.size(); i++){
+            Message message = messages.get(i);
+            int length = encode(buffer, at, firstId + i, message.getPosted_by(), message.getTime_posted_epoch(),
+                    text(message));
+            buffer.putInt(at + 4, checksum(buffer, at + HEADER, length));
+            buffer.putInt(at, length);
+            at += HEADER + length;
+        }
+        //nothing of the batch is there until its own length is written
+        seal(segment, offset, at - offset - HEADER);
+        at = offset + HEADER + 1;
+        for (int i = 0; i < messages.size(); i++){
+            Message message = messages.get(i);
+            indexPut(firstId + i, message.getPosted_by(), message.getTime_posted_epoch(),
+                    location(segment.number, at));
+            at += HEADER + buffer.getInt(at);
+        }
+    }
+
+    /**
+     * Encode the body of a message record, leaving its length and checksum to be written.
+     *
+     * @return the length of the body.
+     */
+    private int encode(MappedByteBuffer buffer, int offset, int message_id, int posted_by, long time_posted_epoch,
+                       String text){
+        int body = offset + HEADER;
+        buffer.put(body, PUT);
+        buffer.putInt(body + 1, message_id);
+        buffer.putInt(body + 5, posted_by);
+        buffer.putLong(body + 9, time_posted_epoch);
+        ByteBuffer textBuffer = buffer.slice(body + PUT_FIXED, maxBody(text) - PUT_FIXED);
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(text), textBuffer, true);
+        encoder.flush(textBuffer);
+        return PUT_FIXED + textBuffer.position();
+    }
+
+    /**
+     * @return the most bytes the body of a message record with this text can take. UTF-8 takes at most three bytes
+     * per char, so that much is reserved and the text encoded straight into the segment.
+     */
+    private static int maxBody(String text){
+        return PUT_FIXED + text.length() * 3;
+    }
+
+    private static String text(Message message){
+        return message.getMessage_text() == null ? "" : message.getMessage_text();
+    }
+
+    /**
+     * Append a tombstone and drop the message from the index.
+     */
+    private void delete(int message_id) throws IOException {
+        Segment segment = reserve(HEADER + DELETE_BODY);
+        int offset = segment.size;
+        segment.buffer.put(offset + HEADER, DELETE);
+        segment.buffer.putInt(offset + HEADER + 1, message_id);
+        seal(segment, offset, DELETE_BODY);
+        indexRemove(message_id);
+    }
+
+    /**
+     * Checksum a record whose body has been written and make it visible by writing its length.
+     *
+     * @return the location of the record.
+     */
+    private long seal(Segment segment, int offset, int length){
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putInt(offset + 4, checksum(buffer, offset + HEADER, length));
+        buffer.putInt(offset, length);
+        segment.size = offset + HEADER + length;
+        if (fsync){
+            buffer.force(offset, HEADER + length);
+        }
+        return location(segment.number, offset);
+    }
+
+    /**
+     * @return the segment to append a record of this many bytes to, starting a new one if the newest is full. A
+     * record larger than a segment, such as a large batch, gets a segment of its own size.
+     */
+    private Segment reserve(int bytes) throws IOException {
+        if (active.size + bytes > active.buffer.capacity()){
+            Segment next = openSegment(active.number + 1, Math.max(segmentBytes, bytes));
+            segments.put(next.number, next);
+            active = next;
+        }
+        return active;
+    }
+
+    private void replay(Segment segment){
+        ByteBuffer buffer = segment.buffer;
+        int capacity = buffer.capacity();
+        int offset = 0;
+        while (offset + HEADER <= capacity){
+            int length = buffer.getInt(offset);
+            if (length == 0){ break; }
+            boolean valid = length >= DELETE_BODY && length <= capacity - offset - HEADER
+                    && buffer.getInt(offset + 4) == checksum(buffer, offset + HEADER, length);
+            byte type = valid ? buffer.get(offset + HEADER) : 0;
+            valid = valid && ((type == PUT && length >= PUT_FIXED) || (type == DELETE && length == DELETE_BODY)
+                    || (type == BATCH && length >= 1 + HEADER + PUT_FIXED));
+            if (!valid){
+                System.out.println("Message log segment " + segment.path + " is damaged at offset " + offset
+                        + ", discarding the rest of it");
+                zero(buffer, offset);
+                break;
+            }
+
+            int end = offset + HEADER + length;
+            for (int at = type == BATCH ? offset + HEADER + 1 : offset; at < end; at += HEADER + buffer.getInt(at)){
+                int body = at + HEADER;
+                int id = buffer.getInt(body + 1);
+                if (buffer.get(body) == PUT){
+                    indexPut(id, buffer.getInt(body + 5), buffer.getLong(body + 9), location(segment.number, at));
+                }
+                else {
+                    indexRemove(id);
+                }
+                nextId = Math.max(nextId, id + 1);
+                if (type != BATCH){ break; }
+            }
+            offset = end;
+        }
+        segment.size = offset;
+    }
+
+    private void indexPut(int message_id, int posted_by, long time_posted_epoch, long location){
+        long previous = locations.get(message_id, MISSING);
+        if (previous != MISSING){
+            segment(previous).liveBytes -= recordBytes(previous);
+        }
+        else {
+            link(message_id, posted_by);
+            appendByTime(message_id, time_posted_epoch);
+        }
+        locations.put(message_id, location);
+        segment(location).liveBytes += recordBytes(location);
+    }
+
+    private void indexRemove(int message_id){
+        long location = locations.get(message_id, MISSING);
+        if (location == MISSING){ return; }
+        unlink(message_id, segment(location).buffer.getInt(offset(location) + HEADER + 5));
+        segment(location).liveBytes -= recordBytes(location);
+        locations.remove(message_id);
+        if (++deadInTimeOrder > locations.size()){
+            timeOrderStale = true;
+        }
+    }
+
+    private void link(int message_id, int posted_by){
+        int latest = latestIdByAuthor.get(posted_by, NONE);
+        if (latest != NONE){
+            previousIdByAuthor.put(message_id, latest);
+            nextIdByAuthor.put(latest, message_id);
+        }
+        latestIdByAuthor.put(posted_by, message_id);
+    }
+
+    private void unlink(int message_id, int posted_by){
+        int previous = previousIdByAuthor.get(message_id, NONE);
+        int next = nextIdByAuthor.get(message_id, NONE);
+        previousIdByAuthor.remove(message_id);
+        nextIdByAuthor.remove(message_id);
+        if (next != NONE){
+            if (previous != NONE){ previousIdByAuthor.put(next, previous); }
+            else { previousIdByAuthor.remove(next); }
+        }
+        else if (previous != NONE){
+            latestIdByAuthor.put(posted_by, previous);
+        }
+        else {
+            latestIdByAuthor.remove(posted_by);
+        }
+        if (previous != NONE){
+            if (next != NONE){ nextIdByAuthor.put(previous, next); }
+            else { nextIdByAuthor.remove(previous); }
+        }
+    }
+
+    private void appendByTime(int message_id, long time_posted_epoch){
+        if (timeOrderStale){ return; }
+        if (timeOrdered > 0 && (epochsByTime[timeOrdered - 1] > time_posted_epoch
+                || (epochsByTime[timeOrdered - 1] == time_posted_epoch && idsByTime[timeOrdered - 1] > message_id))){
+            timeOrderStale = true;
+            return;
+        }
+        if (timeOrdered == idsByTime.length){
+            idsByTime = Arrays.copyOf(idsByTime, timeOrdered * 2);
+            epochsByTime = Arrays.copyOf(epochsByTime, timeOrdered * 2);
+        }
+        idsByTime[timeOrdered] = message_id;
+        epochsByTime[timeOrdered++] = time_posted_epoch;
+    }
+
+    private void sortIdsByTime(){
+        int[] ids = locations.keys();
+        long[] epochs = new long[ids.length];
+        for (int i = 0; i < ids.length; i++){
+            long location = locations.get(ids[i], MISSING);
+            epochs[i] = segment(location).buffer.getLong(offset(location) + HEADER + 9);
+        }
+        sort(ids, epochs, new int[ids.length], new long[ids.length], 0, ids.length);
+        idsByTime = ids;
+        epochsByTime = epochs;
+        timeOrdered = ids.length;
+        deadInTimeOrder = 0;
+        timeOrderStale = false;
+    }
+
+    /**
+     * @return the first position in idsByTime at or after (time_posted_epoch, message_id).
+     */
+    private int firstByTime(long time_posted_epoch, long message_id){
+        int low = 0;
+        int high = timeOrdered;
+        while (low < high){
+            int middle = (low + high) >>> 1;
+            boolean before = epochsByTime[middle] < time_posted_epoch
+                    || (epochsByTime[middle] == time_posted_epoch && idsByTime[middle] < message_id);
+            if (before){ low = middle + 1; }
+            else { high = middle; }
+        }
+        return low;
+    }
+
+    /**
+     * @return the live message_ids of one account, newest first by time_posted_epoch and then message_id.
+     */
+    private int[] idsPostedBy(int account_id){
+        int[] ids = new int[16];
+        long[] epochs = new long[16];
+        int count = 0;
+        for (int id = latestIdByAuthor.get(account_id, NONE); id != NONE; id = previousIdByAuthor.get(id, NONE)){
+            if (count == ids.length){
+                ids = Arrays.copyOf(ids, count * 2);
+                epochs = Arrays.copyOf(epochs, count * 2);
+            }
+            long location = locations.get(id, MISSING);
+            ids[count] = id;
+            epochs[count++] = segment(location).buffer.getLong(offset(location) + HEADER + 9);
+        }
+        sort(ids, epochs, new int[count], new long[count], 0, count);
+        //sorted oldest first, so reverse
+        int[] newestFirst = new int[count];
+        for (int i = 0; i < count; i++){
+            newestFirst[i] = ids[count - 1 - i];
+        }
+        return newestFirst;
+    }
+
+    /**
+     * Merge sort message_ids and their times together by (time_posted_epoch, message_id).
+     */
+    private static void sort(int[] ids, long[] epochs, int[] idScratch, long[] epochScratch, int from, int to){
+        if (to - from < 2){ return; }
+        int middle = (from + to) >>> 1;
+        sort(ids, epochs, idScratch, epochScratch, from, middle);
+        sort(ids, epochs, idScratch, epochScratch, middle, to);
+        if (compare(epochs[middle - 1], ids[middle - 1], epochs[middle], ids[middle]) <= 0){ return; }
+        System.arraycopy(ids, from, idScratch, from, to - from);
+        System.arraycopy(epochs, from, epochScratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int at = from; at < to; at++){
+            boolean takeLeft = right >= to || (left < middle
+                    && compare(epochScratch[left], idScratch[left], epochScratch[right], idScratch[right]) <= 0);
+            int taken = takeLeft ? left++ : right++;
+            ids[at] = idScratch[taken];
+            epochs[at] = epochScratch[taken];
+        }
+    }
+
+    private static int compare(long epoch, int id, long otherEpoch, int otherId){
+        int byTime = Long.compare(epoch, otherEpoch);
+        return byTime != 0 ? byTime : Integer.compare(id, otherId);
+    }
+
+    private Message read(long location){
+        ByteBuffer buffer = segment(location).buffer;
+        int offset = offset(location);
+        int body = offset + HEADER;
+        byte[] text = new byte[buffer.getInt(offset) - PUT_FIXED];
+        buffer.get(body + PUT_FIXED, text);
+        return new Message(buffer.getInt(body + 1), buffer.getInt(body + 5),
+                new String(text, StandardCharsets.UTF_8), buffer.getLong(body + 9));
+    }
+
+    private int recordBytes(long location){
+        return HEADER + segment(location).buffer.getInt(offset(location));
+    }
+
+    private int checksum(ByteBuffer buffer, int from, int length){
+        crc.reset();
+        crc.update(buffer.slice(from, length));
+        return (int) crc.getValue();
+    }
+
+    private Segment segment(long location){
+        return segments.get((int) (location >>> 32));
+    }
+
+    private static int offset(long location){
+        return (int) location;
+    }
+
+    private static long location(int segment, int offset){
+        return ((long) segment << 32) | offset;
+    }
+
+    /**
+     * Map a segment file, growing it to at least this capacity. An existing file keeps its size.
+     */
+    private Segment openSegment(int number, int capacity) throws IOException {
+        Path path = directory.resolve(String.format("%010d.log", number));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        return new Segment(number, path, channel,
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(capacity, channel.size())));
+    }
+
+    private static void zero(ByteBuffer buffer, int from){
+        byte[] zeros = new byte[Math.min(65536, buffer.capacity() - from)];
+        for (int at = from; at < buffer.capacity(); at += zeros.length){
+            buffer.put(at, zeros, 0, Math.min(zeros.length, buffer.capacity() - at));
+        }
+    }
+
+    /**
+     * One mapped segment file.
+     */
+    private static final class Segment {
+        final int number;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        /**
+         * The bytes of records written, where the next record goes.
+         */
+        int size;
+        /**
+         * The bytes of records that are the newest version of a stored message.
+         */
+        long liveBytes;
+
+        Segment(int number, Path path, FileChannel channel, MappedByteBuffer buffer){
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -1,206 +1,107 @@
 package DAO;
 
-import java.sql.*;
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.List;
 
 import Model.Message;
-import Util.ConnectionUtil;
+import Model.MessageCursor;
 
 /**
- * A DAO is a class that mediates the transformation of data between the format of 
+ * A DAO is a class that mediates the transformation of data between the format of
  * objects in Java to rows in a database.
- * 
- * Table "Message"
+ *
+ * This is what the services need from wherever messages are stored. JdbcMessageDAO keeps them in the H2 message
+ * table and ColumnarMessageDAO keeps them in memory; the message.store system property picks one at startup, see
+ * MessageStore.
+ *
+ * Message "table"
  * message_id integer primary key auto_increment,
  * posted_by integer,
  * message_text varchar(255),
  * time_posted_epoch long,
  * foreign key (posted_by) references Account(account_id)
  */
-public class MessageDAO {
+public interface MessageDAO {
 
     /**
-     * Retrieve all messages from the Message table.
-     *
-     * @return all messages.
+     * @return all messages, in message_id order.
      */
-    public List<Message> getAllMessages(){
-        Connection connection = ConnectionUtil.getConnection();
-        List<Message> messages = new ArrayList<>();
-        try {
-            //SQL query
-            String sql = "SELECT * FROM Message;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-
-            //execute the query
-            ResultSet rs = preparedStatement.executeQuery();
-            
-            //iterate through results, adding each message to the list
-            while(rs.next()){
-                Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
-                        rs.getString("message_text"), rs.getLong("time_posted_epoch"));
-                messages.add(message);
-            }
-        }
-        catch(SQLException e){
-            System.out.println(e.getMessage());
-        }
-        return messages;
-    }
+    List<Message> getAllMessages();
 
     /**
-     * Retrieve a specific message using its message ID.
+     * Hand every message to the consumer, in message_id order, without collecting them into a list first.
      *
-     * @param id a message ID.
+     * @throws IOException if the messages cannot be read, or the consumer fails to write a message.
      */
-    public Message getMessageById(int message_id){
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            //SQL query
-            String sql = "SELECT * FROM message WHERE message_id=?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-
-            //set the id
-            preparedStatement.setInt(1, message_id);
+    void streamAllMessages(RowConsumer<Message> consumer) throws IOException;
 
-            //execute the query
-            ResultSet rs = preparedStatement.executeQuery();
+    /**
+     * @param since only messages posted at or after this epoch time.
+     * @param until only messages posted before this epoch time.
+     * @param after only messages after this cursor, or null to start at the beginning of the window.
+     * @param limit the most messages to return.
+     * @return one page of the messages in the window, ordered by time_posted_epoch and then message_id.
+     */
+    List<Message> getMessagesPage(long since, long until, MessageCursor after, int limit);
 
-            //iterate through the results, returning the message
-            while(rs.next()){
-                Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
-                        rs.getString("message_text"), rs.getLong("time_posted_epoch"));
-                return message;
-            }
-        }
-        catch(SQLException e){
-            System.out.println(e.getMessage());
-        }
-        return null;
-    }
+    /**
+     * @return the message with this id, or null if there is none.
+     */
+    Message getMessageById(int message_id);
 
     /**
-     * Add a message record into the database which matches the values contained in the message object.
-     * The message_id will be automatically generated by the SQL database, and JDBC will be able
-     * to retrieve the generated ID automatically.
+     * Look many messages up at once, for pages of ids that come from an index rather than a query.
      *
-     * @param Message an object modelling a message. the Message object does not contain an message ID.
+     * @return the messages with these ids, in the same order, skipping ids that have no message.
      */
-    public Message insertMessage(Message message){
-        Connection connection = ConnectionUtil.getConnection();
-
-        try {
-            //SQL Query
-            String sql = "INSERT INTO Message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?);";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-
-            //set the posted_by, message_text, and time_posted_epoch
-            preparedStatement.setInt(1, message.getPosted_by());
-            preparedStatement.setString(2, message.getMessage_text());
-            preparedStatement.setLong(3, message.getTime_posted_epoch());
-
-            //execute query, generate primary key
-            preparedStatement.executeUpdate();
-            ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys();
-
-            //return inserted message with its generated primary key
-            if(pkeyResultSet.next()){
-                int generated_message_id = (int) pkeyResultSet.getLong(1);
-                return new Message(generated_message_id, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
-            }
-        }
-        catch(SQLException e){
-            System.out.println(e.getMessage());
-        }
-        return null;
-    }
-
+    List<Message> getMessagesById(int[] message_ids);
 
     /**
-     * Update the message identified by the message id to the values contained in the message object.
+     * Store a new message, generating its message_id.
      *
-     * @param id a message ID.
-     * @param message a message object. the message object does not contain a message ID.
+     * @param message a message without an id.
+     * @return the stored message with its id, or null if it could not be stored.
      */
-    public void updateMessage(int message_id, Message message){
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            //Write SQL logic here
-            String sql = "UPDATE message SET message_text=? WHERE message_id = ?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    Message insertMessage(Message message);
 
-            //Set the message_text, time_posted_epoch, and id
-            preparedStatement.setString(1, message.getMessage_text());
-            preparedStatement.setInt(2, message_id);
-
-            //update the message
-            preparedStatement.executeUpdate();
-        }
-        catch(SQLException e){
-            System.out.println(e.getMessage());
-        }
-    }
+    /**
+     * Store many new messages at once. Either every message is stored or none of them are.
+     *
+     * @param messages messages without ids.
+     * @param chunkSize the most messages to write in one go, for stores that write in batches.
+     * @return the stored messages with their ids, in the same order, or null if they could not be stored.
+     */
+    List<Message> insertMessages(List<Message> messages, int chunkSize);
 
     /**
-     * delete a message identified by the message id.
+     * Replace the message_text of a message. Does nothing if there is no message with that id.
      *
-     * @param id a message ID.
+     * @param message holds the new message_text.
+     * @return the message as updated, or null if there was no message with that id.
      */
-    public Message deleteMessage(int id){
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            //SQL Query
-            String sql = "DELETE FROM Message WHERE Message.message_id=?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    Message updateMessage(int message_id, Message message);
 
-            //Set the id
-            preparedStatement.setInt(1, id);
+    /**
+     * @return the deleted message, or null if there was no message with that id.
+     */
+    Message deleteMessage(int message_id);
 
-            //execute the query
-            ResultSet rs = preparedStatement.executeQuery();
+    /**
+     * @return all messages posted by the account, newest first.
+     */
+    List<Message> getAllMessagesPostedBy(int account_id);
 
-            //iterate through the result, returning the deleted message
-            while(rs.next()){
-                Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
-                        rs.getString("message_text"), rs.getLong("time_posted_epoch"));
-                return message;
-            }
-        }catch(SQLException e){
-            System.out.println(e.getMessage());
-        }
-        return null;
-    }
+    /**
+     * @param offset how many of the newest messages to skip.
+     * @param limit the most messages to return.
+     * @return one page of the messages posted by the account, newest first.
+     */
+    List<Message> getMessagesPostedByPage(int account_id, int offset, int limit);
 
     /**
-     * TODO: Retrieve all messages from the Message table given a posted_by id.
+     * Hand every message posted by the account to the consumer, newest first, without collecting them first.
      *
-     * @return all messages posted by the user with id that matches posted_by.
+     * @throws IOException if the messages cannot be read, or the consumer fails to write a message.
      */
-    public List<Message> getAllMessagesPostedBy(int account_id){
-        Connection connection = ConnectionUtil.getConnection();
-        List<Message> messages = new ArrayList<>();
-        try {
-            //SQL query
-            String sql = "SELECT * FROM Message WHERE Message.posted_by=?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-
-            //set the posted_by
-            preparedStatement.setInt(1, account_id);
-
-            //execute the query
-            ResultSet rs = preparedStatement.executeQuery();
-            
-            //iterate through results, adding each message to the list
-            while(rs.next()){
-                Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
-                        rs.getString("message_text"), rs.getLong("time_posted_epoch"));
-                messages.add(message);
-            }
-        }
-        catch(SQLException e){
-            System.out.println(e.getMessage());
-        }
-        return messages;
-    }
+    void streamAllMessagesPostedBy(int account_id, RowConsumer<Message> consumer) throws IOException;
 }
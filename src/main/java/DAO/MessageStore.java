@@ -0,0 +1,59 @@
+package DAO;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Where messages are kept, chosen with the message.store system property.
+ *
+ * JDBC keeps them in the H2 message table through JdbcMessageDAO. MEMORY keeps them in a ColumnarMessageDAO, filled
+ * from the message table at startup; after that the table is no longer written, so messages posted while running
+ * are lost when the process exits. LOG keeps them in a LogMessageDAO under the message.log.dir directory, filled
+ * from the message table the first time it is opened and durable from then on; its segment size, fsync and
+ * compaction interval are set with message.log.segmentBytes, message.log.fsync and
+ * message.log.compactionIntervalMillis. Accounts stay in H2 either way.
+ */
+public enum MessageStore {
+    JDBC,
+    MEMORY,
+    LOG;
+
+    /**
+     * @return the store named by message.store, JDBC if it is not set.
+     * @throws IllegalArgumentException if message.store names no store.
+     */
+    public static MessageStore fromSystemProperties(){
+        return valueOf(System.getProperty("message.store", JDBC.name()).toUpperCase());
+    }
+
+    /**
+     * @return a new MessageDAO for this store, holding the messages currently in the message table.
+     * @throws IllegalStateException if the store could not be opened.
+     */
+    public MessageDAO createDAO(){
+        JdbcMessageDAO jdbcMessageDAO = new JdbcMessageDAO();
+        try {
+            switch (this){
+                case MEMORY:
+                    ColumnarMessageDAO columnarMessageDAO = new ColumnarMessageDAO();
+                    jdbcMessageDAO.streamAllMessages(columnarMessageDAO::load);
+                    return columnarMessageDAO;
+                case LOG:
+                    LogMessageDAO logMessageDAO = new LogMessageDAO(
+                            Paths.get(System.getProperty("message.log.dir", "message-log")),
+                            Integer.getInteger("message.log.segmentBytes", 64 << 20),
+                            Boolean.getBoolean("message.log.fsync"),
+                            Long.getLong("message.log.compactionIntervalMillis", 10000));
+                    if (logMessageDAO.isNew()){
+                        jdbcMessageDAO.streamAllMessages(logMessageDAO::load);
+                    }
+                    return logMessageDAO;
+                default:
+                    return jdbcMessageDAO;
+            }
+        }
+        catch (IOException e){
+            throw new IllegalStateException("Could not open the " + this + " message store", e);
+        }
+    }
+}
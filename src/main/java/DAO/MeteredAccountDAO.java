@@ -0,0 +1,88 @@
+package DAO;
+
+import java.io.IOException;
+import java.util.List;
+
+import Model.Account;
+import Util.LatencyHistogram;
+import Util.Metrics;
+
+/**
+ * An AccountDAO that records how long each of its methods takes, as dao_method_duration_seconds in the given Metrics.
+ */
+public class MeteredAccountDAO extends AccountDAO {
+
+    private final LatencyHistogram getAllAccounts;
+    private final LatencyHistogram streamAllAccounts;
+    private final LatencyHistogram insertAccount;
+    private final LatencyHistogram getAccountByUsername;
+    private final LatencyHistogram getAccountById;
+
+    public MeteredAccountDAO(Metrics metrics){
+        getAllAccounts = timer(metrics, "getAllAccounts");
+        streamAllAccounts = timer(metrics, "streamAllAccounts");
+        insertAccount = timer(metrics, "insertAccount");
+        getAccountByUsername = timer(metrics, "getAccountByUsername");
+        getAccountById = timer(metrics, "getAccountById");
+    }
+
+    @Override
+    public List<Account> getAllAccounts(){
+        long start = System.nanoTime();
+        try {
+            return super.getAllAccounts();
+        }
+        finally {
+            getAllAccounts.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void streamAllAccounts(RowConsumer<Account> consumer) throws IOException {
+        long start = System.nanoTime();
+        try {
+            super.streamAllAccounts(consumer);
+        }
+        finally {
+            streamAllAccounts.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Account insertAccount(Account account){
+        long start = System.nanoTime();
+        try {
+            return super.insertAccount(account);
+        }
+        finally {
+            insertAccount.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Account getAccountByUsername(String username){
+        long start = System.nanoTime();
+        try {
+            return super.getAccountByUsername(username);
+        }
+        finally {
+            getAccountByUsername.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Account getAccountById(int id){
+        long start = System.nanoTime();
+        try {
+            return super.getAccountById(id);
+        }
+        finally {
+            getAccountById.record(System.nanoTime() - start);
+        }
+    }
+
+    private static LatencyHistogram timer(Metrics metrics, String method){
+        return metrics.timer("dao_method_duration_seconds", "Time spent in each DAO method.",
+                Metrics.labels("dao", "AccountDAO", "method", method));
+    }
+}
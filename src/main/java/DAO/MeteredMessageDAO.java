@@ -0,0 +1,192 @@
+package DAO;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import Model.Message;
+import Model.MessageCursor;
+import Util.LatencyHistogram;
+import Util.Metrics;
+
+/**
+ * Wraps another MessageDAO and records how long each of its methods takes, as dao_method_duration_seconds in the
+ * given Metrics. The streaming methods include the time their consumer spends writing each message. Closing it closes
+ * the wrapped MessageDAO, if that can be closed.
+ */
+public class MeteredMessageDAO implements MessageDAO, Closeable {
+
+    private final MessageDAO messageDAO;
+    private final LatencyHistogram getAllMessages;
+    private final LatencyHistogram streamAllMessages;
+    private final LatencyHistogram getMessagesPage;
+    private final LatencyHistogram getMessageById;
+    private final LatencyHistogram getMessagesById;
+    private final LatencyHistogram insertMessage;
+    private final LatencyHistogram insertMessages;
+    private final LatencyHistogram updateMessage;
+    private final LatencyHistogram deleteMessage;
+    private final LatencyHistogram getAllMessagesPostedBy;
+    private final LatencyHistogram getMessagesPostedByPage;
+    private final LatencyHistogram streamAllMessagesPostedBy;
+
+    public MeteredMessageDAO(MessageDAO messageDAO, Metrics metrics){
+        this.messageDAO = messageDAO;
+        getAllMessages = timer(metrics, "getAllMessages");
+        streamAllMessages = timer(metrics, "streamAllMessages");
+        getMessagesPage = timer(metrics, "getMessagesPage");
+        getMessageById = timer(metrics, "getMessageById");
+        getMessagesById = timer(metrics, "getMessagesById");
+        insertMessage = timer(metrics, "insertMessage");
+        insertMessages = timer(metrics, "insertMessages");
+        updateMessage = timer(metrics, "updateMessage");
+        deleteMessage = timer(metrics, "deleteMessage");
+        getAllMessagesPostedBy = timer(metrics, "getAllMessagesPostedBy");
+        getMessagesPostedByPage = timer(metrics, "getMessagesPostedByPage");
+        streamAllMessagesPostedBy = timer(metrics, "streamAllMessagesPostedBy");
+    }
+
+    @Override
+    public List<Message> getAllMessages(){
+        long start = System.nanoTime();
+        try {
+            return messageDAO.getAllMessages();
+        }
+        finally {
+            getAllMessages.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void streamAllMessages(RowConsumer<Message> consumer) throws IOException {
+        long start = System.nanoTime();
+        try {
+            messageDAO.streamAllMessages(consumer);
+        }
+        finally {
+            streamAllMessages.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Message> getMessagesPage(long since, long until, MessageCursor after, int limit){
+        long start = System.nanoTime();
+        try {
+            return messageDAO.getMessagesPage(since, until, after, limit);
+        }
+        finally {
+            getMessagesPage.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Message getMessageById(int message_id){
+        long start = System.nanoTime();
+        try {
+            return messageDAO.getMessageById(message_id);
+        }
+        finally {
+            getMessageById.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Message> getMessagesById(int[] message_ids){
+        long start = System.nanoTime();
+        try {
+            return messageDAO.getMessagesById(message_ids);
+        }
+        finally {
+            getMessagesById.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Message insertMessage(Message message){
+        long start = System.nanoTime();
+        try {
+            return messageDAO.insertMessage(message);
+        }
+        finally {
+            insertMessage.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Message> insertMessages(List<Message> messages, int chunkSize){
+        long start = System.nanoTime();
+        try {
+            return messageDAO.insertMessages(messages, chunkSize);
+        }
+        finally {
+            insertMessages.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Message updateMessage(int message_id, Message message){
+        long start = System.nanoTime();
+        try {
+            return messageDAO.updateMessage(message_id, message);
+        }
+        finally {
+            updateMessage.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Message deleteMessage(int message_id){
+        long start = System.nanoTime();
+        try {
+            return messageDAO.deleteMessage(message_id);
+        }
+        finally {
+            deleteMessage.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Message> getAllMessagesPostedBy(int account_id){
+        long start = System.nanoTime();
+        try {
+            return messageDAO.getAllMessagesPostedBy(account_id);
+        }
+        finally {
+            getAllMessagesPostedBy.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Message> getMessagesPostedByPage(int account_id, int offset, int limit){
+        long start = System.nanoTime();
+        try {
+            return messageDAO.getMessagesPostedByPage(account_id, offset, limit);
+        }
+        finally {
+            getMessagesPostedByPage.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void streamAllMessagesPostedBy(int account_id, RowConsumer<Message> consumer) throws IOException {
+        long start = System.nanoTime();
+        try {
+            messageDAO.streamAllMessagesPostedBy(account_id, consumer);
+        }
+        finally {
+            streamAllMessagesPostedBy.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (messageDAO instanceof Closeable){
+            ((Closeable) messageDAO).close();
+        }
+    }
+
+    private static LatencyHistogram timer(Metrics metrics, String method){
+        return metrics.timer("dao_method_duration_seconds", "Time spent in each DAO method.",
+                Metrics.labels("dao", "MessageDAO", "method", method));
+    }
+}
@@ -0,0 +1,12 @@
+package DAO;
+
+import java.io.IOException;
+
+/**
+ * Receives the rows of a streamed query one at a time, while the query is still being read. Used to write large
+ * listings straight to a response without holding the whole result in memory.
+ */
+@FunctionalInterface
+public interface RowConsumer<T> {
+    void accept(T row) throws IOException;
+}
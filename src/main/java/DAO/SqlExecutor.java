@@ -0,0 +1,311 @@
+package DAO;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import Util.ConnectionUtil;
+import Util.Span;
+import Util.StatementCache;
+import Util.Tracer;
+
+/**
+ * Runs the SQL for the DAOs. It borrows a pooled connection for each operation, takes the prepared statement from the
+ * connection's StatementCache (or prepares and closes one itself if the connection has no cache), and always closes
+ * the ResultSets it opens, so the DAOs never have to manage JDBC resources themselves.
+ */
+public class SqlExecutor {
+
+    /**
+     * Sets the parameters of a prepared statement.
+     */
+    @FunctionalInterface
+    public interface Binder {
+        void bind(PreparedStatement preparedStatement) throws SQLException;
+    }
+
+    /**
+     * Turns the current row of a result set into an object.
+     */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Sets the parameters of a prepared statement from one row of a batch.
+     */
+    @FunctionalInterface
+    public interface RowBinder<T> {
+        void bind(PreparedStatement preparedStatement, T row) throws SQLException;
+    }
+
+    /**
+     * A binder for statements without parameters.
+     */
+    public static final Binder NO_PARAMETERS = preparedStatement -> { };
+
+    /**
+     * How many rows a streamed query asks the driver for at a time.
+     */
+    private static final int STREAM_FETCH_SIZE = Integer.getInteger("db.stream.fetchSize", 256);
+
+    /**
+     * SQL operations that failed, whatever the DAO then did with the exception.
+     */
+    private static final LongAdder errors = new LongAdder();
+
+    /**
+     * @return how many SQL operations have failed since startup.
+     */
+    public static long getErrorCount(){
+        return errors.sum();
+    }
+
+    /**
+     * Run a query and map every row it returns.
+     *
+     * @return the mapped rows, in the order the database returned them.
+     */
+    public static <T> List<T> queryList(String sql, Binder binder, RowMapper<T> mapper) throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            return queryList(connection, sql, binder, mapper);
+        }
+        catch (SQLException e){
+            errors.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Run a query on a connection the caller already holds and map every row it returns.
+     */
+    public static <T> List<T> queryList(Connection connection, String sql, Binder binder, RowMapper<T> mapper)
+            throws SQLException {
+        List<T> results = new ArrayList<>();
+        try (Span span = Tracer.span("sql.query").tag("sql", sql)) {
+            PreparedStatement preparedStatement = prepare(connection, sql, false);
+            try {
+                binder.bind(preparedStatement);
+                try (ResultSet rs = preparedStatement.executeQuery()) {
+                    while(rs.next()){
+                        results.add(mapper.map(rs));
+                    }
+                }
+            }
+            finally {
+                release(connection, preparedStatement);
+            }
+            span.tag("rows", results.size());
+        }
+        return results;
+    }
+
+    /**
+     * Run a query and hand each row to the consumer as soon as it is read, without collecting the rows. The query
+     * runs with H2's lazy execution turned on and the configured fetch size (db.stream.fetchSize), so rows are
+     * produced as the consumer reads them instead of being materialized up front. The connection stays borrowed
+     * until the consumer has seen every row.
+     *
+     * @return the number of rows streamed.
+     */
+    public static <T> int stream(String sql, Binder binder, RowMapper<T> mapper, RowConsumer<T> consumer)
+            throws SQLException, IOException {
+        try (Span span = Tracer.span("sql.stream").tag("sql", sql);
+             Connection connection = ConnectionUtil.getConnection()) {
+            PreparedStatement preparedStatement = prepare(connection, sql, false);
+            setLazyExecution(connection, true);
+            try {
+                binder.bind(preparedStatement);
+                preparedStatement.setFetchSize(STREAM_FETCH_SIZE);
+                int rows = 0;
+                try (ResultSet rs = preparedStatement.executeQuery()) {
+                    while(rs.next()){
+                        consumer.accept(mapper.map(rs));
+                        rows++;
+                    }
+                }
+                span.tag("rows", rows);
+                return rows;
+            }
+            finally {
+                //put the pooled session back the way other queries expect it
+                preparedStatement.setFetchSize(0);
+                setLazyExecution(connection, false);
+                release(connection, preparedStatement);
+            }
+        }
+        catch (SQLException e){
+            errors.increment();
+            throw e;
+        }
+    }
+
+    private static void setLazyExecution(Connection connection, boolean lazy) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET LAZY_QUERY_EXECUTION " + lazy);
+        }
+    }
+
+    /**
+     * Run a query and map the first row it returns.
+     *
+     * @return the mapped row, or null if the query returned no rows.
+     */
+    public static <T> T queryOne(String sql, Binder binder, RowMapper<T> mapper) throws SQLException {
+        try (Span span = Tracer.span("sql.query").tag("sql", sql);
+             Connection connection = ConnectionUtil.getConnection()) {
+            PreparedStatement preparedStatement = prepare(connection, sql, false);
+            try {
+                binder.bind(preparedStatement);
+                try (ResultSet rs = preparedStatement.executeQuery()) {
+                    boolean found = rs.next();
+                    span.tag("rows", found ? 1 : 0);
+                    return found ? mapper.map(rs) : null;
+                }
+            }
+            finally {
+                release(connection, preparedStatement);
+            }
+        }
+        catch (SQLException e){
+            errors.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Run an INSERT, UPDATE or DELETE.
+     *
+     * @return the number of rows affected.
+     */
+    public static int update(String sql, Binder binder) throws SQLException {
+        try (Span span = Tracer.span("sql.update").tag("sql", sql);
+             Connection connection = ConnectionUtil.getConnection()) {
+            PreparedStatement preparedStatement = prepare(connection, sql, false);
+            try {
+                binder.bind(preparedStatement);
+                int rows = preparedStatement.executeUpdate();
+                span.tag("rows", rows);
+                return rows;
+            }
+            finally {
+                release(connection, preparedStatement);
+            }
+        }
+        catch (SQLException e){
+            errors.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Run an INSERT and read back the key the database generated for the new row.
+     *
+     * @return the generated key, or -1 if the database did not return one.
+     */
+    public static int insert(String sql, Binder binder) throws SQLException {
+        try (Span span = Tracer.span("sql.insert").tag("sql", sql);
+             Connection connection = ConnectionUtil.getConnection()) {
+            PreparedStatement preparedStatement = prepare(connection, sql, true);
+            try {
+                binder.bind(preparedStatement);
+                preparedStatement.executeUpdate();
+                try (ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys()) {
+                    return pkeyResultSet.next() ? (int) pkeyResultSet.getLong(1) : -1;
+                }
+            }
+            finally {
+                release(connection, preparedStatement);
+            }
+        }
+        catch (SQLException e){
+            errors.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Run an INSERT once per row as JDBC batches of at most chunkSize rows, all inside one transaction, and read
+     * back the keys the database generated. If any chunk fails the whole transaction is rolled back.
+     *
+     * @return the generated keys, in the same order as the rows.
+     */
+    public static <T> int[] insertBatch(String sql, List<T> rows, RowBinder<T> binder, int chunkSize)
+            throws SQLException {
+        int[] keys = new int[rows.size()];
+        if (rows.isEmpty()){ return keys; }
+
+        try (Span span = Tracer.span("sql.batch").tag("sql", sql).tag("rows", rows.size());
+             Connection connection = ConnectionUtil.getConnection()) {
+            PreparedStatement preparedStatement = prepare(connection, sql, true);
+            connection.setAutoCommit(false);
+            try {
+                int written = 0;
+                for (int start = 0; start < rows.size(); start += chunkSize){
+                    int end = Math.min(start + chunkSize, rows.size());
+                    for (T row : rows.subList(start, end)){
+                        preparedStatement.clearParameters();
+                        binder.bind(preparedStatement, row);
+                        preparedStatement.addBatch();
+                    }
+                    preparedStatement.executeBatch();
+                    try (ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys()) {
+                        while(pkeyResultSet.next() && written < end){
+                            keys[written++] = (int) pkeyResultSet.getLong(1);
+                        }
+                    }
+                    if (written != end){
+                        throw new SQLException("Expected " + end + " generated keys but got " + written);
+                    }
+                }
+                connection.commit();
+                return keys;
+            }
+            catch (SQLException e){
+                preparedStatement.clearBatch();
+                connection.rollback();
+                throw e;
+            }
+            finally {
+                connection.setAutoCommit(true);
+                release(connection, preparedStatement);
+            }
+        }
+        catch (SQLException e){
+            errors.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Get a prepared statement for the SQL, from the connection's statement cache when it has one.
+     */
+    static PreparedStatement prepare(Connection connection, String sql, boolean returnGeneratedKeys)
+            throws SQLException {
+        if (connection == null){
+            throw new SQLException("No database connection available");
+        }
+        if (connection.isWrapperFor(StatementCache.class)){
+            return connection.unwrap(StatementCache.class).prepare(sql, returnGeneratedKeys);
+        }
+        return returnGeneratedKeys
+                ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                : connection.prepareStatement(sql);
+    }
+
+    /**
+     * Close a statement unless it belongs to the connection's statement cache.
+     */
+    static void release(Connection connection, PreparedStatement preparedStatement) throws SQLException {
+        if (!connection.isWrapperFor(StatementCache.class)){
+            preparedStatement.close();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package Model;
+
+/**
+ * This is a class that models the outcome of one entry of a POST /messages/batch request.
+ */
+public class MessageBatchResult {
+    /**
+     * The position of the entry in the request, starting at 0.
+     */
+    public int index;
+    /**
+     * "created" if the message was stored, or "rejected" if it was not.
+     */
+    public String status;
+    /**
+     * The id generated for the stored message, or null if it was rejected.
+     */
+    public Integer message_id;
+    /**
+     * Why the entry was rejected, or null if it was stored.
+     */
+    public String error;
+
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessageBatchResult(){
+    }
+
+    public MessageBatchResult(int index, String status, Integer message_id, String error) {
+        this.index = index;
+        this.status = status;
+        this.message_id = message_id;
+        this.error = error;
+    }
+
+    public static MessageBatchResult created(int index, int message_id) {
+        return new MessageBatchResult(index, "created", message_id, null);
+    }
+
+    public static MessageBatchResult rejected(int index, String error) {
+        return new MessageBatchResult(index, "rejected", null, error);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Integer getMessage_id() {
+        return message_id;
+    }
+
+    public void setMessage_id(Integer message_id) {
+        this.message_id = message_id;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageBatchResult{" +
+                "index=" + index +
+                ", status='" + status + '\'' +
+                ", message_id=" + message_id +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
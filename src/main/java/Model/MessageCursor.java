@@ -0,0 +1,73 @@
+package Model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * This is a class that models a position in the message feed, used for keyset pagination. Messages are ordered by
+ * time_posted_epoch and then message_id, so a cursor holds both values of the last message a client has seen, and
+ * the next page starts with the first message after it.
+ *
+ * Clients see a cursor as an opaque token (URL-safe base64 of "time_posted_epoch:message_id").
+ */
+public class MessageCursor {
+    /**
+     * The time_posted_epoch of the last message seen.
+     */
+    private final long time_posted_epoch;
+    /**
+     * The message_id of the last message seen.
+     */
+    private final int message_id;
+
+    public MessageCursor(long time_posted_epoch, int message_id) {
+        this.time_posted_epoch = time_posted_epoch;
+        this.message_id = message_id;
+    }
+
+    /**
+     * @param message the last message of a page.
+     * @return a cursor pointing just past that message.
+     */
+    public static MessageCursor after(Message message) {
+        return new MessageCursor(message.getTime_posted_epoch(), message.getMessage_id());
+    }
+
+    public long getTime_posted_epoch() {
+        return time_posted_epoch;
+    }
+
+    public int getMessage_id() {
+        return message_id;
+    }
+
+    /**
+     * @return the opaque token handed to clients.
+     */
+    public String encode() {
+        String raw = time_posted_epoch + ":" + message_id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token a token produced by encode().
+     * @return the cursor the token represents.
+     * @throws IllegalArgumentException if the token is not a valid cursor.
+     */
+    public static MessageCursor decode(String token) {
+        String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        int colon = raw.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("invalid cursor: " + token);
+        }
+        return new MessageCursor(Long.parseLong(raw.substring(0, colon)), Integer.parseInt(raw.substring(colon + 1)));
+    }
+
+    @Override
+    public String toString() {
+        return "MessageCursor{" +
+                "time_posted_epoch=" + time_posted_epoch +
+                ", message_id=" + message_id +
+                '}';
+    }
+}
@@ -0,0 +1,30 @@
+package Model;
+
+import java.util.List;
+
+/**
+ * This is a class that models one page of the message feed.
+ */
+public class MessagePage {
+    /**
+     * The messages on this page, ordered by time_posted_epoch and then message_id.
+     */
+    private final List<Message> messages;
+    /**
+     * The cursor to request the following page with, or null if this is the last page.
+     */
+    private final MessageCursor next_cursor;
+
+    public MessagePage(List<Message> messages, MessageCursor next_cursor) {
+        this.messages = messages;
+        this.next_cursor = next_cursor;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    public MessageCursor getNext_cursor() {
+        return next_cursor;
+    }
+}
@@ -0,0 +1,30 @@
+package Model;
+
+import java.util.List;
+
+/**
+ * This is a class that models one page of keyword search results.
+ */
+public class MessageSearchResult {
+    /**
+     * The matching messages on this page, best match first.
+     */
+    private final List<Message> messages;
+    /**
+     * How many messages match the search across all pages.
+     */
+    private final int total_matches;
+
+    public MessageSearchResult(List<Message> messages, int total_matches) {
+        this.messages = messages;
+        this.total_matches = total_matches;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    public int getTotal_matches() {
+        return total_matches;
+    }
+}
@@ -2,8 +2,15 @@ package Service;
 
 import Model.Account;
 import DAO.AccountDAO;
+import DAO.RowConsumer;
+import Util.BoundedCache;
+import Util.DatabaseExecutor;
+import Util.Span;
+import Util.Tracer;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The purpose of a Service class is to contain "business logic" that sits between the web layer (controller) and
@@ -13,11 +20,35 @@ import java.util.List;
  */
 public class AccountService {
     private AccountDAO accountDAO;
+
+    private static final int CACHE_CAPACITY = Integer.getInteger("cache.accounts.capacity", 10000);
+    private static final long CACHE_TTL_MILLIS = Long.getLong("cache.accounts.ttlMillis", 300000);
+    /**
+     * Accounts by account_id, used for the posted_by check on every new message.
+     */
+    private final BoundedCache<Integer, Account> accountsById = new BoundedCache<>(CACHE_CAPACITY, CACHE_TTL_MILLIS);
+    /**
+     * The same accounts by username, used on every login and registration.
+     */
+    private final BoundedCache<String, Account> accountsByUsername =
+            new BoundedCache<>(CACHE_CAPACITY, CACHE_TTL_MILLIS);
+    /**
+     * Usernames that were recently looked up and did not exist, so repeated registrations and failed logins for the
+     * same name don't each query the database. Kept for a shorter time (cache.accounts.negativeTtlMillis) and
+     * cleared for a username as soon as an account is registered with it.
+     */
+    private final BoundedCache<String, Boolean> unknownUsernames = new BoundedCache<>(CACHE_CAPACITY,
+            Long.getLong("cache.accounts.negativeTtlMillis", 5000));
+    /**
+     * Runs the async methods, on the caller's thread unless one with worker threads is given. Their futures fail with
+     * a RejectedExecutionException when the executor is too busy to take the call.
+     */
+    private final DatabaseExecutor databaseExecutor;
     /**
      * no-args constructor for creating a new AccountService with a new AccountDAO.
      */
     public AccountService(){
-        accountDAO = new AccountDAO();
+        this(new AccountDAO());
     }
     
     /**
@@ -28,7 +59,18 @@ public class AccountService {
      * @param accountDAO
      */
     public AccountService(AccountDAO accountDAO){
+        this(accountDAO, DatabaseExecutor.inline());
+    }
+
+    /**
+     * Constructor for an AccountService whose async methods run on the given executor.
+     *
+     * @param accountDAO
+     * @param databaseExecutor
+     */
+    public AccountService(AccountDAO accountDAO, DatabaseExecutor databaseExecutor){
         this.accountDAO = accountDAO;
+        this.databaseExecutor = databaseExecutor;
     }
     
     /**
@@ -37,7 +79,20 @@ public class AccountService {
      * @return all accounts
      */
     public List<Account> getAllAccounts() {
-        return accountDAO.getAllAccounts();
+        try (Span span = Tracer.span("AccountService.getAllAccounts")) {
+            return accountDAO.getAllAccounts();
+        }
+    }
+
+    /**
+     * Use the AccountDAO to stream all accounts to the consumer as they are read from the database.
+     *
+     * @param consumer receives each account.
+     */
+    public void streamAllAccounts(RowConsumer<Account> consumer) throws IOException {
+        try (Span span = Tracer.span("AccountService.streamAllAccounts")) {
+            accountDAO.streamAllAccounts(consumer);
+        }
     }
 
     /**
@@ -47,7 +102,14 @@ public class AccountService {
      * @return The persisted account if the persistence is successful.
      */
     public Account addAccount(Account account) {
-        return accountDAO.insertAccount(account);
+        try (Span span = Tracer.span("AccountService.addAccount")) {
+            Account addedAccount = accountDAO.insertAccount(account);
+            if (addedAccount != null){
+                unknownUsernames.invalidate(addedAccount.getUsername());
+                cache(addedAccount);
+            }
+            return addedAccount;
+        }
     }
 
     /**
@@ -56,7 +118,24 @@ public class AccountService {
      * @return account with matching username
      */
     public Account getAccountByUsername(Account account) {
-        return accountDAO.getAccountByUsername(account.getUsername());
+        try (Span span = Tracer.span("AccountService.getAccountByUsername")) {
+            String username = account.getUsername();
+            if (username == null){ return null; }
+
+            //a username that was just found not to exist still doesn't
+            if (unknownUsernames.getIfPresent(username) != null){ return null; }
+
+            //a registration that lands while the username is being looked up must not be hidden by this miss
+            long stamp = unknownUsernames.writeStamp();
+            Account found = accountsByUsername.get(username, accountDAO::getAccountByUsername);
+            if (found == null){
+                unknownUsernames.putIfUnchanged(username, Boolean.TRUE, stamp);
+            }
+            else {
+                accountsById.put(found.getAccount_id(), found);
+            }
+            return found;
+        }
     }
 
     /**
@@ -65,10 +144,45 @@ public class AccountService {
      * @return account with matching id
      */
     public Account getAccountById(Account account) {
-        return accountDAO.getAccountById(account.getAccount_id());
+        return getAccountById(account.getAccount_id());
     }
     public Account getAccountById(int account_id) {
-        return accountDAO.getAccountById(account_id);
+        try (Span span = Tracer.span("AccountService.getAccountById")) {
+            Account found = accountsById.get(account_id, accountDAO::getAccountById);
+            if (found != null){
+                accountsByUsername.put(found.getUsername(), found);
+            }
+            return found;
+        }
+    }
+
+    /**
+     * @return the account cache keyed by account_id, for its metrics.
+     */
+    public BoundedCache<Integer, Account> getAccountsById() {
+        return accountsById;
+    }
+
+    /**
+     * @return the account cache keyed by username, for its metrics.
+     */
+    public BoundedCache<String, Account> getAccountsByUsername() {
+        return accountsByUsername;
+    }
+
+    /**
+     * @return the negative cache of usernames known not to exist, for its metrics.
+     */
+    public BoundedCache<String, Boolean> getUnknownUsernames() {
+        return unknownUsernames;
+    }
+
+    /**
+     * Put an account in both the id and the username cache.
+     */
+    private void cache(Account account) {
+        accountsById.put(account.getAccount_id(), account);
+        accountsByUsername.put(account.getUsername(), account);
     }
 
     /**
@@ -77,17 +191,47 @@ public class AccountService {
      * @return account with matching username and password. If unsuccessful, return null
      */
     public Account getAccountByUsernameAndPassword(Account account) {
-        Account acc = getAccountByUsername(account);
+        try (Span span = Tracer.span("AccountService.getAccountByUsernameAndPassword")) {
+            Account acc = getAccountByUsername(account);
         
-        /* I could have used && logic here, but this looks nicer */
-        //check to make sure the username exists
-        if (acc != null){ 
-            //check if the password matches
-            if (acc.getPassword().compareTo(account.getPassword()) == 0){
-                return acc;
+            /* I could have used && logic here, but this looks nicer */
+            //check to make sure the username exists
+            if (acc != null){ 
+                //check if the password matches
+                if (acc.getPassword().compareTo(account.getPassword()) == 0){
+                    return acc;
+                }
             }
-        }
         
-        return null;
+            return null;
+        }
+    }
+
+    /**
+     * getAllAccounts, run on the DatabaseExecutor.
+     */
+    public CompletableFuture<List<Account>> getAllAccountsAsync() {
+        return databaseExecutor.submit(this::getAllAccounts);
+    }
+
+    /**
+     * addAccount, run on the DatabaseExecutor.
+     */
+    public CompletableFuture<Account> addAccountAsync(Account account) {
+        return databaseExecutor.submit(() -> addAccount(account));
+    }
+
+    /**
+     * getAccountByUsername, run on the DatabaseExecutor.
+     */
+    public CompletableFuture<Account> getAccountByUsernameAsync(Account account) {
+        return databaseExecutor.submit(() -> getAccountByUsername(account));
+    }
+
+    /**
+     * getAccountByUsernameAndPassword, run on the DatabaseExecutor.
+     */
+    public CompletableFuture<Account> getAccountByUsernameAndPasswordAsync(Account account) {
+        return databaseExecutor.submit(() -> getAccountByUsernameAndPassword(account));
     }
 }
@@ -0,0 +1,197 @@
+package Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import DAO.MessageDAO;
+import Model.Message;
+
+/**
+ * A write-behind stage for new messages. Instead of every request thread running its own autocommit INSERT, callers
+ * queue their message and a single writer thread flushes whatever has queued up as one JDBC batch in one transaction,
+ * either once maxBatch messages are waiting or maxDelayMicros after the first of them arrived, whichever comes
+ * first. Under load many posts share one commit; when idle, a lone post waits at most maxDelayMicros.
+ *
+ * Each caller gets a future that completes with its stored message (and generated message_id) only after the batch
+ * holding it has been committed, so anyone who waits for it can read their own write straight away.
+ *
+ * If a whole batch fails, its messages are retried one at a time so one bad message cannot fail the others.
+ *
+ * shutdown() lets the writer flush what is already queued and then stops it. Queuing a message and shutting down
+ * exclude each other, so every message is either queued before the writer stops, and flushed, or rejected.
+ */
+public class GroupCommitWriter {
+
+    private final MessageDAO messageDAO;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingInsert> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+    /**
+     * Shared by submit() while it checks running and queues, taken exclusively by shutdown() to clear running.
+     */
+    private final ReentrantReadWriteLock state = new ReentrantReadWriteLock();
+
+    /**
+     * @param messageDAO the DAO batches are written through.
+     * @param maxBatch the most messages to write in one batch.
+     * @param maxDelayMicros how long the first message of a batch may wait for others to join it.
+     * @param queueCapacity the most messages that may be waiting at once; submit() rejects messages beyond that.
+     */
+    public GroupCommitWriter(MessageDAO messageDAO, int maxBatch, long maxDelayMicros, int queueCapacity){
+        this.messageDAO = messageDAO;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::run, "message-group-commit");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queue a message to be inserted with the next batch.
+     *
+     * @param message a message without an id.
+     * @return a future that completes with the stored message once it has been committed, or with null if it
+     *         could not be stored.
+     * @throws RejectedExecutionException if the queue is full or the writer has been shut down.
+     */
+    public CompletableFuture<Message> submit(Message message){
+        PendingInsert pending = new PendingInsert(message);
+        state.readLock().lock();
+        try {
+            if (!running){
+                throw new RejectedExecutionException("group commit writer is shut down");
+            }
+            if (!queue.offer(pending)){
+                throw new RejectedExecutionException("group commit queue is full");
+            }
+        }
+        finally {
+            state.readLock().unlock();
+        }
+        return pending.result;
+    }
+
+    /**
+     * Stop taking messages, and wait for the writer thread to flush everything already queued and stop. The writer
+     * is not interrupted, since H2 closes its database file when a thread is interrupted in the middle of a write.
+     *
+     * @param timeoutMillis how long to wait for the writer.
+     * @return whether the writer stopped in time.
+     */
+    public boolean shutdown(long timeoutMillis){
+        stop();
+        try {
+            writer.join(timeoutMillis);
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        return !writer.isAlive();
+    }
+
+    /**
+     * @return the number of messages waiting to be written.
+     */
+    public int queued(){
+        return queue.size();
+    }
+
+    private void stop(){
+        state.writeLock().lock();
+        try {
+            running = false;
+        }
+        finally {
+            state.writeLock().unlock();
+        }
+    }
+
+    private void run(){
+        try {
+            writeBatches();
+        }
+        finally {
+            //nothing can be queued once running is cleared, so whatever is left now would never be flushed
+            stop();
+            List<PendingInsert> left = new ArrayList<>();
+            queue.drainTo(left);
+            for (PendingInsert pending : left){
+                pending.result.completeExceptionally(
+                        new RejectedExecutionException("group commit writer stopped before writing the message"));
+            }
+        }
+    }
+
+    private void writeBatches(){
+        List<PendingInsert> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()){
+            try {
+                //wait for the first message of the next batch
+                PendingInsert first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null){ continue; }
+                batch.add(first);
+
+                //then gather more until the batch is full or the first message has waited long enough
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatch){
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatch || remaining <= 0){ break; }
+                    PendingInsert next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null){ break; }
+                    batch.add(next);
+                }
+            }
+            catch (InterruptedException e){
+                //nothing interrupts the writer but the end of the process: flush what has been gathered and stop
+                stop();
+            }
+
+            if (!batch.isEmpty()){
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingInsert> batch){
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingInsert pending : batch){ messages.add(pending.message); }
+
+        try {
+            List<Message> added = messageDAO.insertMessages(messages, maxBatch);
+            if (added != null){
+                for (int i = 0; i < batch.size(); i++){
+                    batch.get(i).result.complete(added.get(i));
+                }
+                return;
+            }
+
+            //the batch was rolled back, so store each message on its own
+            for (PendingInsert pending : batch){
+                pending.result.complete(messageDAO.insertMessage(pending.message));
+            }
+        }
+        catch (RuntimeException e){
+            for (PendingInsert pending : batch){ pending.result.completeExceptionally(e); }
+        }
+    }
+
+    private static final class PendingInsert {
+        final Message message;
+        final CompletableFuture<Message> result = new CompletableFuture<>();
+
+        PendingInsert(Message message){
+            this.message = message;
+        }
+    }
+}
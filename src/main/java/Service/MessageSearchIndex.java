@@ -0,0 +1,429 @@
+package Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import DAO.MessageDAO;
+import Model.Message;
+
+/**
+ * An in-memory inverted index over message_text, so keyword searches look up the messages holding each term instead
+ * of scanning the message table with LIKE '%...%'.
+ *
+ * Text is split into lower-case runs of letters and digits. Every term maps to a postings list: the ids of the
+ * messages containing it, in id order, with how often the term occurs in each and how long each message is. A query
+ * matches messages holding any of its terms and ranks them with BM25, so messages holding more of the query terms,
+ * rarer terms, or the terms more densely come first. Ties go to the newer message.
+ *
+ * The index is kept current by MessageService as messages are added, updated and deleted, and rebuilt from the table
+ * when the service starts; a message deleted before its insert got to index it is removed by the first search that
+ * finds it gone. Searches share a read lock; changes take the write lock.
+ */
+public class MessageSearchIndex {
+
+    /**
+     * BM25 term frequency saturation and length normalisation, at their usual values.
+     */
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    /**
+     * Longer runs of letters and digits are cut to this length.
+     */
+    private static final int MAX_TERM_LENGTH = 64;
+    /**
+     * A posting packs the term frequency into the high bits of one int and the message length into the low
+     * LENGTH_BITS.
+     */
+    private static final int LENGTH_BITS = 20;
+    private static final int LENGTH_MASK = (1 << LENGTH_BITS) - 1;
+    /**
+     * The largest term frequency and message length the precomputed BM25 weights cover.
+     */
+    private static final int MAX_WEIGHT_FREQUENCY = 31;
+    private static final int MAX_WEIGHT_LENGTH = 127;
+    private static final int WEIGHT_TABLE_SIZE = (MAX_WEIGHT_FREQUENCY + 1) * (MAX_WEIGHT_LENGTH + 1);
+
+    private final HashMap<String, Postings> postings = new HashMap<>();
+    /**
+     * The distinct terms of every indexed message, so a message can be removed without knowing its old text.
+     */
+    private final HashMap<Integer, String[]> termsByMessage = new HashMap<>();
+    /**
+     * The number of terms in all indexed messages together, for the average message length.
+     */
+    private long totalLength;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Index a message, replacing whatever was indexed for its message_id before.
+     */
+    public void add(Message message){
+        lock.writeLock().lock();
+        try {
+            removeLocked(message.getMessage_id());
+            addLocked(message.getMessage_id(), message.getMessage_text());
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stop a message from matching any search.
+     */
+    public void remove(int message_id){
+        lock.writeLock().lock();
+        try {
+            removeLocked(message_id);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Throw the index away and index every message in the table again, streaming them so the table never has to fit
+     * in memory as Message objects.
+     */
+    public void rebuild(MessageDAO messageDAO) throws IOException {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            termsByMessage.clear();
+            totalLength = 0;
+            messageDAO.streamAllMessages(message -> addLocked(message.getMessage_id(), message.getMessage_text()));
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of messages in the index.
+     */
+    public int size(){
+        lock.readLock().lock();
+        try {
+            return termsByMessage.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the messages matching any term of a query, best match first.
+     *
+     * @param query one or more search terms.
+     * @param offset how many of the best matches to skip.
+     * @param limit the most message ids to return.
+     * @return the ids of one page of matches, and how many messages match in total.
+     */
+    public Hits search(String query, int offset, int limit){
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+
+        lock.readLock().lock();
+        try {
+            int documents = termsByMessage.size();
+            List<Postings> lists = new ArrayList<>(terms.size());
+            for (String term : terms){
+                Postings list = postings.get(term);
+                if (list != null){ lists.add(list); }
+            }
+            if (documents == 0 || lists.isEmpty() || limit < 1){
+                return new Hits(new int[0], 0);
+            }
+
+            double averageLength = (double) totalLength / documents;
+            double[] idf = new double[lists.size()];
+            double[][] weights = new double[lists.size()][];
+            int[] cursors = new int[lists.size()];
+            for (int j = 0; j < lists.size(); j++){
+                Postings list = lists.get(j);
+                int df = list.size;
+                idf[j] = Math.log(1 + (documents - df + 0.5) / (df + 0.5));
+                weights[j] = new double[WEIGHT_TABLE_SIZE];
+                cursors[j] = list.size - 1;
+            }
+
+            //walk all postings lists from the newest message back, scoring each matching message exactly once. Going
+            //newest first means a message only displaces an equal score that is already in the top n if it is newer,
+            //which never happens, so long runs of equal scores cost no heap work.
+            TopHits top = new TopHits((int) Math.min((long) offset + limit, Integer.MAX_VALUE - 8));
+            int total = 0;
+            if (lists.size() == 1){
+                Postings list = lists.get(0);
+                double[] weight = weights[0];
+                for (int at = list.size - 1; at >= 0; at--){
+                    top.offer(list.ids[at], weight(weight, idf[0], averageLength, list.stats[at]));
+                }
+                total = list.size;
+            }
+            else {
+                while (true){
+                    int message_id = -1;
+                    for (int j = 0; j < cursors.length; j++){
+                        if (cursors[j] >= 0){
+                            message_id = Math.max(message_id, lists.get(j).ids[cursors[j]]);
+                        }
+                    }
+                    if (message_id < 0){ break; }
+
+                    double score = 0;
+                    for (int j = 0; j < cursors.length; j++){
+                        Postings list = lists.get(j);
+                        int at = cursors[j];
+                        if (at >= 0 && list.ids[at] == message_id){
+                            score += weight(weights[j], idf[j], averageLength, list.stats[at]);
+                            cursors[j]--;
+                        }
+                    }
+                    total++;
+                    top.offer(message_id, score);
+                }
+            }
+            return new Hits(top.page(offset), total);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the lower-case runs of letters and digits in the text, in order, repeats included.
+     */
+    static List<String> tokenize(String text){
+        List<String> tokens = new ArrayList<>();
+        if (text == null){ return tokens; }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++){
+            boolean inTerm = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inTerm && start < 0){
+                start = i;
+            }
+            else if (!inTerm && start >= 0){
+                String term = text.substring(start, Math.min(i, start + MAX_TERM_LENGTH));
+                tokens.add(term.toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * @return the BM25 score one term adds to a message with the posting's term frequency and length. Scores are
+     *         remembered in the weights table, since long postings lists repeat the same few combinations; the table
+     *         stops at MAX_WEIGHT_FREQUENCY and MAX_WEIGHT_LENGTH, which only pathological messages reach and where
+     *         BM25 has all but flattened out anyway.
+     */
+    private static double weight(double[] weights, double idf, double averageLength, int stats){
+        int frequency = Math.min(stats >>> LENGTH_BITS, MAX_WEIGHT_FREQUENCY);
+        int length = Math.min(stats & LENGTH_MASK, MAX_WEIGHT_LENGTH);
+        int at = frequency * (MAX_WEIGHT_LENGTH + 1) + length;
+        double weight = weights[at];
+        if (weight == 0){
+            double norm = K1 * (1 - B + B * length / averageLength);
+            weight = weights[at] = idf * frequency * (K1 + 1) / (frequency + norm);
+        }
+        return weight;
+    }
+
+    private void addLocked(int message_id, String text){
+        List<String> tokens = tokenize(text);
+        if (tokens.isEmpty()){ return; }
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens){ frequencies.merge(token, 1, Integer::sum); }
+
+        String[] terms = new String[frequencies.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()){
+            Postings list = postings.computeIfAbsent(entry.getKey(), Postings::new);
+            list.add(message_id, entry.getValue(), tokens.size());
+            //keep the dictionary's copy of the term, so every message shares it
+            terms[i++] = list.term;
+        }
+        termsByMessage.put(message_id, terms);
+        totalLength += tokens.size();
+    }
+
+    private void removeLocked(int message_id){
+        String[] terms = termsByMessage.remove(message_id);
+        if (terms == null){ return; }
+        int length = 0;
+        for (String term : terms){
+            Postings list = postings.get(term);
+            length = list.remove(message_id);
+            if (list.size == 0){ postings.remove(term); }
+        }
+        totalLength -= length;
+    }
+
+    /**
+     * One page of search results.
+     */
+    public static final class Hits {
+        private final int[] message_ids;
+        private final int total;
+
+        Hits(int[] message_ids, int total){
+            this.message_ids = message_ids;
+            this.total = total;
+        }
+
+        /**
+         * @return the ids of the matching messages on this page, best match first.
+         */
+        public int[] getMessage_ids(){
+            return message_ids;
+        }
+
+        /**
+         * @return how many messages match the query across all pages.
+         */
+        public int getTotal(){
+            return total;
+        }
+    }
+
+    /**
+     * The messages holding one term, kept sorted by message_id in parallel primitive arrays. New messages get
+     * increasing ids, so adding one is nearly always an append.
+     */
+    private static final class Postings {
+        final String term;
+        int[] ids = new int[4];
+        /**
+         * frequency << LENGTH_BITS | length, for the message at the same index of ids.
+         */
+        int[] stats = new int[4];
+        int size;
+
+        Postings(String term){
+            this.term = term;
+        }
+
+        void add(int message_id, int frequency, int length){
+            int at = size == 0 || ids[size - 1] < message_id
+                    ? size
+                    : -Arrays.binarySearch(ids, 0, size, message_id) - 1;
+            if (size == ids.length){
+                int capacity = size + (size >> 1) + 1;
+                ids = Arrays.copyOf(ids, capacity);
+                stats = Arrays.copyOf(stats, capacity);
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            System.arraycopy(stats, at, stats, at + 1, size - at);
+            ids[at] = message_id;
+            stats[at] = frequency << LENGTH_BITS | Math.min(length, LENGTH_MASK);
+            size++;
+        }
+
+        /**
+         * @return the length of the removed message, or 0 if it was not in the list.
+         */
+        int remove(int message_id){
+            int at = Arrays.binarySearch(ids, 0, size, message_id);
+            if (at < 0){ return 0; }
+            int length = stats[at] & LENGTH_MASK;
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            System.arraycopy(stats, at + 1, stats, at, size - at - 1);
+            size--;
+            return length;
+        }
+    }
+
+    /**
+     * Keeps the best n (message_id, score) pairs seen so far in a min-heap, so the worst of them is at the root and a
+     * new pair only has to beat that one to get in.
+     */
+    private static final class TopHits {
+        private final int capacity;
+        private int[] ids;
+        private double[] scores;
+        private int size;
+
+        TopHits(int capacity){
+            this.capacity = capacity;
+            this.ids = new int[Math.min(capacity, 1024)];
+            this.scores = new double[ids.length];
+        }
+
+        void offer(int message_id, double score){
+            if (size < capacity){
+                if (size == ids.length){
+                    int grown = (int) Math.min((long) ids.length * 2, capacity);
+                    ids = Arrays.copyOf(ids, grown);
+                    scores = Arrays.copyOf(scores, grown);
+                }
+                ids[size] = message_id;
+                scores[size] = score;
+                siftUp(ids, scores, size++);
+            }
+            else if (better(message_id, score, ids[0], scores[0])){
+                ids[0] = message_id;
+                scores[0] = score;
+                siftDown(ids, scores, 0, size);
+            }
+        }
+
+        /**
+         * @return the ids from rank offset on, best first. Empties the heap.
+         */
+        int[] page(int offset){
+            //pop the worst repeatedly to fill the result from the back
+            int[] ranked = new int[size];
+            for (int end = size; end > 0; end--){
+                ranked[end - 1] = ids[0];
+                ids[0] = ids[end - 1];
+                scores[0] = scores[end - 1];
+                siftDown(ids, scores, 0, end - 1);
+            }
+            size = 0;
+            return offset >= ranked.length ? new int[0] : Arrays.copyOfRange(ranked, offset, ranked.length);
+        }
+
+        private static boolean better(int id, double score, int otherId, double otherScore){
+            return score > otherScore || (score == otherScore && id > otherId);
+        }
+
+        private static void siftUp(int[] ids, double[] scores, int at){
+            while (at > 0){
+                int parent = (at - 1) >>> 1;
+                if (!better(ids[parent], scores[parent], ids[at], scores[at])){ break; }
+                swap(ids, scores, at, parent);
+                at = parent;
+            }
+        }
+
+        private static void siftDown(int[] ids, double[] scores, int at, int size){
+            while (true){
+                int worst = at;
+                int left = 2 * at + 1;
+                int right = left + 1;
+                if (left < size && better(ids[worst], scores[worst], ids[left], scores[left])){ worst = left; }
+                if (right < size && better(ids[worst], scores[worst], ids[right], scores[right])){ worst = right; }
+                if (worst == at){ return; }
+                swap(ids, scores, at, worst);
+                at = worst;
+            }
+        }
+
+        private static void swap(int[] ids, double[] scores, int a, int b){
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            double score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
@@ -2,9 +2,34 @@ package Service;
 
 import Model.Account;
 import Model.Message;
+import Model.MessageBatchResult;
+import Model.MessageCursor;
+import Model.MessagePage;
+import Model.MessageSearchResult;
 import DAO.MessageDAO;
+import DAO.MessageStore;
+import DAO.RowConsumer;
+import Util.BoundedCache;
+import Util.DatabaseExecutor;
+import Util.Span;
+import Util.Tracer;
+import Util.VersionCounters;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * The purpose of a Service class is to contain "business logic" that sits between the web layer (controller) and
@@ -14,12 +39,71 @@ import java.util.List;
  */
 public class MessageService {
     private MessageDAO messageDAO;
+    /**
+     * Used to check that posted_by refers to a real account.
+     */
+    private AccountService accountService;
+    /**
+     * The most messages sent to the database in one JDBC batch by addMessages.
+     */
+    private static final int BATCH_CHUNK_SIZE = Integer.getInteger("db.batch.chunkSize", 500);
+    /**
+     * Coalesces concurrent addMessage calls into shared batch commits when db.groupCommit.enabled is set, otherwise
+     * null and every message is inserted on its own.
+     */
+    private GroupCommitWriter groupCommitWriter;
+    /**
+     * How long addMessage waits for the group commit writer to store a message (db.groupCommit.timeoutMillis), and
+     * shutdown() for it to flush, before giving up.
+     */
+    private static final long GROUP_COMMIT_TIMEOUT_MILLIS = Long.getLong("db.groupCommit.timeoutMillis", 10000);
+    /**
+     * Messages by message_id, so repeated lookups of the same message skip the database. Sized and timed with the
+     * cache.messages.capacity and cache.messages.ttlMillis system properties, and invalidated whenever a message is
+     * updated or deleted through this service.
+     */
+    private final BoundedCache<Integer, Message> messageCache = new BoundedCache<>(
+            Integer.getInteger("cache.messages.capacity", 10000),
+            Long.getLong("cache.messages.ttlMillis", 60000));
+    /**
+     * Keyword index over message_text, rebuilt from the table when the service is created and kept current by every
+     * add, update and delete made through this service.
+     */
+    private final MessageSearchIndex searchIndex = new MessageSearchIndex();
+    /**
+     * Held by updateMessage and deleteMessage from the DAO call until the cache and index have caught up, so changes
+     * to one message_id reach the index in the order they reached the table. Striped by message_id, so writes to
+     * different messages rarely wait on each other.
+     */
+    private final ReentrantLock[] messageWriteLocks = new ReentrantLock[64];
+    /**
+     * The newest message ids of recently read accounts, so their messages are listed without querying the table.
+     * Sized with the timeline.accounts.capacity and timeline.maxLength system properties.
+     */
+    private final TimelineStore timelineStore;
+    /**
+     * Runs the async methods, on the caller's thread unless one with worker threads is given. Their futures fail with
+     * a RejectedExecutionException when the executor is too busy to take the call.
+     */
+    private final DatabaseExecutor databaseExecutor;
+    /**
+     * How many versions messageVersions and accountVersions each keep.
+     */
+    private static final int ETAG_SLOTS = Integer.getInteger("cache.etag.slots", 65536);
+    /**
+     * Versions of each message, of each account's list of messages and of the whole feed, bumped by every add, update
+     * and delete made through this service, for the ETags of GET /messages/{message_id},
+     * GET /accounts/{account_id}/messages and GET /messages.
+     */
+    private final VersionCounters messageVersions = new VersionCounters(ETAG_SLOTS);
+    private final VersionCounters accountVersions = new VersionCounters(ETAG_SLOTS);
+    private final VersionCounters feedVersion = new VersionCounters(1);
 
     /**
      * no-args constructor for creating a new MessageService with a new MessageDAO.
      */
     public MessageService(){
-        messageDAO = new MessageDAO();
+        this(MessageStore.fromSystemProperties().createDAO());
     }
 
     /**
@@ -29,7 +113,64 @@ public class MessageService {
      * @param messageDAO
      */
     public MessageService(MessageDAO messageDAO){
+        this(messageDAO, new AccountService());
+    }
+
+    /**
+     * Constructor for a MessageService that shares an AccountService (and its account cache) with the caller.
+     * @param messageDAO
+     * @param accountService
+     */
+    public MessageService(MessageDAO messageDAO, AccountService accountService){
+        this(messageDAO, accountService, DatabaseExecutor.inline());
+    }
+
+    /**
+     * Constructor for a MessageService whose async methods run on the given executor.
+     * @param messageDAO
+     * @param accountService
+     * @param databaseExecutor
+     */
+    public MessageService(MessageDAO messageDAO, AccountService accountService, DatabaseExecutor databaseExecutor){
         this.messageDAO = messageDAO;
+        this.accountService = accountService;
+        this.databaseExecutor = databaseExecutor;
+        this.groupCommitWriter = createGroupCommitWriter(messageDAO);
+        this.timelineStore = new TimelineStore(messageDAO,
+                Integer.getInteger("timeline.accounts.capacity", 10000),
+                Integer.getInteger("timeline.maxLength", 1000),
+                Long.getLong("timeline.ttlMillis", 600000),
+                messageCache);
+        for (int i = 0; i < messageWriteLocks.length; i++){
+            messageWriteLocks[i] = new ReentrantLock();
+        }
+        rebuildSearchIndex();
+    }
+
+    /**
+     * @return a group commit writer configured by the db.groupCommit.* system properties, or null if group commit
+     *         is not enabled.
+     */
+    private static GroupCommitWriter createGroupCommitWriter(MessageDAO messageDAO){
+        if (!Boolean.getBoolean("db.groupCommit.enabled")){
+            return null;
+        }
+        return new GroupCommitWriter(messageDAO,
+                Integer.getInteger("db.groupCommit.maxBatch", 256),
+                Long.getLong("db.groupCommit.maxDelayMicros", 500),
+                Integer.getInteger("db.groupCommit.queueCapacity", 10000));
+    }
+
+    /**
+     * Index every message in the table for keyword search.
+     */
+    private void rebuildSearchIndex(){
+        try {
+            searchIndex.rebuild(messageDAO);
+        }
+        catch (IOException e){
+            System.out.println(e.getMessage());
+        }
     }
 
     /**
@@ -38,16 +179,161 @@ public class MessageService {
      * @return all messages
      */
     public List<Message> getAllMessages() {
-        return messageDAO.getAllMessages();
+        try (Span span = Tracer.span("MessageService.getAllMessages")) {
+            return messageDAO.getAllMessages();
+        }
     }
 
     /**
-     * Use the MessageDAO to retrieve a message with a specific ID.
+     * Use the MessageDAO to stream all messages to the consumer as they are read from the database.
      *
-     * @return all messages
+     * @param consumer receives each message.
+     */
+    public void streamAllMessages(RowConsumer<Message> consumer) throws IOException {
+        try (Span span = Tracer.span("MessageService.streamAllMessages")) {
+            messageDAO.streamAllMessages(consumer);
+        }
+    }
+
+    /**
+     * Use the MessageDAO to retrieve one page of messages posted in a time window.
+     *
+     * @param since only messages posted at or after this epoch time.
+     * @param until only messages posted before this epoch time.
+     * @param after the cursor of the previous page, or null for the first page.
+     * @param limit the most messages to return.
+     * @return the page, with a cursor for the next page if there are more messages in the window.
+     */
+    public MessagePage getMessagesPage(long since, long until, MessageCursor after, int limit) {
+        try (Span span = Tracer.span("MessageService.getMessagesPage")) {
+            //ask for one extra message to find out whether there is another page
+            List<Message> messages = messageDAO.getMessagesPage(since, until, after, limit + 1);
+            if (messages.size() <= limit){
+                return new MessagePage(messages, null);
+            }
+            messages = messages.subList(0, limit);
+            return new MessagePage(messages, MessageCursor.after(messages.get(limit - 1)));
+        }
+    }
+
+    /**
+     * Retrieve a message with a specific ID from the message cache, using the MessageDAO to load it on a miss.
+     *
+     * @return the message, or null if there is no message with that id
      */
     public Message getMessageById(int message_id) {
-        return messageDAO.getMessageById(message_id);
+        try (Span span = Tracer.span("MessageService.getMessageById")) {
+            return messageCache.get(message_id, messageDAO::getMessageById);
+        }
+    }
+
+    /**
+     * Find messages by keywords in their message_text, using the search index instead of the database.
+     *
+     * A message deleted after it was inserted but before the insert indexed it stays in the index. Every hit is read
+     * through the message cache or the MessageDAO anyway, so hits that turn out to have no message are dropped from
+     * the index and the search is run again, which keeps the page full and the total right.
+     *
+     * @param query one or more search terms; a message matches if it holds any of them.
+     * @param offset how many of the best matches to skip.
+     * @param limit the most messages to return.
+     * @return one page of matching messages, best match first, with the total number of matches.
+     */
+    public MessageSearchResult searchMessages(String query, int offset, int limit) {
+        try (Span span = Tracer.span("MessageService.searchMessages")) {
+            MessageSearchIndex.Hits hits = searchIndex.search(query, offset, limit);
+            List<Message> messages = getMessagesById(hits.getMessage_ids());
+            while (messages.size() < hits.getMessage_ids().length){
+                Set<Integer> found = new HashSet<>();
+                for (Message message : messages){
+                    found.add(message.getMessage_id());
+                }
+                for (int message_id : hits.getMessage_ids()){
+                    if (!found.contains(message_id)){
+                        searchIndex.remove(message_id);
+                    }
+                }
+                hits = searchIndex.search(query, offset, limit);
+                messages = getMessagesById(hits.getMessage_ids());
+            }
+            return new MessageSearchResult(messages, hits.getTotal());
+        }
+    }
+
+    /**
+     * @return the messages with the given ids, in the same order, read through the message cache. The ids that are
+     *         not cached are read from the MessageDAO in one call, and cached unless the cache was written to in the
+     *         meantime. Ids of messages removed from the table behind the service's back are skipped.
+     */
+    private List<Message> getMessagesById(int[] message_ids) {
+        Message[] messages = new Message[message_ids.length];
+        int[] missing = new int[message_ids.length];
+        int missingCount = 0;
+        for (int i = 0; i < message_ids.length; i++){
+            messages[i] = messageCache.getIfPresent(message_ids[i]);
+            if (messages[i] == null){
+                missing[missingCount++] = message_ids[i];
+            }
+        }
+
+        if (missingCount > 0){
+            long stamp = messageCache.writeStamp();
+            Map<Integer, Message> loaded = new HashMap<>(missingCount * 2);
+            for (Message message : messageDAO.getMessagesById(Arrays.copyOf(missing, missingCount))){
+                loaded.put(message.getMessage_id(), message);
+                messageCache.putIfUnchanged(message.getMessage_id(), message, stamp);
+            }
+            for (int i = 0; i < message_ids.length; i++){
+                if (messages[i] == null){
+                    messages[i] = loaded.get(message_ids[i]);
+                }
+            }
+        }
+
+        List<Message> found = new ArrayList<>(message_ids.length);
+        for (Message message : messages){
+            if (message != null){
+                found.add(message);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return a strong ETag for the message as it is now, found without going to the database.
+     */
+    public String getMessageETag(int message_id) {
+        return messageVersions.etag(message_id);
+    }
+
+    /**
+     * @return a strong ETag for the account's messages as they are now, found without going to the database.
+     */
+    public String getMessagesByAccountETag(int account_id) {
+        return accountVersions.etag(account_id);
+    }
+
+    /**
+     * @return a strong ETag for all messages as they are now, found without going to the database.
+     */
+    public String getAllMessagesETag() {
+        return feedVersion.etag(0);
+    }
+
+    /**
+     * Bump the versions a stored, changed or deleted message is part of. Called once the change can be read.
+     */
+    private void changed(Message message) {
+        messageVersions.bump(message.getMessage_id());
+        accountVersions.bump(message.getPosted_by());
+        feedVersion.bump(0);
+    }
+
+    /**
+     * @return the message cache, for its hit ratio, eviction count and load latency.
+     */
+    public BoundedCache<Integer, Message> getMessageCache() {
+        return messageCache;
     }
 
     /**
@@ -57,11 +343,139 @@ public class MessageService {
      * @return The persisted message if the persistence is successful.
      */
     public Message addMessage(Message message) {
-        return messageDAO.insertMessage(message);
+        try (Span span = Tracer.span("MessageService.addMessage")) {
+            Message addedMessage = groupCommitWriter == null
+                    ? messageDAO.insertMessage(message)
+                    : insertThroughGroupCommit(message);
+            if (addedMessage != null){
+                messageCache.put(addedMessage.getMessage_id(), addedMessage);
+                searchIndex.add(addedMessage);
+                timelineStore.add(addedMessage);
+                changed(addedMessage);
+            }
+            return addedMessage;
+        }
     }
 
     /**
-     * Use the MessageDAO to update an existing message from the database.
+     * Queue a message with the group commit writer and wait until the batch holding it has been committed, so the
+     * caller can read it back as soon as this returns. Falls back to a direct insert if the queue is full.
+     */
+    private Message insertThroughGroupCommit(Message message) {
+        CompletableFuture<Message> added;
+        try {
+            added = groupCommitWriter.submit(message);
+        }
+        catch (RejectedExecutionException e){
+            return messageDAO.insertMessage(message);
+        }
+        try {
+            return added.get(GROUP_COMMIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (ExecutionException | TimeoutException e){
+            System.out.println(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stop the group commit writer, if there is one, once it has written every message already queued, then close the
+     * messageDAO if it holds files open, as the message log does. The service is not used afterwards.
+     */
+    public void shutdown() {
+        if (groupCommitWriter != null){
+            groupCommitWriter.shutdown(GROUP_COMMIT_TIMEOUT_MILLIS);
+        }
+        if (messageDAO instanceof Closeable){
+            try {
+                ((Closeable) messageDAO).close();
+            }
+            catch(IOException e){
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Check that a message can be posted: message_text is not blank and is under 255 characters, and posted_by refers
+     * to a real, existing user.
+     *
+     * @param message a message that has not been stored yet.
+     * @return why the message is invalid, or null if it is valid.
+     */
+    public String validateMessage(Message message) {
+        if (message == null){
+            return "message is missing";
+        }
+        if (message.getMessage_text() == null || message.getMessage_text().isBlank()){
+            return "message_text is blank";
+        }
+        if (message.getMessage_text().length() >= 255){
+            return "message_text is 255 characters or longer";
+        }
+        if (accountService.getAccountById(message.getPosted_by()) == null){
+            return "posted_by does not refer to an existing account";
+        }
+        return null;
+    }
+
+    /**
+     * Validate a list of messages and persist every valid one with the MessageDAO, as JDBC batches inside a single
+     * transaction. Invalid messages are skipped and reported, they do not stop the others from being stored.
+     *
+     * @param messages Message objects without ids.
+     * @return one result per message, in the same order, with either its generated id or why it was rejected.
+     */
+    public List<MessageBatchResult> addMessages(List<Message> messages) {
+        try (Span span = Tracer.span("MessageService.addMessages")) {
+            List<MessageBatchResult> results = new ArrayList<>(messages.size());
+            List<Message> valid = new ArrayList<>(messages.size());
+            List<Integer> validIndexes = new ArrayList<>(messages.size());
+
+            //check every message first, so the batch only holds messages that can be stored
+            for (int i = 0; i < messages.size(); i++){
+                String error = validateMessage(messages.get(i));
+                if (error == null){
+                    valid.add(messages.get(i));
+                    validIndexes.add(i);
+                    results.add(null);
+                }
+                else {
+                    results.add(MessageBatchResult.rejected(i, error));
+                }
+            }
+
+            if (valid.isEmpty()){
+                return results;
+            }
+
+            //store the valid messages, filling in their results
+            List<Message> added = messageDAO.insertMessages(valid, BATCH_CHUNK_SIZE);
+            for (int i = 0; i < valid.size(); i++){
+                int index = validIndexes.get(i);
+                if (added == null){
+                    results.set(index, MessageBatchResult.rejected(index, "the batch could not be stored"));
+                }
+                else {
+                    Message addedMessage = added.get(i);
+                    messageCache.put(addedMessage.getMessage_id(), addedMessage);
+                    searchIndex.add(addedMessage);
+                    timelineStore.add(addedMessage);
+                    changed(addedMessage);
+                    results.set(index, MessageBatchResult.created(index, addedMessage.getMessage_id()));
+                }
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Use the MessageDAO to update an existing message from the database, and throw away the cached copy. The DAO
+     * hands back the updated row, which is indexed for search in its place.
      *
      * @param message_id the ID of the message to be modified.
      * @param message an object containing all data that should replace the values contained by the existing message_id.
@@ -70,36 +484,197 @@ public class MessageService {
      *         unsuccessful.
      */
     public Message updateMessage(int message_id, Message message){
-        messageDAO.updateMessage(message_id, message);
-        return messageDAO.getMessageById(message_id);
+        ReentrantLock writeLock = messageWriteLock(message_id);
+        try (Span span = Tracer.span("MessageService.updateMessage")) {
+            writeLock.lock();
+            try {
+                Message updatedMessage = messageDAO.updateMessage(message_id, message);
+                messageCache.invalidate(message_id);
+                if (updatedMessage != null){
+                    searchIndex.add(updatedMessage);
+                    changed(updatedMessage);
+                }
+                return updatedMessage;
+            }
+            finally {
+                writeLock.unlock();
+            }
+        }
     }
 
     /**
      * Use the MessageDAO to delete an existing message from the database.
      *
-     * @param message_id the ID of the message to be modified.
-     * @param message an object containing all data that should replace the values contained by the existing message_id.
-     *         the message object does not contain an message ID.
-     * @return the newly updated message if the update operation was successful. Return null if the update operation was
-     *         unsuccessful.
+     * @param message the message to delete; only its message_id is used.
+     * @return the deleted message, or null if there was no message with that id.
      */
     public Message deleteMessage(Message message){
-        //make sure the message exists
-        if (messageDAO.getMessageById(message.getMessage_id()) == null){
-            return null;
+        return deleteMessage(message.getMessage_id());
+    }
+
+    /**
+     * Use the MessageDAO to delete an existing message from the database. The DAO hands back the row it deleted, so
+     * the message does not have to be looked up first.
+     *
+     * @param message_id the ID of the message to delete.
+     * @return the deleted message, or null if there was no message with that id.
+     */
+    public Message deleteMessage(int message_id){
+        ReentrantLock writeLock = messageWriteLock(message_id);
+        try (Span span = Tracer.span("MessageService.deleteMessage")) {
+            writeLock.lock();
+            try {
+                Message deletedMessage = messageDAO.deleteMessage(message_id);
+                messageCache.invalidate(message_id);
+                if (deletedMessage != null){
+                    searchIndex.remove(message_id);
+                    timelineStore.remove(deletedMessage);
+                    changed(deletedMessage);
+                }
+                return deletedMessage;
+            }
+            finally {
+                writeLock.unlock();
+            }
         }
-        return messageDAO.deleteMessage(message.getMessage_id());
     }
 
     /**
-     * TODO: Use the MessageDAO to retrieve all messages of a particular account.
+     * @return the lock that orders the writes to this message_id.
+     */
+    private ReentrantLock messageWriteLock(int message_id){
+        return messageWriteLocks[message_id & (messageWriteLocks.length - 1)];
+    }
+
+    /**
+     * Use the MessageDAO to retrieve all messages of a particular account, newest first.
+     * Served from the account's timeline when it holds all of them, otherwise from the MessageDAO.
      *
-     * @return all messages of the given account
+     * @return all messages of the given account, newest first
      */
     public List<Message> getMessagesByAccount(Account account) {
-        return messageDAO.getAllMessagesPostedBy(account.getAccount_id());
+        return getMessagesByAccount(account.getAccount_id());
     }
     public List<Message> getMessagesByAccount(int account_id) {
-        return messageDAO.getAllMessagesPostedBy(account_id);
+        try (Span span = Tracer.span("MessageService.getMessagesByAccount")) {
+            int[] message_ids = timelineStore.getAll(account_id);
+            if (message_ids == null){
+                return messageDAO.getAllMessagesPostedBy(account_id);
+            }
+            return getMessagesById(message_ids);
+        }
+    }
+
+    /**
+     * Retrieve one page of the messages of a particular account, from its timeline, or from the MessageDAO when the
+     * page reaches past the newest messages the timeline keeps.
+     *
+     * @param offset how many of the newest messages to skip.
+     * @param limit the most messages to return.
+     * @return the account's messages from offset on, newest first
+     */
+    public List<Message> getMessagesByAccount(int account_id, int offset, int limit) {
+        try (Span span = Tracer.span("MessageService.getMessagesByAccount")) {
+            int[] message_ids = timelineStore.getPage(account_id, offset, limit);
+            if (message_ids == null){
+                return messageDAO.getMessagesPostedByPage(account_id, offset, limit);
+            }
+            return getMessagesById(message_ids);
+        }
+    }
+
+    /**
+     * @return the timeline store, for its cache statistics.
+     */
+    public TimelineStore getTimelineStore() {
+        return timelineStore;
+    }
+
+    /**
+     * Use the MessageDAO to stream all messages of a particular account to the consumer as they are read.
+     *
+     * @param consumer receives each message of the given account.
+     */
+    public void streamMessagesByAccount(int account_id, RowConsumer<Message> consumer) throws IOException {
+        try (Span span = Tracer.span("MessageService.streamMessagesByAccount")) {
+            messageDAO.streamAllMessagesPostedBy(account_id, consumer);
+        }
+    }
+
+    /**
+     * getAllMessages, run on the DatabaseExecutor.
+     */
+    public CompletableFuture<List<Message>> getAllMessagesAsync() {
+        return databaseExecutor.submit(this::getAllMessages);
+    }
+
+    /**
+     * getMessagesPage, run on the DatabaseExecutor.
+     */
+    public CompletableFuture<MessagePage> getMessagesPageAsync(long since, long until, MessageCursor after, int limit) {
+        return databaseExecutor.submit(() -> getMessagesPage(since, until, after, limit));
+    }
+
+    /**
+     * getMessageById, run on the DatabaseExecutor.
+     */
+    public CompletableFuture<Message> getMessageByIdAsync(int message_id) {
+        return databaseExecutor.submit(() -> getMessageById(message_id));
+    }
+
+    /**
+     * searchMessages, run on the DatabaseExecutor.
+     */
+    public CompletableFuture<MessageSearchResult> searchMessagesAsync(String query, int offset, int limit) {
+        return databaseExecutor.submit(() -> searchMessages(query, offset, limit));
+    }
+
+    /**
+     * addMessage, run on the DatabaseExecutor.
+     */
+    public CompletableFuture<Message> addMessageAsync(Message message) {
+        return databaseExecutor.submit(() -> addMessage(message));
+    }
+
+    /**
+     * validateMessage, run on the DatabaseExecutor.
+     */
+    public CompletableFuture<String> validateMessageAsync(Message message) {
+        return databaseExecutor.submit(() -> validateMessage(message));
+    }
+
+    /**
+     * addMessages, run on the DatabaseExecutor.
+     */
+    public CompletableFuture<List<MessageBatchResult>> addMessagesAsync(List<Message> messages) {
+        return databaseExecutor.submit(() -> addMessages(messages));
+    }
+
+    /**
+     * updateMessage, run on the DatabaseExecutor.
+     */
+    public CompletableFuture<Message> updateMessageAsync(int message_id, Message message) {
+        return databaseExecutor.submit(() -> updateMessage(message_id, message));
+    }
+
+    /**
+     * deleteMessage, run on the DatabaseExecutor.
+     */
+    public CompletableFuture<Message> deleteMessageAsync(int message_id) {
+        return databaseExecutor.submit(() -> deleteMessage(message_id));
+    }
+
+    /**
+     * getMessagesByAccount, run on the DatabaseExecutor.
+     */
+    public CompletableFuture<List<Message>> getMessagesByAccountAsync(int account_id) {
+        return databaseExecutor.submit(() -> getMessagesByAccount(account_id));
+    }
+
+    /**
+     * getMessagesByAccount, run on the DatabaseExecutor.
+     */
+    public CompletableFuture<List<Message>> getMessagesByAccountAsync(int account_id, int offset, int limit) {
+        return databaseExecutor.submit(() -> getMessagesByAccount(account_id, offset, limit));
     }
 }
@@ -0,0 +1,229 @@
+package Service;
+
+import java.util.Arrays;
+import java.util.List;
+
+import DAO.MessageDAO;
+import Model.Message;
+import Util.BoundedCache;
+
+/**
+ * Keeps each account's timeline, the ids of its newest messages in (time_posted_epoch, message_id) order, in memory,
+ * so reading an account's messages does not rerun the same query against the message table every time.
+ *
+ * A timeline is loaded from the database the first time its account is read, holding at most maxLength ids, and is
+ * then kept current: add() and remove() edit the timelines already in memory, and leave cold accounts alone. A
+ * timeline knows whether it holds every message of its account. If it does not, because the account has more than
+ * maxLength messages, pages reaching past its oldest id are left to the database.
+ *
+ * The timelines themselves live in a BoundedCache, so only the most recently read accounts stay in memory, and an
+ * account whose timeline changes while it is being loaded is simply loaded again on its next read.
+ */
+public class TimelineStore {
+
+    private final MessageDAO messageDAO;
+    private final int maxLength;
+    private final BoundedCache<Integer, Timeline> timelines;
+    /**
+     * Where the messages read while loading a timeline are cached, unless the cache was written to while they were
+     * being read, in which case they may be older than what it holds.
+     */
+    private final BoundedCache<Integer, Message> messageCache;
+
+    /**
+     * @param messageDAO where cold timelines are loaded from.
+     * @param capacity the most accounts to keep a timeline for.
+     * @param maxLength the most message ids to keep per account.
+     * @param ttlMillis how long a timeline is trusted before it is loaded again, in case the table was changed by
+     *        something other than this store's owner.
+     * @param messageCache caches the messages read while loading a timeline.
+     */
+    public TimelineStore(MessageDAO messageDAO, int capacity, int maxLength, long ttlMillis,
+                         BoundedCache<Integer, Message> messageCache){
+        this.messageDAO = messageDAO;
+        this.maxLength = maxLength;
+        this.timelines = new BoundedCache<>(capacity, ttlMillis);
+        this.messageCache = messageCache;
+    }
+
+    /**
+     * Get one page of an account's message ids, newest first, loading its timeline if it is cold.
+     *
+     * @return the ids, or null if the page reaches past the oldest id kept for an account with more messages than
+     *         that, in which case the page has to come from the database.
+     */
+    public int[] getPage(int account_id, int offset, int limit){
+        return timelines.get(account_id, this::load).page(offset, limit);
+    }
+
+    /**
+     * Get all of an account's message ids, newest first, loading its timeline if it is cold.
+     *
+     * @return the ids, or null if the account has more messages than a timeline keeps.
+     */
+    public int[] getAll(int account_id){
+        return timelines.get(account_id, this::load).page(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Add a newly stored message to its account's timeline, if that timeline is in memory.
+     */
+    public void add(Message message){
+        Timeline timeline = timelines.getIfPresent(message.getPosted_by());
+        if (timeline != null){
+            timeline.add(message.getTime_posted_epoch(), message.getMessage_id());
+        }
+        else {
+            //make sure a load that is running right now, and may have missed this message, is not kept
+            timelines.invalidate(message.getPosted_by());
+        }
+    }
+
+    /**
+     * Remove a deleted message from its account's timeline, if that timeline is in memory.
+     */
+    public void remove(Message message){
+        Timeline timeline = timelines.getIfPresent(message.getPosted_by());
+        if (timeline != null){
+            timeline.remove(message.getTime_posted_epoch(), message.getMessage_id());
+        }
+        else {
+            timelines.invalidate(message.getPosted_by());
+        }
+    }
+
+    /**
+     * @return the timeline cache, for its hit ratio and load latency.
+     */
+    public BoundedCache<Integer, Timeline> getTimelines(){
+        return timelines;
+    }
+
+    private Timeline load(int account_id){
+        //ask for one more than is kept, to find out whether the timeline holds everything
+        long stamp = messageCache.writeStamp();
+        List<Message> messages = messageDAO.getMessagesPostedByPage(account_id, 0, maxLength + 1);
+        boolean complete = messages.size() <= maxLength;
+        if (!complete){
+            messages = messages.subList(0, maxLength);
+        }
+
+        //the DAO returns newest first, the timeline keeps oldest first
+        Timeline timeline = new Timeline(maxLength, complete);
+        for (int i = messages.size() - 1; i >= 0; i--){
+            Message message = messages.get(i);
+            timeline.append(message.getTime_posted_epoch(), message.getMessage_id());
+            messageCache.putIfUnchanged(message.getMessage_id(), message, stamp);
+        }
+        return timeline;
+    }
+
+    /**
+     * The newest message ids of one account, oldest first in parallel arrays so new messages are appended.
+     */
+    public static final class Timeline {
+        private final int maxLength;
+        private long[] epochs;
+        private int[] ids;
+        private int size;
+        /**
+         * Whether the timeline holds every message of its account. It stops doing so once it has had to drop its
+         * oldest id to stay within maxLength.
+         */
+        private boolean complete;
+
+        Timeline(int maxLength, boolean complete){
+            this.maxLength = maxLength;
+            this.complete = complete;
+            int initial = Math.min(maxLength, 16);
+            this.epochs = new long[initial];
+            this.ids = new int[initial];
+        }
+
+        public synchronized int size(){
+            return size;
+        }
+
+        public synchronized boolean isComplete(){
+            return complete;
+        }
+
+        synchronized void add(long time_posted_epoch, int message_id){
+            int at = size;
+            //new messages are nearly always the newest, so look for the slot from the end
+            while (at > 0 && compare(epochs[at - 1], ids[at - 1], time_posted_epoch, message_id) > 0){
+                at--;
+            }
+            if (at > 0 && epochs[at - 1] == time_posted_epoch && ids[at - 1] == message_id){
+                return;
+            }
+            if (at == 0 && !complete){
+                //older than anything kept, so it belongs to the part left to the database
+                return;
+            }
+            insert(at, time_posted_epoch, message_id);
+            if (size > maxLength){
+                //drop the oldest id
+                System.arraycopy(epochs, 1, epochs, 0, size - 1);
+                System.arraycopy(ids, 1, ids, 0, size - 1);
+                size--;
+                complete = false;
+            }
+        }
+
+        synchronized void remove(long time_posted_epoch, int message_id){
+            for (int at = size - 1; at >= 0; at--){
+                if (ids[at] == message_id){
+                    System.arraycopy(epochs, at + 1, epochs, at, size - at - 1);
+                    System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+                    size--;
+                    return;
+                }
+                if (compare(epochs[at], ids[at], time_posted_epoch, message_id) < 0){
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Add an id newer than everything kept so far, while loading.
+         */
+        void append(long time_posted_epoch, int message_id){
+            insert(size, time_posted_epoch, message_id);
+        }
+
+        /**
+         * @return the ids from the offset-th newest on, newest first, or null if the timeline cannot tell.
+         */
+        synchronized int[] page(int offset, int limit){
+            long end = (long) offset + limit;
+            if (end > size && !complete){
+                return null;
+            }
+            int count = (int) Math.max(0, Math.min(end, size) - offset);
+            int[] page = new int[count];
+            for (int i = 0; i < count; i++){
+                page[i] = ids[size - 1 - offset - i];
+            }
+            return page;
+        }
+
+        private void insert(int at, long time_posted_epoch, int message_id){
+            if (size == ids.length){
+                int capacity = Math.max(size + 1, Math.min(size * 2, maxLength + 1));
+                epochs = Arrays.copyOf(epochs, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+            }
+            System.arraycopy(epochs, at, epochs, at + 1, size - at);
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            epochs[at] = time_posted_epoch;
+            ids[at] = message_id;
+            size++;
+        }
+
+        private static int compare(long epoch, int id, long otherEpoch, int otherId){
+            int byTime = Long.compare(epoch, otherEpoch);
+            return byTime != 0 ? byTime : Integer.compare(id, otherId);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package Util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * An in-process, read-through cache with a maximum size and a time-to-live.
+ *
+ * Entries are kept in least-recently-used order and the oldest one is evicted once the cache is over capacity; an
+ * entry is also treated as missing once it is older than the TTL. get(key, loader) loads missing keys through the
+ * loader, and concurrent gets of the same missing key share a single load instead of each querying the database.
+ * A key invalidated or put while it is being loaded is not cached when the load completes, so a load can never put
+ * back a value that an update or delete has just replaced or thrown away. Values read outside get() are cached with
+ * putIfUnchanged(), which gives up the same way.
+ *
+ * Null values are never cached.
+ */
+public class BoundedCache<K, V> {
+
+    private final int capacity;
+    private final long ttlNanos;
+
+    /**
+     * Access-ordered, so iteration starts at the least recently used entry. Guarded by lock.
+     */
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Counts put(), invalidate() and clear() calls, so putIfUnchanged() can tell whether anything was written since
+     * its value was read. Guarded by lock.
+     */
+    private long writes;
+    /**
+     * Loads in progress, so concurrent misses on the same key wait for one load.
+     */
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    /**
+     * @param capacity the most entries to keep.
+     * @param ttlMillis how long an entry stays valid after it was stored.
+     */
+    public BoundedCache(int capacity, long ttlMillis){
+        if (capacity < 1){
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    /**
+     * Get the value for a key, loading it with the loader if it is not cached. Only one load runs per key at a time;
+     * other callers asking for the same key wait for its result.
+     *
+     * @param key the key.
+     * @param loader loads the value for a key, returning null if there is none.
+     * @return the value, or null if the loader found none.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader){
+        V cached = getIfPresent(key);
+        if (cached != null){
+            return cached;
+        }
+
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> running = loading.putIfAbsent(key, load);
+        if (running != null){
+            //someone else is already loading this key
+            return await(running);
+        }
+
+        long start = System.nanoTime();
+        try {
+            V value = loader.apply(key);
+            //only cache the value if the key was not invalidated or put while it was loading
+            if (value != null){
+                lock.lock();
+                try {
+                    if (loading.remove(key, load)){
+                        store(key, value);
+                    }
+                }
+                finally {
+                    lock.unlock();
+                }
+            }
+            load.complete(value);
+            return value;
+        }
+        catch (RuntimeException | Error e){
+            load.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            loading.remove(key, load);
+            loads.increment();
+            loadNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return the cached value for a key, or null if it is not cached or has expired.
+     */
+    public V getIfPresent(K key){
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry != null){
+                if (System.nanoTime() - entry.storedAt < ttlNanos){
+                    hits.increment();
+                    return entry.value;
+                }
+                entries.remove(key);
+                evictions.increment();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Store a value, evicting the least recently used entries if the cache is over capacity. A load of the key that is
+     * in progress may have read an older value, so it is stopped from being cached.
+     */
+    public void put(K key, V value){
+        if (value == null){ return; }
+        lock.lock();
+        try {
+            loading.remove(key);
+            writes++;
+            store(key, value);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return a stamp to take before reading values that will be cached with putIfUnchanged().
+     */
+    public long writeStamp(){
+        lock.lock();
+        try {
+            return writes;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Store a value read outside the cache, unless the key is already cached or anything has been put, invalidated or
+     * cleared since the stamp was taken, in which case the value may be older than what the cache was told and is
+     * dropped.
+     *
+     * @param stamp the writeStamp() taken before the value was read.
+     * @return whether the value was cached.
+     */
+    public boolean putIfUnchanged(K key, V value, long stamp){
+        if (value == null){ return false; }
+        lock.lock();
+        try {
+            if (writes != stamp || loading.containsKey(key) || entries.containsKey(key)){
+                return false;
+            }
+            store(key, value);
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove a key, and stop any load of it that is in progress from being cached.
+     */
+    public void invalidate(K key){
+        lock.lock();
+        try {
+            loading.remove(key);
+            writes++;
+            entries.remove(key);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove every entry.
+     */
+    public void clear(){
+        lock.lock();
+        try {
+            loading.clear();
+            writes++;
+            entries.clear();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Store a value and evict down to capacity. Must hold lock.
+     */
+    private void store(K key, V value){
+        entries.put(key, new Entry<>(value, System.nanoTime()));
+        Iterator<Entry<V>> eldest = entries.values().iterator();
+        while (entries.size() > capacity && eldest.hasNext()){
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * @return the number of entries currently cached, including any that have expired but not been removed yet.
+     */
+    public int size(){
+        lock.lock();
+        try {
+            return entries.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount(){
+        return hits.sum();
+    }
+
+    public long getMissCount(){
+        return misses.sum();
+    }
+
+    /**
+     * @return hits divided by lookups, or 0 if there have been no lookups.
+     */
+    public double getHitRatio(){
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    /**
+     * @return the number of entries removed because the cache was full or they had expired.
+     */
+    public long getEvictionCount(){
+        return evictions.sum();
+    }
+
+    public long getLoadCount(){
+        return loads.sum();
+    }
+
+    /**
+     * @return the total time spent in the loader, in nanoseconds.
+     */
+    public long getTotalLoadNanos(){
+        return loadNanos.sum();
+    }
+
+    /**
+     * @return the mean time a load took, in nanoseconds, or 0 if nothing has been loaded.
+     */
+    public double getAverageLoadNanos(){
+        long loadCount = loads.sum();
+        return loadCount == 0 ? 0 : (double) loadNanos.sum() / loadCount;
+    }
+
+    private static <V> V await(CompletableFuture<V> load){
+        try {
+            return load.get();
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a cache load", e);
+        }
+        catch (ExecutionException e){
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException){ throw (RuntimeException) cause; }
+            if (cause instanceof Error){ throw (Error) cause; }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long storedAt;
+
+        Entry(V value, long storedAt){
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+    }
+}
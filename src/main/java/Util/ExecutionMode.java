@@ -0,0 +1,25 @@
+package Util;
+
+/**
+ * How the Javalin server runs request handlers, chosen with the api.executionMode system property.
+ *
+ * PLATFORM runs every handler on one of Jetty's pooled platform threads, so a handler blocked on JDBC ties up a
+ * thread. VIRTUAL runs handlers on virtual threads, so blocked handlers only park; it needs a JDK with virtual
+ * threads (21+), and on older JDKs the server quietly stays on platform threads. ASYNC keeps Jetty's platform threads
+ * but hands every database call to a bounded DatabaseExecutor, and the handler's response is written once the
+ * returned future completes, so server threads never wait on JDBC; when the executor's queue is full the request is
+ * turned away with a 503.
+ */
+public enum ExecutionMode {
+    PLATFORM,
+    VIRTUAL,
+    ASYNC;
+
+    /**
+     * @return the mode named by api.executionMode, PLATFORM if it is not set.
+     * @throws IllegalArgumentException if api.executionMode names no mode.
+     */
+    public static ExecutionMode fromSystemProperties(){
+        return valueOf(System.getProperty("api.executionMode", PLATFORM.name()).toUpperCase());
+    }
+}
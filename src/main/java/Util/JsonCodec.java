@@ -0,0 +1,195 @@
+package Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.javalin.json.JsonMapper;
+
+import Model.Account;
+import Model.Message;
+import Model.MessageBatchResult;
+
+/**
+ * The one JSON codec the application uses. It wraps a single, pre-configured ObjectMapper so Jackson's serializer and
+ * deserializer caches are built once and shared by every request, and it keeps ready-made ObjectReaders and
+ * ObjectWriters for the types the API reads and writes most, which skips the per-call type lookup.
+ *
+ * It is registered as Javalin's JsonMapper, so ctx.json() and ctx.bodyAsClass() go through it as well. Any other type
+ * gets a reader or writer built on first use and cached.
+ *
+ * There is one codec like it for each of the other WireFormats, with the same readers and writers over a mapper for
+ * that format.
+ */
+public class JsonCodec implements JsonMapper {
+
+    private static final JsonCodec INSTANCE = new JsonCodec(WireFormat.JSON);
+    private static final JsonCodec[] INSTANCES = new JsonCodec[WireFormat.values().length];
+    static {
+        for (WireFormat format : WireFormat.values()){
+            INSTANCES[format.ordinal()] = format == WireFormat.JSON ? INSTANCE : new JsonCodec(format);
+        }
+    }
+
+    private final WireFormat format;
+    /**
+     * The shared mapper. It never closes the streams it writes to, so handlers can write straight into a response.
+     */
+    private final ObjectMapper mapper;
+
+    private final ObjectReader messageReader;
+    private final ObjectWriter messageWriter;
+    private final ObjectReader messageListReader;
+    private final ObjectWriter messageListWriter;
+    private final ObjectWriter batchResultListWriter;
+    private final ObjectReader accountReader;
+    private final ObjectWriter accountWriter;
+    private final ObjectWriter accountListWriter;
+
+    private final ConcurrentHashMap<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Type, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    private JsonCodec(WireFormat format){
+        this.format = format;
+        this.mapper = new ObjectMapper(format.createFactory())
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.messageReader = mapper.readerFor(Message.class);
+        this.messageWriter = mapper.writerFor(Message.class);
+        this.messageListReader = mapper.readerFor(new TypeReference<List<Message>>(){});
+        this.messageListWriter = mapper.writerFor(new TypeReference<List<Message>>(){});
+        this.batchResultListWriter = mapper.writerFor(new TypeReference<List<MessageBatchResult>>(){});
+        this.accountReader = mapper.readerFor(Account.class);
+        this.accountWriter = mapper.writerFor(Account.class);
+        this.accountListWriter = mapper.writerFor(new TypeReference<List<Account>>(){});
+        readers.put(Message.class, messageReader);
+        readers.put(Account.class, accountReader);
+        writers.put(Message.class, messageWriter);
+        writers.put(Account.class, accountWriter);
+    }
+
+    /**
+     * @return the codec shared by the whole application.
+     */
+    public static JsonCodec getInstance(){
+        return INSTANCE;
+    }
+
+    /**
+     * @return the codec for a wire format, shared by the whole application.
+     */
+    public static JsonCodec getInstance(WireFormat format){
+        return INSTANCES[format.ordinal()];
+    }
+
+    /**
+     * @return the format this codec reads and writes.
+     */
+    public WireFormat getFormat(){
+        return format;
+    }
+
+    public ObjectMapper getMapper(){
+        return mapper;
+    }
+
+    public ObjectReader getMessageReader(){
+        return messageReader;
+    }
+
+    public ObjectWriter getMessageWriter(){
+        return messageWriter;
+    }
+
+    public ObjectReader getMessageListReader(){
+        return messageListReader;
+    }
+
+    public ObjectWriter getMessageListWriter(){
+        return messageListWriter;
+    }
+
+    public ObjectWriter getBatchResultListWriter(){
+        return batchResultListWriter;
+    }
+
+    public ObjectReader getAccountReader(){
+        return accountReader;
+    }
+
+    public ObjectWriter getAccountWriter(){
+        return accountWriter;
+    }
+
+    public ObjectWriter getAccountListWriter(){
+        return accountListWriter;
+    }
+
+    /**
+     * @return a generator that writes to the stream without ever closing it.
+     */
+    public JsonGenerator createGenerator(OutputStream out) throws IOException {
+        return mapper.createGenerator(out);
+    }
+
+    @Override
+    public String toJsonString(Object obj, Type type) {
+        //already serialized
+        if (obj instanceof String){
+            return (String) obj;
+        }
+        try {
+            return writerFor(type).writeValueAsString(obj);
+        }
+        catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public InputStream toJsonStream(Object obj, Type type) {
+        try {
+            return new ByteArrayInputStream(writerFor(type).writeValueAsBytes(obj));
+        }
+        catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T fromJsonString(String json, Type type) {
+        try {
+            return readerFor(type).readValue(json);
+        }
+        catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T fromJsonStream(InputStream json, Type type) {
+        try {
+            return readerFor(type).readValue(json);
+        }
+        catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ObjectReader readerFor(Type type){
+        return readers.computeIfAbsent(type, t -> mapper.readerFor(mapper.constructType(t)));
+    }
+
+    private ObjectWriter writerFor(Type type){
+        return writers.computeIfAbsent(type, t -> mapper.writerFor(mapper.constructType(t)));
+    }
+}
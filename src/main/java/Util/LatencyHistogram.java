@@ -0,0 +1,91 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts latencies in log-linear buckets, the way an HDR histogram does: every power of two is split into 32 equal
+ * buckets, so any recorded value is known to within about 3% whether it is a microsecond or a minute, in a fixed
+ * table of about 1200 counters. Values above an hour are counted as an hour.
+ *
+ * record() only increments counters that already exist, so it never allocates and never blocks, and many threads can
+ * record at once. Percentiles are read from the live counters, so one taken while values are being recorded may be
+ * off by the values in flight.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * About 73 minutes, in nanoseconds.
+     */
+    private static final long MAX_VALUE = (1L << 42) - 1;
+    private static final int BUCKETS = bucket(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param nanos a latency in nanoseconds; negative values are counted as 0.
+     */
+    public void record(long nanos){
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    public long getCount(){
+        return count.sum();
+    }
+
+    public long getTotalNanos(){
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos(){
+        return maxNanos.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100.
+     * @return the highest value in the bucket holding that percentile, but no more than the largest value recorded,
+     *         or 0 if nothing has been recorded.
+     */
+    public long getValueAtPercentile(double percentile){
+        long total = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++){
+            total += counts.get(bucket);
+        }
+        if (total == 0){ return 0; }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++){
+            seen += counts.get(bucket);
+            if (seen >= rank){
+                return Math.min(highestValueIn(bucket), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * Values below 32 get a bucket each; above that, a value's bucket is its power of two and its next five bits.
+     */
+    private static int bucket(long value){
+        if (value < SUB_BUCKETS){ return (int) value; }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    private static long highestValueIn(int bucket){
+        if (bucket < SUB_BUCKETS){ return bucket; }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long mantissa = SUB_BUCKETS + bucket % SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
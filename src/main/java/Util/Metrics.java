@@ -0,0 +1,219 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Collects the numbers a running server exposes at GET /metrics, and writes them out in the Prometheus text format.
+ *
+ * Latencies are recorded into LatencyHistograms and written as summaries, with their 50th, 90th, 99th and 99.9th
+ * percentiles in seconds. Everything else is registered as a supplier and read when the metrics are scraped, so the
+ * numbers the caches and the connection pool already keep are not counted a second time.
+ *
+ * Metrics are registered while the server is being set up. Recording into them afterwards only touches counters that
+ * already exist, so it takes no lock and allocates nothing.
+ */
+public class Metrics {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /**
+     * Metric families by name, in the order they were first registered. Guarded by this.
+     */
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * Register the metrics of one route: its latency, how many requests are in flight, responses by status class
+     * and requests that failed with an exception.
+     */
+    public synchronized Route route(String method, String path){
+        String labels = labels("method", method, "path", path);
+        Route route = new Route();
+        series("http_request_duration_seconds", "summary", "Time to handle a request, including waiting for the database gate.",
+                labels, summary(route.latency));
+        series("http_requests_in_flight", "gauge", "Requests being handled right now.",
+                labels, (out, name, l) -> sample(out, name, l, route.inFlight.sum()));
+        for (int statusClass = 1; statusClass <= 5; statusClass++){
+            LongAdder responses = route.responses[statusClass];
+            series("http_responses_total", "counter", "Responses sent, by status class.",
+                    labels + ",status=\"" + statusClass + "xx\"", (out, name, l) -> sample(out, name, l, responses.sum()));
+        }
+        series("http_request_errors_total", "counter", "Requests whose handler threw an exception.",
+                labels, (out, name, l) -> sample(out, name, l, route.errors.sum()));
+        return route;
+    }
+
+    /**
+     * Register a latency histogram, written as a summary in seconds.
+     *
+     * @param labels the series' labels, as built by labels().
+     */
+    public synchronized LatencyHistogram timer(String name, String help, String labels){
+        LatencyHistogram histogram = new LatencyHistogram();
+        timer(name, help, labels, histogram);
+        return histogram;
+    }
+
+    /**
+     * Register a latency histogram that something else records into.
+     */
+    public synchronized void timer(String name, String help, String labels, LatencyHistogram histogram){
+        series(name, "summary", help, labels, summary(histogram));
+    }
+
+    /**
+     * Register a count that only goes up, read from value when scraped.
+     */
+    public synchronized void counter(String name, String help, String labels, LongSupplier value){
+        series(name, "counter", help, labels, (out, n, l) -> sample(out, n, l, value.getAsLong()));
+    }
+
+    /**
+     * Register a total time that only goes up, read in nanoseconds from nanos when scraped and written in seconds.
+     */
+    public synchronized void secondsCounter(String name, String help, String labels, LongSupplier nanos){
+        series(name, "counter", help, labels, (out, n, l) -> sample(out, n, l, nanos.getAsLong() / 1e9));
+    }
+
+    /**
+     * Register a value that can go up and down, read from value when scraped.
+     */
+    public synchronized void gauge(String name, String help, String labels, DoubleSupplier value){
+        series(name, "gauge", help, labels, (out, n, l) -> sample(out, n, l, value.getAsDouble()));
+    }
+
+    /**
+     * @return every metric in the Prometheus text exposition format.
+     */
+    public synchronized String scrape(){
+        StringBuilder out = new StringBuilder(8192);
+        for (Family family : families.values()){
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (Series series : family.series){
+                series.writer.write(out, family.name, series.labels);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * @param namesAndValues label names each followed by its value.
+     * @return the labels in the form a series takes them, with the values escaped.
+     */
+    public static String labels(String... namesAndValues){
+        StringBuilder labels = new StringBuilder();
+        for (int i = 0; i < namesAndValues.length; i += 2){
+            if (i > 0){ labels.append(','); }
+            String value = namesAndValues[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+            labels.append(namesAndValues[i]).append("=\"").append(value).append('"');
+        }
+        return labels.toString();
+    }
+
+    private void series(String name, String type, String help, String labels, SeriesWriter writer){
+        Family family = families.computeIfAbsent(name, n -> new Family(n, type, help));
+        if (!family.type.equals(type)){
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+        }
+        family.series.add(new Series(labels, writer));
+    }
+
+    private static SeriesWriter summary(LatencyHistogram histogram){
+        return (out, name, labels) -> {
+            String separator = labels.isEmpty() ? "" : ",";
+            for (double quantile : QUANTILES){
+                sample(out, name, labels + separator + "quantile=\"" + quantile + "\"",
+                        histogram.getValueAtPercentile(quantile * 100) / 1e9);
+            }
+            sample(out, name + "_sum", labels, histogram.getTotalNanos() / 1e9);
+            sample(out, name + "_count", labels, histogram.getCount());
+        };
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value){
+        out.append(name);
+        if (!labels.isEmpty()){ out.append('{').append(labels).append('}'); }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value){
+        out.append(name);
+        if (!labels.isEmpty()){ out.append('{').append(labels).append('}'); }
+        out.append(' ').append(value).append('\n');
+    }
+
+    /**
+     * The counters for one route, updated by the handler wrapped around it.
+     */
+    public static final class Route {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder inFlight = new LongAdder();
+        /**
+         * Indexed by status / 100.
+         */
+        private final LongAdder[] responses = new LongAdder[6];
+        private final LongAdder errors = new LongAdder();
+
+        Route(){
+            for (int i = 0; i < responses.length; i++){
+                responses[i] = new LongAdder();
+            }
+        }
+
+        public void started(){
+            inFlight.increment();
+        }
+
+        /**
+         * @param status the response's status code.
+         * @param nanos how long the request took.
+         */
+        public void finished(int status, long nanos){
+            inFlight.decrement();
+            latency.record(nanos);
+            responses[Math.min(Math.max(status / 100, 1), 5)].increment();
+        }
+
+        public void failed(){
+            errors.increment();
+        }
+
+        public LatencyHistogram getLatency(){
+            return latency;
+        }
+    }
+
+    @FunctionalInterface
+    private interface SeriesWriter {
+        void write(StringBuilder out, String name, String labels);
+    }
+
+    private static final class Family {
+        final String name;
+        final String type;
+        final String help;
+        final List<Series> series = new ArrayList<>();
+
+        Family(String name, String type, String help){
+            this.name = name;
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    private static final class Series {
+        final String labels;
+        final SeriesWriter writer;
+
+        Series(String labels, SeriesWriter writer){
+            this.labels = labels;
+            this.writer = writer;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package Util;
+
+import org.h2.tools.RunScript;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Brings the database schema up to date by running numbered SQL scripts from the classpath, each exactly once.
+ *
+ * Scripts live in one classpath directory (db/migration by default) and are named V&lt;version&gt;__&lt;description&gt;.sql,
+ * for example V2__message_time_posted_index.sql. They run in version order, and every script that succeeds is
+ * recorded in the schema_history table along with a checksum of its text. On later runs recorded scripts are skipped,
+ * so migrating a database that is already up to date only reads schema_history.
+ *
+ * An applied script must never be edited: if its checksum no longer matches the recorded one, migrate() refuses to
+ * run rather than leave the database in a state no script describes. Schema changes go into a new script instead.
+ *
+ * H2 commits DDL as it runs, so a script that fails half way is not rolled back. It is not recorded either, so it is
+ * retried on the next start once it has been fixed, which is why scripts use "if not exists" where they can.
+ */
+public class MigrationRunner {
+
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private final String location;
+    /**
+     * The scripts found on the classpath, loaded on first use.
+     */
+    private volatile List<Migration> migrations;
+
+    /**
+     * @param location the classpath directory holding the scripts, for example "db/migration".
+     */
+    public MigrationRunner(String location){
+        this.location = location;
+    }
+
+    /**
+     * Run every script that has not been applied to this database yet.
+     *
+     * @param connection a connection to the database to migrate.
+     * @return the number of scripts applied, 0 if the schema was already up to date.
+     * @throws SQLException if a script or the schema_history bookkeeping fails.
+     * @throws IllegalStateException if an applied script has been changed since it ran.
+     */
+    public int migrate(Connection connection) throws SQLException {
+        createHistoryTable(connection);
+        Map<Integer, Long> applied = appliedChecksums(connection);
+
+        int count = 0;
+        for (Migration migration : getMigrations()){
+            Long checksum = applied.get(migration.version);
+            if (checksum == null){
+                apply(connection, migration);
+                count++;
+            }
+            else if (checksum != migration.checksum){
+                throw new IllegalStateException("Migration " + migration.script + " has changed since it was applied "
+                        + "(checksum " + migration.checksum + ", recorded " + checksum + ")");
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the scripts in the migration location, in version order.
+     */
+    public List<Migration> getMigrations(){
+        List<Migration> current = migrations;
+        if (current == null){
+            try {
+                current = findMigrations();
+            }
+            catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+            migrations = current;
+        }
+        return current;
+    }
+
+    private static void createHistoryTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table if not exists schema_history ("
+                    + "version int primary key, "
+                    + "description varchar(255), "
+                    + "script varchar(255), "
+                    + "checksum bigint, "
+                    + "installed_on timestamp default current_timestamp, "
+                    + "execution_millis bigint)");
+        }
+    }
+
+    private static Map<Integer, Long> appliedChecksums(Connection connection) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT version, checksum FROM schema_history")) {
+            while (rs.next()){
+                applied.put(rs.getInt("version"), rs.getLong("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private static void apply(Connection connection, Migration migration) throws SQLException {
+        long start = System.nanoTime();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            RunScript.execute(connection, new StringReader(migration.sql));
+
+            //record the script in the same transaction as whatever part of it H2 did not already commit
+            String sql = "INSERT INTO schema_history (version, description, script, checksum, execution_millis) "
+                    + "VALUES (?, ?, ?, ?, ?)";
+            try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                preparedStatement.setInt(1, migration.version);
+                preparedStatement.setString(2, migration.description);
+                preparedStatement.setString(3, migration.script);
+                preparedStatement.setLong(4, migration.checksum);
+                preparedStatement.setLong(5, (System.nanoTime() - start) / 1_000_000);
+                preparedStatement.executeUpdate();
+            }
+            connection.commit();
+        }
+        catch (SQLException e){
+            connection.rollback();
+            throw new SQLException("Migration " + migration.script + " failed: " + e.getMessage(), e);
+        }
+        finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private List<Migration> findMigrations() throws IOException {
+        List<String> names = new ArrayList<>();
+        Enumeration<URL> directories = MigrationRunner.class.getClassLoader().getResources(location);
+        while (directories.hasMoreElements()){
+            names.addAll(listScripts(directories.nextElement()));
+        }
+
+        Map<Integer, Migration> byVersion = new HashMap<>();
+        for (String name : names){
+            Matcher matcher = SCRIPT_NAME.matcher(name);
+            if (!matcher.matches()){
+                continue;
+            }
+            Migration migration = new Migration(Integer.parseInt(matcher.group(1)),
+                    matcher.group(2).replace('_', ' '), name, read(location + "/" + name));
+            Migration clash = byVersion.put(migration.version, migration);
+            if (clash != null && !clash.script.equals(name)){
+                throw new IllegalStateException("Migrations " + clash.script + " and " + name
+                        + " have the same version");
+            }
+        }
+
+        List<Migration> sorted = new ArrayList<>(byVersion.values());
+        sorted.sort(Comparator.comparingInt(migration -> migration.version));
+        return List.copyOf(sorted);
+    }
+
+    /**
+     * @return the file names in a classpath directory, whether it is a directory on disk or inside a jar.
+     */
+    private static List<String> listScripts(URL directory) throws IOException {
+        List<String> names = new ArrayList<>();
+        if ("jar".equals(directory.getProtocol())){
+            JarURLConnection jarConnection = (JarURLConnection) directory.openConnection();
+            //a private copy of the jar, so closing it cannot close one the class loader is still reading from
+            jarConnection.setUseCaches(false);
+            String prefix = jarConnection.getEntryName() + "/";
+            try (JarFile jar = jarConnection.getJarFile()) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()){
+                    String entry = entries.nextElement().getName();
+                    if (entry.startsWith(prefix) && entry.indexOf('/', prefix.length()) < 0){
+                        names.add(entry.substring(prefix.length()));
+                    }
+                }
+            }
+        }
+        else {
+            try (Stream<Path> files = Files.list(Paths.get(directory.toURI()))) {
+                files.forEach(file -> names.add(file.getFileName().toString()));
+            }
+            catch (URISyntaxException e){
+                throw new IOException(e);
+            }
+        }
+        return names;
+    }
+
+    private static String read(String resource) throws IOException {
+        try (InputStream in = MigrationRunner.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null){
+                throw new IOException("Missing migration " + resource);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * One migration script.
+     */
+    public static final class Migration {
+        private final int version;
+        private final String description;
+        private final String script;
+        private final String sql;
+        private final long checksum;
+
+        Migration(int version, String description, String script, String sql){
+            this.version = version;
+            this.description = description;
+            this.script = script;
+            this.sql = sql;
+            this.checksum = checksum(sql);
+        }
+
+        public int getVersion(){
+            return version;
+        }
+
+        public String getDescription(){
+            return description;
+        }
+
+        public String getScript(){
+            return script;
+        }
+
+        public long getChecksum(){
+            return checksum;
+        }
+
+        /**
+         * CRC32 of the script with its line endings normalised, so a checkout with CRLF line endings still matches.
+         */
+        private static long checksum(String sql){
+            CRC32 crc = new CRC32();
+            crc.update(sql.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+            return crc.getValue();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses response bodies with gzip or deflate, whichever a request's Accept-Encoding prefers among the encodings
+ * the server offers.
+ *
+ * Configured with system properties:
+ *   api.compression: the encodings to offer, in the server's order of preference, default "gzip,deflate". "none" or
+ *   an empty value turns compression off.
+ *   api.compression.minSize: bodies shorter than this many bytes are sent as they are, default 1500, since below
+ *   about one packet compressing saves nothing on the wire.
+ *   api.compression.level: the zlib level, from 1 (fastest) to 9 (smallest), default 6.
+ */
+public class ResponseCompression {
+
+    /**
+     * A Content-Encoding the server can produce.
+     */
+    public enum Encoding {
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        private final String token;
+
+        Encoding(String token){
+            this.token = token;
+        }
+
+        /**
+         * @return the encoding's name in Accept-Encoding and Content-Encoding headers.
+         */
+        public String getToken(){
+            return token;
+        }
+    }
+
+    private final List<Encoding> encodings;
+    private final int minSize;
+    private final int level;
+
+    /**
+     * @param encodings the encodings to offer, most preferred first.
+     * @param minSize the smallest body, in bytes, worth compressing.
+     * @param level the zlib compression level, 1 to 9.
+     */
+    public ResponseCompression(List<Encoding> encodings, int minSize, int level){
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION){
+            throw new IllegalArgumentException("compression level must be between 1 and 9: " + level);
+        }
+        this.encodings = List.copyOf(encodings);
+        this.minSize = minSize;
+        this.level = level;
+    }
+
+    /**
+     * @return the compression configured by api.compression, api.compression.minSize and api.compression.level.
+     * @throws IllegalArgumentException if api.compression names an unknown encoding or the level is out of range.
+     */
+    public static ResponseCompression fromSystemProperties(){
+        List<Encoding> encodings = new ArrayList<>();
+        String names = System.getProperty("api.compression", "gzip,deflate").trim();
+        if (!names.isEmpty() && !names.equalsIgnoreCase("none")){
+            for (String name : names.split(",")){
+                encodings.add(Encoding.valueOf(name.trim().toUpperCase()));
+            }
+        }
+        return new ResponseCompression(encodings, Integer.getInteger("api.compression.minSize", 1500),
+                Integer.getInteger("api.compression.level", 6));
+    }
+
+    /**
+     * Pick the encoding for a response. The encoding with the highest q-value wins, with ties going to the one the
+     * server prefers; "*" stands for any offered encoding the header does not name, and q=0 refuses an encoding.
+     *
+     * @param acceptEncoding the request's Accept-Encoding header, possibly null.
+     * @return the encoding to use, or null to send the body as it is.
+     */
+    public Encoding negotiate(String acceptEncoding){
+        if (acceptEncoding == null || encodings.isEmpty()){
+            return null;
+        }
+
+        Encoding best = null;
+        double bestQuality = 0;
+        for (Encoding encoding : encodings){
+            double quality = quality(acceptEncoding, encoding.getToken());
+            if (quality > bestQuality){
+                best = encoding;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return whether a body of this many bytes is big enough to compress.
+     */
+    public boolean worthCompressing(int length){
+        return length >= minSize;
+    }
+
+    /**
+     * Compress a whole body.
+     *
+     * @param body the bytes to compress.
+     * @param encoding the encoding to compress them with.
+     * @return the compressed bytes.
+     */
+    public byte[] compress(byte[] body, Encoding encoding){
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (OutputStream out = compress(compressed, encoding, false)) {
+            out.write(body);
+        }
+        catch (IOException e){
+            //a ByteArrayOutputStream never fails
+            throw new AssertionError(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Wrap a stream so that everything written to it is compressed. Closing the returned stream finishes the
+     * compressed data but leaves the target open.
+     *
+     * @param out the stream to write the compressed data to.
+     * @param encoding the encoding to compress with, or null to pass the data through as it is.
+     * @param syncFlush whether flush() should push out everything written so far, at some cost in size, rather than
+     *                  only what the compressor has already produced.
+     * @return the compressing stream.
+     */
+    public OutputStream compress(OutputStream out, Encoding encoding, boolean syncFlush) throws IOException {
+        OutputStream target = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.flush();
+            }
+        };
+        if (encoding == null){
+            return target;
+        }
+        if (encoding == Encoding.GZIP){
+            return new GZIPOutputStream(target, 8192, syncFlush) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+        Deflater deflater = new Deflater(level);
+        return new DeflaterOutputStream(target, deflater, 8192, syncFlush) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                }
+                finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * @return the q-value an Accept-Encoding header gives a content coding, 0 if it does not accept it.
+     */
+    private static double quality(String acceptEncoding, String token){
+        double wildcard = 0;
+        for (String element : acceptEncoding.split(",")){
+            String[] parts = element.split(";");
+            String coding = parts[0].trim();
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++){
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q=")){
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    }
+                    catch (NumberFormatException e){
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equalsIgnoreCase(token)){
+                return quality;
+            }
+            if (coding.equals("*")){
+                wildcard = quality;
+            }
+        }
+        return wildcard;
+    }
+}
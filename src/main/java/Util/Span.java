@@ -0,0 +1,93 @@
+package Util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One timed piece of work inside a Trace, opened with Tracer.span() and closed when the work is done, normally by a
+ * try-with-resources block. Tags record details such as the SQL that ran and the rows it returned.
+ */
+public class Span implements AutoCloseable {
+
+    /**
+     * Stands in for every span of a request that is not traced. All of its methods do nothing.
+     */
+    public static final Span NOOP = new Span(null, -1, "noop", -1, 0, 0);
+
+    private final Trace trace;
+    private final int index;
+    private final String name;
+    private final int parent;
+    private final int depth;
+    private final long startNanos;
+    private long durationNanos = -1;
+    private Map<String, String> tags;
+
+    Span(Trace trace, int index, String name, int parent, int depth, long startNanos){
+        this.trace = trace;
+        this.index = index;
+        this.name = name;
+        this.parent = parent;
+        this.depth = depth;
+        this.startNanos = startNanos;
+    }
+
+    public Span tag(String key, String value){
+        if (trace != null){
+            if (tags == null){ tags = new LinkedHashMap<>(); }
+            tags.put(key, value);
+        }
+        return this;
+    }
+
+    public Span tag(String key, long value){
+        return trace == null ? this : tag(key, Long.toString(value));
+    }
+
+    /**
+     * End the span, and the trace with it if this is the root span.
+     */
+    @Override
+    public void close(){
+        if (trace == null || durationNanos >= 0){ return; }
+        durationNanos = System.nanoTime() - trace.getStartNanos() - startNanos;
+        trace.closed(this);
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the position of the enclosing span in the trace's spans, or -1 for the root.
+     */
+    public int getParent() {
+        return parent;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return when the span started, in microseconds since the trace started.
+     */
+    public long getStart_micros() {
+        return startNanos / 1000;
+    }
+
+    /**
+     * @return how long the span took in microseconds, or -1 if it was never closed.
+     */
+    public long getDuration_micros() {
+        return durationNanos < 0 ? -1 : durationNanos / 1000;
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+}
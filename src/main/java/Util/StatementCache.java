@@ -0,0 +1,98 @@
+package Util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A least-recently-used cache of prepared statements for one pooled connection, keyed by SQL text. Statements in the
+ * cache stay open for as long as their connection does, so the database only parses each SQL string once per
+ * connection. A pooled connection is only ever used by one borrower at a time, so the cache itself needs no locking.
+ *
+ * DAOs reach the cache of a borrowed connection through connection.unwrap(StatementCache.class).
+ */
+public class StatementCache {
+
+    private final Connection physical;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    /**
+     * @param physical the connection statements are prepared on.
+     * @param capacity the most statements to keep open at once.
+     * @param hits counter shared by every cache in the pool.
+     * @param misses counter shared by every cache in the pool.
+     */
+    StatementCache(Connection physical, int capacity, LongAdder hits, LongAdder misses){
+        this.physical = physical;
+        this.hits = hits;
+        this.misses = misses;
+        //access-ordered, so iteration starts at the least recently used statement
+        this.statements = new LinkedHashMap<>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > capacity){
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the prepared statement for the given SQL, preparing it if it is not already cached. Cached statements have
+     * their parameters cleared before they are handed out. The caller must not close the statement.
+     *
+     * @param sql the SQL text.
+     * @param returnGeneratedKeys whether the statement should return generated keys.
+     * @return an open prepared statement.
+     */
+    public PreparedStatement prepare(String sql, boolean returnGeneratedKeys) throws SQLException {
+        String key = returnGeneratedKeys ? "K:" + sql : sql;
+        PreparedStatement preparedStatement = statements.get(key);
+        if (preparedStatement != null && !preparedStatement.isClosed()){
+            hits.increment();
+            preparedStatement.clearParameters();
+            return preparedStatement;
+        }
+
+        misses.increment();
+        preparedStatement = returnGeneratedKeys
+                ? physical.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                : physical.prepareStatement(sql);
+        statements.put(key, preparedStatement);
+        return preparedStatement;
+    }
+
+    /**
+     * @return the number of statements currently cached.
+     */
+    public int size(){
+        return statements.size();
+    }
+
+    /**
+     * Close every cached statement.
+     */
+    void clear(){
+        for (PreparedStatement preparedStatement : statements.values()){
+            closeQuietly(preparedStatement);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement preparedStatement){
+        try {
+            preparedStatement.close();
+        }
+        catch (SQLException e){
+            System.out.println(e.getMessage());
+        }
+    }
+}
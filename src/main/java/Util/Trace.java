@@ -0,0 +1,85 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One traced request: its spans in the order they were opened, each knowing its parent, with times relative to the
+ * start of the trace. Built by the request's own thread, and only read once it is finished.
+ */
+public class Trace {
+
+    private final long trace_id;
+    private final String name;
+    private final long started_at;
+    private final long startNanos;
+    private final List<Span> spans = new ArrayList<>();
+    /**
+     * The innermost open span, or -1 once the root has closed.
+     */
+    private int open = -1;
+    private int dropped_spans;
+
+    Trace(long trace_id, String name){
+        this.trace_id = trace_id;
+        this.name = name;
+        this.started_at = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    Span open(String name){
+        if (spans.size() >= Tracer.getMaxSpans()){
+            dropped_spans++;
+            return Span.NOOP;
+        }
+        int depth = open < 0 ? 0 : spans.get(open).getDepth() + 1;
+        Span span = new Span(this, spans.size(), name, open, depth, System.nanoTime() - startNanos);
+        spans.add(span);
+        open = span.getIndex();
+        return span;
+    }
+
+    long getStartNanos(){
+        return startNanos;
+    }
+
+    void closed(Span span){
+        open = span.getParent();
+        if (open < 0){
+            Tracer.finish(this);
+        }
+    }
+
+    public long getTrace_id() {
+        return trace_id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return when the trace started, in epoch milliseconds.
+     */
+    public long getStarted_at() {
+        return started_at;
+    }
+
+    /**
+     * @return how long the root span took, in microseconds.
+     */
+    public long getDuration_micros() {
+        return spans.isEmpty() ? 0 : spans.get(0).getDuration_micros();
+    }
+
+    public List<Span> getSpans() {
+        return spans;
+    }
+
+    /**
+     * @return how many spans were not recorded because the trace already had trace.maxSpans of them.
+     */
+    public int getDropped_spans() {
+        return dropped_spans;
+    }
+}
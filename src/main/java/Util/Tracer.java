@@ -0,0 +1,140 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records traces of sampled requests: a tree of timed spans, one for the request itself and one inside it for each
+ * service call, JSON read or write and SQL statement, so a slow request shows where its time went.
+ *
+ * The controller starts a trace for a sampled request with startTrace(), and everything the request's thread does
+ * until that span is closed opens its spans with span(), which nests them under the innermost open one. Requests
+ * that are not sampled get Span.NOOP everywhere, which costs a ThreadLocal lookup per span and records nothing. Work
+ * a request hands to another thread is only traced if the task was wrapped with wrap(), as the DatabaseExecutor
+ * does; a trace is only ever used by one thread at a time.
+ *
+ * Finished traces go to a ring buffer holding the last trace.bufferSize of them, read by GET /admin/traces. The
+ * share of requests traced is trace.sampleRate, between 0 and 1, and at most trace.maxSpans spans are kept per trace.
+ */
+public final class Tracer {
+
+    private static final double SAMPLE_RATE = Double.parseDouble(System.getProperty("trace.sampleRate", "0.01"));
+    private static final int BUFFER_SIZE = Math.max(1, Integer.getInteger("trace.bufferSize", 256));
+    private static final int MAX_SPANS = Integer.getInteger("trace.maxSpans", 256);
+
+    private static final ThreadLocal<Trace> current = new ThreadLocal<>();
+    private static final AtomicLong traceIds = new AtomicLong();
+    private static final AtomicReferenceArray<Trace> finished = new AtomicReferenceArray<>(BUFFER_SIZE);
+    private static final AtomicLong finishedCount = new AtomicLong();
+
+    private Tracer(){
+    }
+
+    /**
+     * Start tracing the current thread's request, if it is sampled. Inside a trace that is already running this just
+     * opens a child span.
+     *
+     * @param name what the trace is of, such as the route.
+     * @param force trace the request whatever the sample rate.
+     * @return the root span, which finishes the trace when closed, or Span.NOOP if the request is not traced.
+     */
+    public static Span startTrace(String name, boolean force){
+        if (current.get() != null){
+            return span(name);
+        }
+        if (!force && (SAMPLE_RATE <= 0 || ThreadLocalRandom.current().nextDouble() >= SAMPLE_RATE)){
+            return Span.NOOP;
+        }
+        Trace trace = new Trace(traceIds.incrementAndGet(), name);
+        current.set(trace);
+        return trace.open(name);
+    }
+
+    /**
+     * Open a span nested in the innermost open span of the current thread's trace.
+     *
+     * @return the span, to be closed when the work it times is done, or Span.NOOP if the thread is not tracing.
+     */
+    public static Span span(String name){
+        Trace trace = current.get();
+        return trace == null ? Span.NOOP : trace.open(name);
+    }
+
+    /**
+     * @return whether the current thread is recording a trace, to skip building tags for requests that are not.
+     */
+    public static boolean isTracing(){
+        return current.get() != null;
+    }
+
+    /**
+     * @return the id of the current thread's trace, or -1 if it is not tracing.
+     */
+    public static long currentTraceId(){
+        Trace trace = current.get();
+        return trace == null ? -1 : trace.getTrace_id();
+    }
+
+    /**
+     * Carry the current thread's trace over to the thread that will run a task, so the task's spans nest under the
+     * span that was innermost when it was handed over. The handing thread must not open spans of its own until the
+     * task has finished.
+     *
+     * @return a task that runs the given one inside the current trace, or the task itself if the thread is not
+     *         tracing.
+     */
+    public static Runnable wrap(Runnable task){
+        Trace trace = current.get();
+        if (trace == null){
+            return task;
+        }
+        return () -> {
+            Trace previous = current.get();
+            current.set(trace);
+            try {
+                task.run();
+            }
+            finally {
+                if (previous == null){ current.remove(); }
+                else { current.set(previous); }
+            }
+        };
+    }
+
+    /**
+     * Stop tracing on the current thread, leaving its trace open. Used when a request's root span is going to be
+     * closed by another thread, once the request's asynchronous work completes.
+     */
+    public static void detach(){
+        current.remove();
+    }
+
+    /**
+     * @param limit the most traces to return.
+     * @param minMillis only traces that took at least this long.
+     * @return the most recently finished traces, newest first.
+     */
+    public static List<Trace> getRecentTraces(int limit, long minMillis){
+        List<Trace> traces = new ArrayList<>();
+        long newest = finishedCount.get();
+        for (long i = newest - 1; i >= Math.max(0, newest - BUFFER_SIZE) && traces.size() < limit; i--){
+            Trace trace = finished.get((int) (i % BUFFER_SIZE));
+            if (trace != null && trace.getDuration_micros() >= minMillis * 1000){
+                traces.add(trace);
+            }
+        }
+        return traces;
+    }
+
+    static void finish(Trace trace){
+        current.remove();
+        finished.set((int) (finishedCount.getAndIncrement() % BUFFER_SIZE), trace);
+    }
+
+    static int getMaxSpans(){
+        return MAX_SPANS;
+    }
+}
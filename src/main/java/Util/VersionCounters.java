@@ -0,0 +1,59 @@
+package Util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Version numbers for integer keys, bumped whenever whatever a key names changes, and turned into strong ETags.
+ *
+ * Keys share a fixed number of slots, so memory does not grow with the number of keys. Bumping a key also changes
+ * the version of the other keys in its slot; that only costs those keys one full response, whereas a key's own
+ * version can never stay the same across a change. Every instance starts from a random epoch that is part of its
+ * ETags, so ETags handed out before a restart never match afterwards.
+ *
+ * Bump a key only once its change is visible to readers, and read its ETag before reading what it describes: a
+ * response may then carry an ETag older than its body, which only costs one more full response, but never a newer
+ * one.
+ */
+public class VersionCounters {
+
+    private final AtomicLongArray versions;
+    private final int mask;
+    private final String epoch;
+
+    /**
+     * @param slots how many versions to keep, rounded up to a power of two.
+     */
+    public VersionCounters(int slots){
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.versions = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * @return the key's current version.
+     */
+    public long get(int key){
+        return versions.get(slot(key));
+    }
+
+    /**
+     * Record that whatever the key names has changed.
+     */
+    public void bump(int key){
+        versions.incrementAndGet(slot(key));
+    }
+
+    /**
+     * @return a strong ETag, quoted, for the key's current version.
+     */
+    public String etag(int key){
+        return "\"" + epoch + "-" + Long.toHexString(get(key)) + "\"";
+    }
+
+    private int slot(int key){
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,115 @@
+package Util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * The encodings the API reads request bodies in and writes responses in. JSON is the default; CBOR and Smile are
+ * binary encodings of the same data model, written and parsed by Jackson with the same databind mapping, that skip
+ * the number and string escaping of JSON text and come out smaller.
+ *
+ * Requests pick the format of their body with Content-Type, and of the response with Accept.
+ */
+public enum WireFormat {
+    JSON("application/json"),
+    CBOR("application/cbor"),
+    SMILE("application/x-jackson-smile");
+
+    private final String contentType;
+    private final String name;
+
+    WireFormat(String contentType){
+        this.contentType = contentType;
+        this.name = name().toLowerCase();
+    }
+
+    /**
+     * @return the format's name in lower case, as used in span names and ETags.
+     */
+    public String getName(){
+        return name;
+    }
+
+    /**
+     * @return the media type the format is sent and asked for as.
+     */
+    public String getContentType(){
+        return contentType;
+    }
+
+    /**
+     * @return a new Jackson factory that reads and writes this format.
+     */
+    JsonFactory createFactory(){
+        switch (this){
+            case CBOR:
+                return new CBORFactory();
+            case SMILE:
+                return new SmileFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+
+    /**
+     * @param contentType a request's Content-Type header, possibly null and possibly with parameters.
+     * @return the format it names, or JSON if it names none of them.
+     */
+    public static WireFormat fromContentType(String contentType){
+        if (contentType != null){
+            String mediaType = contentType.split(";")[0].trim();
+            for (WireFormat format : values()){
+                if (format.contentType.equalsIgnoreCase(mediaType)){
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+
+    /**
+     * Pick the format of a response. The format with the highest q-value wins, with ties going to the order of the
+     * header; wildcards, a missing header, or one that names none of the formats fall back to the given format.
+     *
+     * @param accept the request's Accept header, possibly null.
+     * @param fallback the format to use when the header does not single one out.
+     * @return the format to write the response in.
+     */
+    public static WireFormat negotiate(String accept, WireFormat fallback){
+        if (accept == null){
+            return fallback;
+        }
+
+        WireFormat best = null;
+        double bestQuality = 0;
+        double wildcardQuality = 0;
+        for (String element : accept.split(",")){
+            String[] parts = element.split(";");
+            String mediaType = parts[0].trim();
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++){
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q=")){
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    }
+                    catch (NumberFormatException e){
+                        quality = 0;
+                    }
+                }
+            }
+            if (mediaType.equals("*/*") || mediaType.equalsIgnoreCase("application/*")){
+                wildcardQuality = Math.max(wildcardQuality, quality);
+                continue;
+            }
+            for (WireFormat format : values()){
+                if (format.contentType.equalsIgnoreCase(mediaType) && quality > bestQuality){
+                    best = format;
+                    bestQuality = quality;
+                }
+            }
+        }
+        return best == null || wildcardQuality > bestQuality ? fallback : best;
+    }
+}
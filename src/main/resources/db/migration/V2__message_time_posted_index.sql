@@ -0,0 +1,2 @@
+-- time ordered paging of all messages; its leading column also serves any lookup on time_posted_epoch alone
+create index if not exists message_time_posted_idx on message (time_posted_epoch, message_id);
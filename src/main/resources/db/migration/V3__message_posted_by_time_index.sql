@@ -0,0 +1,2 @@
+-- per-user timelines: an index range scan over one posted_by value, already in newest-first order
+create index if not exists message_posted_by_time_idx on message (posted_by, time_posted_epoch desc, message_id desc);
@@ -0,0 +1,95 @@
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDAO;
+import Model.Account;
+import Service.AccountService;
+
+public class AccountServiceCacheTest {
+    AccountDAO accountDAO;
+    AccountService accountService;
+
+    /**
+     * Before every test, create an AccountService on top of a mock AccountDAO.
+     */
+    @Before
+    public void setUp() {
+        accountDAO = mock(AccountDAO.class);
+        accountService = new AccountService(accountDAO);
+    }
+
+    /**
+     * Logging in twice only looks the username up once, and the id lookup for a new message is served by the same
+     * cached account.
+     */
+    @Test
+    public void loginIsCachedByUsernameAndId() {
+        Account account = new Account(1, "testuser1", "password");
+        when(accountDAO.getAccountByUsername("testuser1")).thenReturn(account);
+
+        Account login = new Account("testuser1", "password");
+        Assert.assertEquals(account, accountService.getAccountByUsernameAndPassword(login));
+        Assert.assertEquals(account, accountService.getAccountByUsernameAndPassword(login));
+        Assert.assertEquals(account, accountService.getAccountById(1));
+
+        verify(accountDAO, times(1)).getAccountByUsername("testuser1");
+        verify(accountDAO, never()).getAccountById(1);
+    }
+
+    /**
+     * A username that does not exist is remembered, until an account is registered with it.
+     */
+    @Test
+    public void unknownUsernameIsNegativelyCached() {
+        Account registration = new Account("newuser", "password");
+        Account added = new Account(2, "newuser", "password");
+        when(accountDAO.getAccountByUsername("newuser")).thenReturn(null);
+        when(accountDAO.insertAccount(registration)).thenReturn(added);
+
+        Assert.assertNull(accountService.getAccountByUsername(registration));
+        Assert.assertNull(accountService.getAccountByUsername(registration));
+        verify(accountDAO, times(1)).getAccountByUsername("newuser");
+
+        accountService.addAccount(registration);
+        Assert.assertEquals(added, accountService.getAccountByUsername(registration));
+        Assert.assertEquals(added, accountService.getAccountById(2));
+        verify(accountDAO, times(1)).getAccountByUsername("newuser");
+        verify(accountDAO, never()).getAccountById(2);
+    }
+
+    /**
+     * A lookup that found no account, but finishes after the username was registered, does not mark the new
+     * account's username as unknown.
+     */
+    @Test
+    public void registrationDuringLookupIsNotHidden() throws InterruptedException {
+        Account account = new Account(1, "testuser2", "password");
+        CountDownLatch looking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(accountDAO.getAccountByUsername("testuser2")).thenAnswer(invocation -> {
+            looking.countDown();
+            release.await();
+            return null;
+        });
+        when(accountDAO.insertAccount(new Account("testuser2", "password"))).thenReturn(account);
+
+        Thread lookup = new Thread(() -> accountService.getAccountByUsername(new Account("testuser2", "password")));
+        lookup.start();
+        looking.await();
+        accountService.addAccount(new Account("testuser2", "password"));
+        release.countDown();
+        lookup.join();
+
+        Assert.assertEquals(account,
+                accountService.getAccountByUsernameAndPassword(new Account("testuser2", "password")));
+    }
+}
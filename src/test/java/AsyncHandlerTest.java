@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.DatabaseExecutor;
+import io.javalin.Javalin;
+
+public class AsyncHandlerTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app with api.executionMode=ASYNC, and create a new
+     * webClient.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        String previous = System.setProperty("api.executionMode", "ASYNC");
+        try {
+            socialMediaController = new SocialMediaController();
+        }
+        finally {
+            if (previous == null){ System.clearProperty("api.executionMode"); }
+            else { System.setProperty("api.executionMode", previous); }
+        }
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages, then to GET localhost:8080/messages/2 and
+     * GET localhost:8080/metrics, with the handlers' database calls on the database executor
+     *
+     * Expected Response:
+     *  Status Code: 200 for each
+     *  Response Body: the new message, the same message read back, and the executor's metrics
+     */
+    @Test
+    public void asyncHandlersRespond() throws IOException, InterruptedException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1,\"message_text\":\"hello async\"," +
+                        "\"time_posted_epoch\":1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> posted = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, posted.statusCode());
+        Assert.assertTrue(posted.body().contains("\"message_id\":2"));
+
+        HttpResponse<String> read = send("/messages/2");
+        Assert.assertEquals(200, read.statusCode());
+        Assert.assertTrue(read.body().contains("\"message_text\":\"hello async\""));
+
+        String metrics = send("/metrics").body();
+        Assert.assertTrue(metrics.contains("db_executor_rejected_total 0\n"));
+        Assert.assertTrue(metrics.contains(
+                "http_responses_total{method=\"GET\",path=\"/messages/{message_id}\",status=\"2xx\"} 1\n"));
+    }
+
+    /**
+     * Once every thread is busy and the queue is full, further calls are turned away instead of waiting.
+     */
+    @Test
+    public void fullExecutorRejects() throws InterruptedException {
+        DatabaseExecutor executor = new DatabaseExecutor(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Integer> running = executor.submit(() -> { release.await(); return 1; });
+            CompletableFuture<Integer> queued = executor.submit(() -> 2);
+            CompletableFuture<Integer> rejected = executor.submit(() -> 3);
+
+            Assert.assertTrue(rejected.isCompletedExceptionally());
+            try {
+                rejected.join();
+                Assert.fail();
+            }
+            catch (CompletionException e){
+                Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+            Assert.assertEquals(1, executor.getRejectedCount());
+
+            release.countDown();
+            Assert.assertEquals(1, (int) running.join());
+            Assert.assertEquals(2, (int) queued.join());
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private HttpResponse<String> send(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
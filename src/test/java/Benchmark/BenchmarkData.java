@@ -0,0 +1,88 @@
+package Benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import Util.ConnectionUtil;
+
+/**
+ * Seeds the database for the benchmarks. Every benchmark runs against its own in-memory H2 database (unless db.url
+ * is set to something else), reset with ConnectionUtil.resetTestDatabase() and then filled with a dataset of the
+ * requested size.
+ *
+ * The dataset has one account per messagesPerAccount messages, named user1, user2, ... with password "password".
+ * Messages are spread round-robin over the accounts, with increasing time_posted_epoch values.
+ */
+public class BenchmarkData {
+
+    /**
+     * The database the benchmarks use when db.url is not set.
+     */
+    public static final String BENCHMARK_URL = "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1";
+
+    public static final long FIRST_EPOCH = 1669947792L;
+
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Point ConnectionUtil at the benchmark database. Must be called before anything asks for a connection.
+     */
+    public static void useBenchmarkDatabase(){
+        if (System.getProperty("db.url") == null){
+            System.setProperty("db.url", BENCHMARK_URL);
+        }
+    }
+
+    /**
+     * Reset the database and fill it with accounts and messages.
+     *
+     * @param messages how many messages to insert.
+     * @param messagesPerAccount how many messages each account gets.
+     * @return the number of accounts inserted.
+     */
+    public static int seed(int messages, int messagesPerAccount) throws SQLException {
+        useBenchmarkDatabase();
+        ConnectionUtil.resetTestDatabase();
+
+        int accounts = Math.max(1, messages / messagesPerAccount);
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            connection.setAutoCommit(false);
+
+            //the reset script already created user 1, so start after it
+            try (PreparedStatement preparedStatement =
+                         connection.prepareStatement("INSERT INTO account (username, password) VALUES (?, ?)")) {
+                for (int i = 2; i <= accounts; i++){
+                    preparedStatement.setString(1, "user" + i);
+                    preparedStatement.setString(2, "password");
+                    preparedStatement.addBatch();
+                    if (i % BATCH_SIZE == 0){ preparedStatement.executeBatch(); }
+                }
+                preparedStatement.executeBatch();
+            }
+
+            //the reset script already created message 1, so start after it
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)")) {
+                for (int i = 2; i <= messages; i++){
+                    preparedStatement.setInt(1, 1 + (i % accounts));
+                    preparedStatement.setString(2, messageText(i));
+                    preparedStatement.setLong(3, FIRST_EPOCH + i);
+                    preparedStatement.addBatch();
+                    if (i % BATCH_SIZE == 0){ preparedStatement.executeBatch(); }
+                }
+                preparedStatement.executeBatch();
+            }
+            connection.commit();
+            connection.setAutoCommit(true);
+        }
+        return accounts;
+    }
+
+    /**
+     * @return a message text of typical length for message number i.
+     */
+    public static String messageText(int i){
+        return "benchmark message number " + i + " with a little more text so it looks like a real post";
+    }
+}
@@ -0,0 +1,98 @@
+package Benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.SocialMediaController;
+import io.javalin.Javalin;
+
+/**
+ * Endpoint throughput of the SocialMediaController, started in the benchmark JVM and called over loopback HTTP the
+ * same way the integration tests call it. Each benchmark method is one request; run it with -t to have several
+ * client threads in flight at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerBenchmark {
+
+    private static final int PORT = 8082;
+
+    @Param({"1000", "100000"})
+    public int datasetSize;
+
+    @Param({"100"})
+    public int messagesPerAccount;
+
+    private Javalin app;
+    private HttpClient client;
+    private int accounts;
+
+    @Setup
+    public void setUp() throws SQLException {
+        accounts = BenchmarkData.seed(datasetSize, messagesPerAccount);
+        app = new SocialMediaController().startAPI();
+        app.start(PORT);
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown
+    public void tearDown(){
+        app.stop();
+    }
+
+    @Benchmark
+    public int getMessageById() throws IOException, InterruptedException {
+        return get("/messages/" + (1 + ThreadLocalRandom.current().nextInt(datasetSize)));
+    }
+
+    @Benchmark
+    public int getMessagesByAccount() throws IOException, InterruptedException {
+        return get("/accounts/" + (1 + ThreadLocalRandom.current().nextInt(accounts)) + "/messages");
+    }
+
+    @Benchmark
+    public int getMessagesPage() throws IOException, InterruptedException {
+        return get("/messages?limit=100");
+    }
+
+    @Benchmark
+    public int postMessage() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + PORT + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1,"
+                        + "\"message_text\":\"posted by the benchmark\",\"time_posted_epoch\":1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private int get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + PORT + path))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+    }
+}
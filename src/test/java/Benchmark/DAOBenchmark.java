@@ -0,0 +1,91 @@
+package Benchmark;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import DAO.MessageStore;
+import Model.Account;
+import Model.Message;
+
+/**
+ * MessageDAO and AccountDAO operations, on a seeded dataset of datasetSize messages with messagesPerAccount messages
+ * per account. Lookups pick a random existing id each call. store picks the MessageDAO: JDBC queries H2, MEMORY
+ * serves the same rows from a ColumnarMessageDAO; add -prof gc to jmh.args to compare their allocation.
+ *
+ * Run it through the benchmark profile, for example
+ *   mvn -P benchmark verify -Djmh.includes=DAOBenchmark -Djmh.params="-p datasetSize=100000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DAOBenchmark {
+
+    @Param({"1000", "100000"})
+    public int datasetSize;
+
+    @Param({"100"})
+    public int messagesPerAccount;
+
+    @Param({"JDBC", "MEMORY"})
+    public String store;
+
+    private MessageDAO messageDAO;
+    private AccountDAO accountDAO;
+    private int accounts;
+
+    @Setup
+    public void setUp() throws SQLException {
+        accounts = BenchmarkData.seed(datasetSize, messagesPerAccount);
+        messageDAO = MessageStore.valueOf(store).createDAO();
+        accountDAO = new AccountDAO();
+    }
+
+    @Benchmark
+    public Message getMessageById(){
+        return messageDAO.getMessageById(1 + ThreadLocalRandom.current().nextInt(datasetSize));
+    }
+
+    @Benchmark
+    public List<Message> getAllMessagesPostedBy(){
+        return messageDAO.getAllMessagesPostedBy(1 + ThreadLocalRandom.current().nextInt(accounts));
+    }
+
+    @Benchmark
+    public List<Message> getMessagesPage(){
+        return messageDAO.getMessagesPage(0, Long.MAX_VALUE, null, 100);
+    }
+
+    @Benchmark
+    public Message insertMessage(){
+        return messageDAO.insertMessage(new Message(1, "inserted by the benchmark", BenchmarkData.FIRST_EPOCH));
+    }
+
+    @Benchmark
+    public Account getAccountById(){
+        return accountDAO.getAccountById(1 + ThreadLocalRandom.current().nextInt(accounts));
+    }
+
+    @Benchmark
+    public Account getAccountByUsername(){
+        return accountDAO.getAccountByUsername("user" + (2 + ThreadLocalRandom.current().nextInt(Math.max(1, accounts - 1))));
+    }
+}
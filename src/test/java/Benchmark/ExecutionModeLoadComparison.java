@@ -0,0 +1,116 @@
+package Benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+/**
+ * Load test comparing api.executionMode=PLATFORM against api.executionMode=VIRTUAL. For each mode and each
+ * concurrency level it starts the API, keeps that many GET /messages/1 requests in flight for a fixed time, and
+ * prints one line with throughput and latency percentiles.
+ *
+ * Run the main method on JDK 21+ (otherwise VIRTUAL falls back to platform threads). Arguments, all optional:
+ *   concurrency levels, comma separated (default 1000,10000)
+ *   seconds per run (default 20)
+ * 10k concurrent connections needs a raised open-file limit (ulimit -n) on both client and server.
+ */
+public class ExecutionModeLoadComparison {
+
+    private static final int PORT = 8081;
+
+    public static void main(String[] args) throws Exception {
+        int[] levels = args.length > 0
+                ? Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray()
+                : new int[]{ 1000, 10000 };
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        ConnectionUtil.resetTestDatabase();
+        System.out.println("mode,concurrency,requests,errors,requests_per_second,p50_ms,p99_ms,max_ms");
+        for (String mode : new String[]{ "PLATFORM", "VIRTUAL" }){
+            for (int concurrency : levels){
+                System.out.println(run(mode, concurrency, seconds));
+            }
+        }
+    }
+
+    private static String run(String mode, int concurrency, int seconds) throws InterruptedException {
+        System.setProperty("api.executionMode", mode);
+        Javalin app = new SocialMediaController().startAPI();
+        app.start(PORT);
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + PORT + "/messages/1"))
+                .timeout(Duration.ofSeconds(60))
+                .build();
+
+        Semaphore inFlight = new Semaphore(concurrency);
+        LatencyBuckets latencies = new LatencyBuckets();
+        AtomicLong errors = new AtomicLong();
+
+        //one second of warm up, then the measured run
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+        while (System.nanoTime() < end){
+            inFlight.acquire();
+            long start = System.nanoTime();
+            boolean measured = start >= warmupEnd;
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                if (measured){
+                    if (failure != null || response.statusCode() != 200){ errors.incrementAndGet(); }
+                    else { latencies.record(System.nanoTime() - start); }
+                }
+                inFlight.release();
+            });
+        }
+        inFlight.acquire(concurrency);
+        app.stop();
+
+        long requests = latencies.count();
+        return String.format("%s,%d,%d,%d,%.1f,%.2f,%.2f,%.2f", mode, concurrency, requests, errors.get(),
+                requests / (double) seconds, latencies.percentileMillis(0.50), latencies.percentileMillis(0.99),
+                latencies.percentileMillis(1.0));
+    }
+
+    /**
+     * Latencies counted in 0.1ms buckets up to 10 seconds.
+     */
+    private static class LatencyBuckets {
+        private static final long BUCKET_NANOS = 100_000;
+        private final AtomicLongArray buckets = new AtomicLongArray(100_001);
+
+        void record(long nanos){
+            buckets.incrementAndGet((int) Math.min(nanos / BUCKET_NANOS, buckets.length() - 1));
+        }
+
+        long count(){
+            long total = 0;
+            for (int i = 0; i < buckets.length(); i++){ total += buckets.get(i); }
+            return total;
+        }
+
+        double percentileMillis(double percentile){
+            long target = (long) Math.ceil(count() * percentile);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++){
+                seen += buckets.get(i);
+                if (seen >= target && seen > 0){ return (i + 1) * BUCKET_NANOS / 1e6; }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package Benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Model.Message;
+import Util.JsonCodec;
+
+/**
+ * Compares the old per-request JSON path of the controller handlers against the shared JsonCodec, for one
+ * POST /messages style round trip: parse the request body into a Message, then write the Message back out.
+ *
+ * perRequestMapper builds a new ObjectMapper, parses the body String and serializes to a String, as every handler
+ * used to. sharedCodec parses the body bytes with the cached Message reader and writes straight to an output stream
+ * with the cached Message writer.
+ *
+ * Run with the main method, or with the benchmark profile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+    private String body;
+    private byte[] bodyBytes;
+    private JsonCodec codec;
+
+    @Setup
+    public void setUp(){
+        body = "{\"posted_by\":1,\"message_text\":\"hello message from the benchmark\",\"time_posted_epoch\":1669947792}";
+        bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        codec = JsonCodec.getInstance();
+    }
+
+    @Benchmark
+    public String perRequestMapper() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        Message message = mapper.readValue(body, Message.class);
+        message.setMessage_id(1);
+        return mapper.writeValueAsString(message);
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream sharedCodec() throws IOException {
+        Message message = codec.getMessageReader().readValue(bodyBytes);
+        message.setMessage_id(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        codec.getMessageWriter().writeValue(out, message);
+        return out;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JsonCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
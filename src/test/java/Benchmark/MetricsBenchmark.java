@@ -0,0 +1,55 @@
+package Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Util.LatencyHistogram;
+import Util.Metrics;
+
+/**
+ * The cost the metrics add to every request: recording one latency, and the start and finish of a timed route.
+ * Run with -prof gc in jmh.args to check that recording allocates nothing. Both run on four threads, to include
+ * contention on the shared counters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class MetricsBenchmark {
+
+    private LatencyHistogram histogram;
+    private Metrics.Route route;
+
+    @Setup
+    public void setUp(){
+        Metrics metrics = new Metrics();
+        histogram = metrics.timer("benchmark_duration_seconds", "Benchmark.", "");
+        route = metrics.route("GET", "/benchmark");
+    }
+
+    @Benchmark
+    public void recordLatency(){
+        histogram.record(System.nanoTime() & 0xFFFFFFF);
+    }
+
+    @Benchmark
+    public void timeRoute(){
+        long start = System.nanoTime();
+        route.started();
+        route.finished(200, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,77 @@
+package Benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Model.Account;
+import Model.Message;
+import Util.JsonCodec;
+
+/**
+ * Message and Account JSON round trips through the shared JsonCodec: parse the bytes, then serialize the result back
+ * to bytes. messageList covers the GET /messages response shape with listSize messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelJsonBenchmark {
+
+    @Param({"100", "1000"})
+    public int listSize;
+
+    private JsonCodec codec;
+    private byte[] messageBytes;
+    private byte[] accountBytes;
+    private byte[] messageListBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        codec = JsonCodec.getInstance();
+        messageBytes = codec.getMessageWriter().writeValueAsBytes(
+                new Message(1, 1, BenchmarkData.messageText(1), BenchmarkData.FIRST_EPOCH));
+        accountBytes = "{\"account_id\":1,\"username\":\"user1\",\"password\":\"password\"}"
+                .getBytes(StandardCharsets.UTF_8);
+
+        List<Message> messages = new ArrayList<>(listSize);
+        for (int i = 1; i <= listSize; i++){
+            messages.add(new Message(i, 1 + i % 10, BenchmarkData.messageText(i), BenchmarkData.FIRST_EPOCH + i));
+        }
+        messageListBytes = codec.getMessageListWriter().writeValueAsBytes(messages);
+    }
+
+    @Benchmark
+    public byte[] message() throws IOException {
+        Message message = codec.getMessageReader().readValue(messageBytes);
+        return codec.getMessageWriter().writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] account() throws IOException {
+        Account account = codec.getAccountReader().readValue(accountBytes);
+        return codec.getAccountWriter().writeValueAsBytes(account);
+    }
+
+    @Benchmark
+    public byte[] messageList() throws IOException {
+        List<Message> messages = codec.getMessageListReader().readValue(messageListBytes);
+        return codec.getMessageListWriter().writeValueAsBytes(messages);
+    }
+}
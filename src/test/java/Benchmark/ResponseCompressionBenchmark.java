@@ -0,0 +1,79 @@
+package Benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Model.Message;
+import Util.JsonCodec;
+import Util.ResponseCompression;
+
+/**
+ * What it costs to produce the body of an unpaged message list of rows messages, at each compression level:
+ *   serialize: the JSON alone, as sent to clients that accept no encoding.
+ *   serializeAndGzip: the JSON gzipped, as every request paid before the response cache.
+ *   cached: a repeat request for a list that has not changed, which only looks its compressed bytes up.
+ * The compressed sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseCompressionBenchmark {
+
+    @Param({"100", "1000"})
+    public int rows;
+
+    @Param({"1", "6", "9"})
+    public int level;
+
+    private List<Message> messages;
+    private ResponseCompression compression;
+    private JsonCodec codec;
+    private byte[] cached;
+
+    @Setup
+    public void setUp() throws IOException {
+        messages = new ArrayList<>(rows);
+        for (int i = 1; i <= rows; i++){
+            messages.add(new Message(i, 1 + i % 100, BenchmarkData.messageText(i), BenchmarkData.FIRST_EPOCH + i));
+        }
+        compression = new ResponseCompression(List.of(ResponseCompression.Encoding.GZIP), 0, level);
+        codec = JsonCodec.getInstance();
+        byte[] json = codec.getMessageListWriter().writeValueAsBytes(messages);
+        cached = compression.compress(json, ResponseCompression.Encoding.GZIP);
+        System.out.println(rows + " messages: " + json.length + " bytes of JSON, " + cached.length
+                + " gzipped at level " + level);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return codec.getMessageListWriter().writeValueAsBytes(messages);
+    }
+
+    @Benchmark
+    public byte[] serializeAndGzip() throws IOException {
+        return compression.compress(codec.getMessageListWriter().writeValueAsBytes(messages),
+                ResponseCompression.Encoding.GZIP);
+    }
+
+    @Benchmark
+    public byte[] cached() {
+        return cached;
+    }
+}
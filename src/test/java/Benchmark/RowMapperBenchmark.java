@@ -0,0 +1,152 @@
+package Benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.SqlExecutor;
+import Model.Message;
+import Util.ConnectionUtil;
+
+/**
+ * The cost of turning result rows into objects, reading columns by name from a SELECT * against reading them by
+ * position from an explicit column list, for rows rows per query:
+ *   messagesByName/messagesByIndex: a page of messages, the way JdbcMessageDAO read them before and after.
+ *   wideByName/wideByIndex: the same comparison on a scratch table of 16 columns, where the lookups add up.
+ * Divide the time per operation by rows for the cost per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMapperBenchmark {
+
+    @Param({"100", "1000"})
+    public int rows;
+
+    private static final int WIDE_COLUMNS = 8;
+
+    /**
+     * How the message rows were mapped before: every column looked up by its name.
+     */
+    private static final SqlExecutor.RowMapper<Message> MESSAGE_BY_NAME = rs ->
+            new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                    rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+
+    /**
+     * How JdbcMessageDAO maps them now, from its explicit column list.
+     */
+    private static final SqlExecutor.RowMapper<Message> MESSAGE_BY_INDEX = rs ->
+            new Message(rs.getInt(1), rs.getInt(2), rs.getString(3), rs.getLong(4));
+
+    private static final String[] NUMBER_COLUMNS = new String[WIDE_COLUMNS + 1];
+    private static final String[] TEXT_COLUMNS = new String[WIDE_COLUMNS + 1];
+    static {
+        for (int i = 1; i <= WIDE_COLUMNS; i++){
+            NUMBER_COLUMNS[i] = "n" + i;
+            TEXT_COLUMNS[i] = "s" + i;
+        }
+    }
+
+    private static final SqlExecutor.RowMapper<Object[]> WIDE_BY_NAME = rs -> {
+        Object[] row = new Object[1 + 2 * WIDE_COLUMNS];
+        row[0] = rs.getInt("id");
+        for (int i = 1; i <= WIDE_COLUMNS; i++){
+            row[i] = rs.getLong(NUMBER_COLUMNS[i]);
+            row[WIDE_COLUMNS + i] = rs.getString(TEXT_COLUMNS[i]);
+        }
+        return row;
+    };
+
+    private static final SqlExecutor.RowMapper<Object[]> WIDE_BY_INDEX = rs -> {
+        Object[] row = new Object[1 + 2 * WIDE_COLUMNS];
+        row[0] = rs.getInt(1);
+        for (int i = 1; i <= WIDE_COLUMNS; i++){
+            row[i] = rs.getLong(1 + i);
+            row[WIDE_COLUMNS + i] = rs.getString(1 + WIDE_COLUMNS + i);
+        }
+        return row;
+    };
+
+    private String wideColumns;
+
+    @Setup
+    public void setUp() throws SQLException {
+        BenchmarkData.seed(rows, 100);
+
+        StringBuilder columns = new StringBuilder("id");
+        StringBuilder definition = new StringBuilder("id INT PRIMARY KEY");
+        StringBuilder parameters = new StringBuilder("?");
+        for (int i = 1; i <= WIDE_COLUMNS; i++){
+            columns.append(", ").append(NUMBER_COLUMNS[i]);
+            definition.append(", ").append(NUMBER_COLUMNS[i]).append(" BIGINT");
+            parameters.append(", ?");
+        }
+        for (int i = 1; i <= WIDE_COLUMNS; i++){
+            columns.append(", ").append(TEXT_COLUMNS[i]);
+            definition.append(", ").append(TEXT_COLUMNS[i]).append(" VARCHAR(255)");
+            parameters.append(", ?");
+        }
+        wideColumns = columns.toString();
+
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS wide");
+                statement.execute("CREATE TABLE wide (" + definition + ")");
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    "INSERT INTO wide (" + wideColumns + ") VALUES (" + parameters + ")")) {
+                for (int row = 1; row <= rows; row++){
+                    preparedStatement.setInt(1, row);
+                    for (int i = 1; i <= WIDE_COLUMNS; i++){
+                        preparedStatement.setLong(1 + i, (long) row * i);
+                        preparedStatement.setString(1 + WIDE_COLUMNS + i, BenchmarkData.messageText(row + i));
+                    }
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Message> messagesByName() throws SQLException {
+        return SqlExecutor.queryList("SELECT * FROM Message ORDER BY time_posted_epoch, message_id LIMIT ?",
+                preparedStatement -> preparedStatement.setInt(1, rows), MESSAGE_BY_NAME);
+    }
+
+    @Benchmark
+    public List<Message> messagesByIndex() throws SQLException {
+        return SqlExecutor.queryList("SELECT message_id, posted_by, message_text, time_posted_epoch FROM Message "
+                + "ORDER BY time_posted_epoch, message_id LIMIT ?",
+                preparedStatement -> preparedStatement.setInt(1, rows), MESSAGE_BY_INDEX);
+    }
+
+    @Benchmark
+    public List<Object[]> wideByName() throws SQLException {
+        return SqlExecutor.queryList("SELECT * FROM wide", SqlExecutor.NO_PARAMETERS, WIDE_BY_NAME);
+    }
+
+    @Benchmark
+    public List<Object[]> wideByIndex() throws SQLException {
+        return SqlExecutor.queryList("SELECT " + wideColumns + " FROM wide", SqlExecutor.NO_PARAMETERS,
+                WIDE_BY_INDEX);
+    }
+}
@@ -0,0 +1,75 @@
+package Benchmark;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Model.Message;
+import Service.MessageSearchIndex;
+
+/**
+ * Query latency of the keyword search index over messageCount messages. Message words are drawn from a vocabulary of
+ * vocabularySize words with a Zipf-like skew, so "w0" is in a large share of the messages and "w5000" in only a few;
+ * the benchmarks query a rare term, a very common one and a mix of three.
+ *
+ * Needs a large heap for the bigger sizes, for example -Djmh.args="-jvmArgsAppend -Xmx4g".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SearchBenchmark {
+
+    @Param({"1000000", "3000000"})
+    public int messageCount;
+
+    @Param({"50000"})
+    public int vocabularySize;
+
+    private MessageSearchIndex index;
+
+    @Setup
+    public void setUp(){
+        index = new MessageSearchIndex();
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i <= messageCount; i++){
+            text.setLength(0);
+            int words = 5 + random.nextInt(15);
+            for (int w = 0; w < words; w++){
+                //cubing a uniform draw skews it towards the start of the vocabulary
+                double u = random.nextDouble();
+                text.append('w').append((int) (u * u * u * vocabularySize)).append(' ');
+            }
+            index.add(new Message(i, 1, text.toString(), BenchmarkData.FIRST_EPOCH + i));
+        }
+    }
+
+    @Benchmark
+    public MessageSearchIndex.Hits rareTerm(){
+        return index.search("w40000", 0, 20);
+    }
+
+    @Benchmark
+    public MessageSearchIndex.Hits commonTerm(){
+        return index.search("w0", 0, 20);
+    }
+
+    @Benchmark
+    public MessageSearchIndex.Hits threeTerms(){
+        return index.search("w10 w500 w20000", 0, 20);
+    }
+}
@@ -0,0 +1,101 @@
+package Benchmark;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.JdbcMessageDAO;
+import DAO.MessageDAO;
+import DAO.SqlExecutor;
+import Model.Message;
+import Service.MessageService;
+
+/**
+ * Latency of one user's timeline (GET /accounts/{account_id}/messages at the DAO level) on a large table, for three
+ * plans of the same newest-first query:
+ *   tableScan: no index, every row is read and filtered, then the matches are sorted.
+ *   postedByIndexThenSort: the foreign key's posted_by index finds the rows, which are then sorted.
+ *   indexOrdered: MessageDAO.getAllMessagesPostedBy, a range scan of (posted_by, time_posted_epoch desc) that
+ *   returns the rows already in order.
+ * and for MessageService.getMessagesByAccount, which serves a warm account from its in-memory timeline and the
+ * message cache:
+ *   timelineStore: the whole timeline of a hot account, read over and over.
+ *   timelineStorePage: its newest 20 messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TimelineBenchmark {
+
+    @Param({"1000000"})
+    public int datasetSize;
+
+    @Param({"100", "1000"})
+    public int messagesPerAccount;
+
+    private static final SqlExecutor.RowMapper<Message> MESSAGE = rs ->
+            new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                    rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+
+    private MessageDAO messageDAO;
+    private MessageService messageService;
+    private int accounts;
+
+    @Setup
+    public void setUp() throws SQLException {
+        accounts = BenchmarkData.seed(datasetSize, messagesPerAccount);
+        messageDAO = new JdbcMessageDAO();
+        messageService = new MessageService(messageDAO);
+    }
+
+    @Benchmark
+    public List<Message> tableScan() throws SQLException {
+        return query("SELECT * FROM Message USE INDEX () WHERE posted_by=? "
+                + "ORDER BY time_posted_epoch DESC, message_id DESC");
+    }
+
+    @Benchmark
+    public List<Message> postedByIndexThenSort() throws SQLException {
+        return query("SELECT * FROM Message WHERE posted_by=? ORDER BY time_posted_epoch DESC, message_id DESC");
+    }
+
+    @Benchmark
+    public List<Message> indexOrdered(){
+        return messageDAO.getAllMessagesPostedBy(randomAccount());
+    }
+
+    @Benchmark
+    public List<Message> timelineStore(){
+        return messageService.getMessagesByAccount(1);
+    }
+
+    @Benchmark
+    public List<Message> timelineStorePage(){
+        return messageService.getMessagesByAccount(1, 0, 20);
+    }
+
+    private List<Message> query(String sql) throws SQLException {
+        int account_id = randomAccount();
+        return SqlExecutor.queryList(sql, preparedStatement -> preparedStatement.setInt(1, account_id), MESSAGE);
+    }
+
+    private int randomAccount(){
+        return 1 + ThreadLocalRandom.current().nextInt(accounts);
+    }
+}
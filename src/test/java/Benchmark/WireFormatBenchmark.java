@@ -0,0 +1,83 @@
+package Benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Model.Message;
+import Util.JsonCodec;
+import Util.WireFormat;
+
+/**
+ * Encoding and decoding messages in each WireFormat through its shared JsonCodec, for a single message (the body of
+ * POST /messages and GET /messages/{message_id}) and for a list of 1000 (an unpaged GET /messages):
+ *   encodeMessage/decodeMessage: one message.
+ *   encodeList/decodeList: the list.
+ * The encoded sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final int LIST_SIZE = 1000;
+
+    @Param({"JSON", "CBOR", "SMILE"})
+    public WireFormat format;
+
+    private JsonCodec codec;
+    private Message message;
+    private List<Message> messages;
+    private byte[] encodedMessage;
+    private byte[] encodedList;
+
+    @Setup
+    public void setUp() throws IOException {
+        codec = JsonCodec.getInstance(format);
+        messages = new ArrayList<>(LIST_SIZE);
+        for (int i = 1; i <= LIST_SIZE; i++){
+            messages.add(new Message(i, 1 + i % 100, BenchmarkData.messageText(i), BenchmarkData.FIRST_EPOCH + i));
+        }
+        message = messages.get(0);
+        encodedMessage = codec.getMessageWriter().writeValueAsBytes(message);
+        encodedList = codec.getMessageListWriter().writeValueAsBytes(messages);
+        System.out.println(format + ": " + encodedMessage.length + " bytes per message, " + encodedList.length
+                + " bytes per list of " + LIST_SIZE);
+    }
+
+    @Benchmark
+    public byte[] encodeMessage() throws IOException {
+        return codec.getMessageWriter().writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public Message decodeMessage() throws IOException {
+        return codec.getMessageReader().readValue(encodedMessage);
+    }
+
+    @Benchmark
+    public byte[] encodeList() throws IOException {
+        return codec.getMessageListWriter().writeValueAsBytes(messages);
+    }
+
+    @Benchmark
+    public List<Message> decodeList() throws IOException {
+        return codec.getMessageListReader().readValue(encodedList);
+    }
+}
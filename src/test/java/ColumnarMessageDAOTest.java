@@ -0,0 +1,116 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.ColumnarMessageDAO;
+import Model.Message;
+import Model.MessageCursor;
+
+public class ColumnarMessageDAOTest {
+    ColumnarMessageDAO messageDAO;
+
+    /**
+     * Before every test, create an empty in-memory store.
+     */
+    @Before
+    public void setUp() {
+        messageDAO = new ColumnarMessageDAO(16);
+    }
+
+    /**
+     * Loaded messages keep their ids, and new ones are numbered after the largest of them.
+     */
+    @Test
+    public void insertContinuesAfterLoadedIds() {
+        messageDAO.load(new Message(1, 1, "test message 1", 1669947792));
+        messageDAO.load(new Message(5, 2, "t\u00ebst m\u00ebssage 5", 1669947800));
+
+        Message inserted = messageDAO.insertMessage(new Message(1, "test message 6", 1669947900));
+
+        Assert.assertEquals(6, inserted.getMessage_id());
+        Assert.assertEquals(new Message(5, 2, "t\u00ebst m\u00ebssage 5", 1669947800), messageDAO.getMessageById(5));
+        Assert.assertNull(messageDAO.getMessageById(2));
+        Assert.assertEquals(List.of(inserted, new Message(1, 1, "test message 1", 1669947792)),
+                messageDAO.getAllMessagesPostedBy(1));
+    }
+
+    /**
+     * Listings survive the compaction that follows deleting most messages and rewriting the rest.
+     */
+    @Test
+    public void compactionKeepsLiveMessages() {
+        List<Message> inserted = new ArrayList<>();
+        for (int i = 0; i < 3000; i++){
+            //give every third message an older timestamp, so the rows of an account are not in time order
+            long epoch = 1669947792L + (i % 3 == 0 ? -i : i);
+            inserted.add(messageDAO.insertMessage(new Message(1 + i % 7, "test message " + i, epoch)));
+        }
+        List<Message> kept = new ArrayList<>();
+        for (Message message : inserted){
+            if (message.getMessage_id() % 5 == 0){
+                messageDAO.updateMessage(message.getMessage_id(), new Message(0, "updated " + message.getMessage_id(), 0));
+                kept.add(new Message(message.getMessage_id(), message.getPosted_by(),
+                        "updated " + message.getMessage_id(), message.getTime_posted_epoch()));
+            }
+            else {
+                Assert.assertEquals(message, messageDAO.deleteMessage(message.getMessage_id()));
+            }
+        }
+
+        Assert.assertEquals(kept.size(), messageDAO.size());
+        Assert.assertEquals(kept, messageDAO.getAllMessages());
+        for (Message message : kept){
+            Assert.assertEquals(message, messageDAO.getMessageById(message.getMessage_id()));
+        }
+
+        List<Message> postedBy3 = new ArrayList<>();
+        for (Message message : kept){
+            if (message.getPosted_by() == 3){ postedBy3.add(message); }
+        }
+        postedBy3.sort((a, b) -> a.getTime_posted_epoch() != b.getTime_posted_epoch()
+                ? Long.compare(b.getTime_posted_epoch(), a.getTime_posted_epoch())
+                : Integer.compare(b.getMessage_id(), a.getMessage_id()));
+        Assert.assertEquals(postedBy3, messageDAO.getAllMessagesPostedBy(3));
+        Assert.assertEquals(postedBy3.subList(10, 20), messageDAO.getMessagesPostedByPage(3, 10, 10));
+
+        List<Message> byTime = new ArrayList<>(kept);
+        byTime.sort((a, b) -> a.getTime_posted_epoch() != b.getTime_posted_epoch()
+                ? Long.compare(a.getTime_posted_epoch(), b.getTime_posted_epoch())
+                : Integer.compare(a.getMessage_id(), b.getMessage_id()));
+        Message last = byTime.get(49);
+        Assert.assertEquals(byTime.subList(0, 50), messageDAO.getMessagesPage(0, Long.MAX_VALUE, null, 50));
+        Assert.assertEquals(byTime.subList(50, 100), messageDAO.getMessagesPage(0, Long.MAX_VALUE,
+                new MessageCursor(last.getTime_posted_epoch(), last.getMessage_id()), 50));
+    }
+
+    /**
+     * A stream does not hold the lock while its consumer runs, so writes go through while a slow client is reading,
+     * and messages deleted before their batch is read are left out.
+     */
+    @Test
+    public void streamDoesNotBlockWrites() throws Exception {
+        for (int i = 1; i <= 600; i++){
+            messageDAO.insertMessage(new Message(1, "test message " + i, 1669947792L + i));
+        }
+        List<Integer> streamed = new ArrayList<>();
+        messageDAO.streamAllMessages(message -> {
+            if (streamed.isEmpty()){
+                try {
+                    CompletableFuture.runAsync(() -> messageDAO.deleteMessage(600)).get(5, TimeUnit.SECONDS);
+                }
+                catch (Exception e){
+                    throw new AssertionError("the delete was blocked by the stream", e);
+                }
+            }
+            streamed.add(message.getMessage_id());
+        });
+
+        Assert.assertEquals(599, streamed.size());
+        Assert.assertEquals(599, (int) streamed.get(598));
+    }
+}
@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Model.MessageBatchResult;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class CreateMessageBatchTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with two valid messages, one with blank text
+     * and one from a user that does not exist
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: a result per message; the valid ones created with ids 2 and 3, the others rejected
+     */
+    @Test
+    public void createMessagesBatchPartiallyValid() throws IOException, InterruptedException {
+        HttpRequest postBatchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString("[" +
+                        "{\"posted_by\":1, \"message_text\": \"first\", \"time_posted_epoch\": 1669947800}," +
+                        "{\"posted_by\":1, \"message_text\": \"\", \"time_posted_epoch\": 1669947801}," +
+                        "{\"posted_by\":3, \"message_text\": \"nobody\", \"time_posted_epoch\": 1669947802}," +
+                        "{\"posted_by\":1, \"message_text\": \"second\", \"time_posted_epoch\": 1669947803}]"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postBatchRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+
+        List<MessageBatchResult> results =
+                objectMapper.readValue(response.body(), new TypeReference<List<MessageBatchResult>>(){});
+        Assert.assertEquals(4, results.size());
+        Assert.assertEquals("created", results.get(0).getStatus());
+        Assert.assertEquals(Integer.valueOf(2), results.get(0).getMessage_id());
+        Assert.assertEquals("rejected", results.get(1).getStatus());
+        Assert.assertNull(results.get(1).getMessage_id());
+        Assert.assertEquals("rejected", results.get(2).getStatus());
+        Assert.assertEquals("created", results.get(3).getStatus());
+        Assert.assertEquals(Integer.valueOf(3), results.get(3).getMessage_id());
+
+        HttpRequest getRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/3"))
+                .build();
+        HttpResponse<String> getResponse = webClient.send(getRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(new Message(3, 1, "second", 1669947803),
+                objectMapper.readValue(getResponse.body(), Message.class));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with an empty array
+     *
+     * Expected Response:
+     *  Status Code: 400
+     *  Response Body:
+     */
+    @Test
+    public void createMessagesBatchEmpty() throws IOException, InterruptedException {
+        HttpRequest postBatchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString("[]"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postBatchRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(400, response.statusCode());
+        Assert.assertEquals("", response.body());
+    }
+}
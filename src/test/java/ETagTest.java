@@ -0,0 +1,132 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ETagTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1, then again with its ETag in If-None-Match
+     *
+     * Expected Response:
+     *  Status Code: 200 with an ETag and Cache-Control: no-cache, then 304
+     *  Response Body: the message, then nothing, without the second request reaching the service or the database
+     */
+    @Test
+    public void getMessageNotModified() throws IOException, InterruptedException {
+        HttpResponse<String> response = send("/messages/1", null);
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("no-cache", response.headers().firstValue("Cache-Control").orElse(null));
+        String etag = response.headers().firstValue("ETag").orElse(null);
+        Assert.assertNotNull(etag);
+        Assert.assertTrue(etag.startsWith("\""));
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .header("If-None-Match", "\"stale\", " + etag)
+                .header("X-Trace", "1")
+                .build();
+        HttpResponse<String> notModified = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(304, notModified.statusCode());
+        Assert.assertEquals("", notModified.body());
+        Assert.assertEquals(etag, notModified.headers().firstValue("ETag").orElse(null));
+
+        JsonNode spans = objectMapper.readTree(send("/admin/traces?limit=1", null).body()).get(0).get("spans");
+        for (JsonNode span : spans){
+            Assert.assertFalse(span.get("name").asText().startsWith("sql."));
+            Assert.assertFalse(span.get("name").asText().startsWith("MessageService."));
+        }
+    }
+
+    /**
+     * Sending an http request to PATCH localhost:8080/messages/1 after reading the message and its account's
+     * messages, then reading both again with their old ETags
+     *
+     * Expected Response:
+     *  Status Code: 200 for each read, with new ETags
+     *  Response Body: the updated message
+     */
+    @Test
+    public void updateChangesETags() throws IOException, InterruptedException {
+        String messageETag = send("/messages/1", null).headers().firstValue("ETag").orElse(null);
+        String accountETag = send("/accounts/1/messages", null).headers().firstValue("ETag").orElse(null);
+        Assert.assertEquals(304, send("/accounts/1/messages", accountETag).statusCode());
+        Assert.assertEquals(304, send("/accounts/1/messages?stream=true", accountETag).statusCode());
+
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> message = send("/messages/1", messageETag);
+        Assert.assertEquals(200, message.statusCode());
+        Assert.assertTrue(message.body().contains("updated message"));
+        Assert.assertNotEquals(messageETag, message.headers().firstValue("ETag").orElse(null));
+
+        HttpResponse<String> messages = send("/accounts/1/messages", accountETag);
+        Assert.assertEquals(200, messages.statusCode());
+        Assert.assertTrue(messages.body().contains("updated message"));
+        Assert.assertNotEquals(accountETag, messages.headers().firstValue("ETag").orElse(null));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1 with If-None-Match: W/ and the message's ETag
+     *
+     * Expected Response:
+     *  Status Code: 304, since If-None-Match compares ETags weakly
+     */
+    @Test
+    public void weakIfNoneMatch() throws IOException, InterruptedException {
+        String etag = send("/messages/1", null).headers().firstValue("ETag").orElse(null);
+        Assert.assertEquals(304, send("/messages/1", "W/" + etag).statusCode());
+    }
+
+    private HttpResponse<String> send(String path, String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path));
+        if (ifNoneMatch != null){
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
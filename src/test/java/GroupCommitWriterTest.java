@@ -0,0 +1,162 @@
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import DAO.MessageDAO;
+import Model.Message;
+import Service.GroupCommitWriter;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class GroupCommitWriterTest {
+    MessageDAO messageDAO;
+    GroupCommitWriter groupCommitWriter;
+    AtomicInteger batches;
+    AtomicInteger nextId;
+
+    /**
+     * Before every test, create a writer on top of a mock MessageDAO that hands out increasing ids and counts the
+     * batches it is asked to store.
+     */
+    @Before
+    public void setUp() {
+        messageDAO = mock(MessageDAO.class);
+        batches = new AtomicInteger();
+        nextId = new AtomicInteger(1);
+        when(messageDAO.insertMessages(anyList(), anyInt())).thenAnswer(invocation -> {
+            batches.incrementAndGet();
+            List<Message> messages = invocation.getArgument(0);
+            List<Message> added = new ArrayList<>();
+            for (Message message : messages){
+                added.add(new Message(nextId.getAndIncrement(), message.getPosted_by(),
+                        message.getMessage_text(), message.getTime_posted_epoch()));
+            }
+            return added;
+        });
+        groupCommitWriter = new GroupCommitWriter(messageDAO, 50, 20000, 1000);
+    }
+
+    @After
+    public void tearDown() {
+        groupCommitWriter.shutdown(1000);
+    }
+
+    /**
+     * Messages submitted together are written in fewer batches than messages, and every caller gets its own stored
+     * message back.
+     */
+    @Test
+    public void concurrentSubmitsShareBatches() {
+        List<CompletableFuture<Message>> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++){
+            results.add(groupCommitWriter.submit(new Message(1, "message " + i, 1669947792)));
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++){
+            Message added = results.get(i).join();
+            Assert.assertEquals("message " + i, added.getMessage_text());
+            ids.add(added.getMessage_id());
+        }
+
+        Assert.assertEquals(100, ids.stream().distinct().count());
+        Assert.assertTrue("expected shared batches but got " + batches.get(), batches.get() < 100);
+    }
+
+    /**
+     * When a batch is rolled back, its messages are stored one at a time instead.
+     */
+    @Test
+    public void failedBatchFallsBackToSingleInserts() {
+        when(messageDAO.insertMessages(anyList(), anyInt())).thenReturn(null);
+        when(messageDAO.insertMessage(any(Message.class))).thenAnswer(invocation -> {
+            Message message = invocation.getArgument(0);
+            return new Message(7, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
+        });
+
+        Message added = groupCommitWriter.submit(new Message(1, "single", 1669947792)).join();
+        Assert.assertEquals(new Message(7, 1, "single", 1669947792), added);
+    }
+
+    /**
+     * Messages submitted while the writer shuts down are each either written or rejected; none is left waiting once
+     * shutdown returns.
+     */
+    @Test
+    public void shutdownLeavesNoSubmitWaiting() throws InterruptedException {
+        ConcurrentLinkedQueue<CompletableFuture<Message>> results = new ConcurrentLinkedQueue<>();
+        AtomicBoolean stopped = new AtomicBoolean();
+        List<Thread> submitters = new ArrayList<>();
+        for (int t = 0; t < 4; t++){
+            Thread submitter = new Thread(() -> {
+                for (int i = 0; !stopped.get(); i++){
+                    try {
+                        results.add(groupCommitWriter.submit(new Message(1, "message " + i, 1669947792)));
+                    }
+                    catch (RejectedExecutionException e){
+                        //shut down, or the queue is full
+                    }
+                }
+            });
+            submitters.add(submitter);
+            submitter.start();
+        }
+
+        Thread.sleep(50);
+        Assert.assertTrue(groupCommitWriter.shutdown(10000));
+        stopped.set(true);
+        for (Thread submitter : submitters){
+            submitter.join();
+        }
+
+        Assert.assertFalse(results.isEmpty());
+        for (CompletableFuture<Message> result : results){
+            Assert.assertTrue(result.isDone());
+        }
+    }
+
+    /**
+     * Stopping the API stops the writer thread of its MessageService, so restarting the API leaks no threads.
+     */
+    @Test
+    public void stoppingTheApiStopsTheWriter() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        System.setProperty("db.groupCommit.enabled", "true");
+        Javalin app;
+        try {
+            app = new SocialMediaController().startAPI();
+        }
+        finally {
+            System.clearProperty("db.groupCommit.enabled");
+        }
+        app.start(8080);
+        Assert.assertEquals(1, writerThreads());
+        app.stop();
+        Assert.assertEquals(0, writerThreads());
+    }
+
+    /**
+     * @return how many GroupCommitWriter threads are alive, besides the one this test class started.
+     */
+    private long writerThreads(){
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("message-group-commit") && thread.isAlive())
+                .count() - 1;
+    }
+}
@@ -0,0 +1,261 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import Controller.SocialMediaController;
+import DAO.LogMessageDAO;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class LogMessageDAOTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    Path directory;
+    LogMessageDAO messageDAO;
+
+    /**
+     * Before every test, open a log in an empty directory with 4KB segments and no background compaction.
+     */
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.getRoot().toPath();
+        messageDAO = open();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        messageDAO.close();
+    }
+
+    /**
+     * Inserts, updates and deletes are all there again after reopening, and new ids continue after the old ones.
+     */
+    @Test
+    public void reopenReplaysTheLog() throws IOException {
+        Message first = messageDAO.insertMessage(new Message(1, "test message 1", 1669947792));
+        Message second = messageDAO.insertMessage(new Message(2, "test message 2", 1669947800));
+        Message third = messageDAO.insertMessage(new Message(1, "test message 3", 1669947900));
+        messageDAO.updateMessage(first.getMessage_id(), new Message(0, "updated message 1", 0));
+        Assert.assertEquals(second, messageDAO.deleteMessage(second.getMessage_id()));
+
+        messageDAO.close();
+        messageDAO = open();
+
+        Message updated = new Message(1, 1, "updated message 1", 1669947792);
+        Assert.assertEquals(List.of(updated, third), messageDAO.getAllMessages());
+        Assert.assertEquals(List.of(third, updated), messageDAO.getAllMessagesPostedBy(1));
+        Assert.assertNull(messageDAO.getMessageById(second.getMessage_id()));
+        Assert.assertEquals(4, messageDAO.insertMessage(new Message(2, "test message 4", 1669948000)).getMessage_id());
+    }
+
+    /**
+     * A record damaged on disk is dropped on replay, together with anything written after it in its segment.
+     */
+    @Test
+    public void damagedRecordIsDiscarded() throws IOException {
+        messageDAO.insertMessage(new Message(1, "test message 1", 1669947792));
+        messageDAO.insertMessage(new Message(1, "test message 2", 1669947800));
+        messageDAO.close();
+
+        //flip the last byte of the second record's text
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("0000000001.log").toFile(), "rw")){
+            long last = 2 * (8 + 17) + "test message 1".length() + "test message 2".length() - 1;
+            file.seek(last);
+            byte b = file.readByte();
+            file.seek(last);
+            file.writeByte(b ^ 1);
+        }
+        messageDAO = open();
+
+        Assert.assertEquals(List.of(new Message(1, 1, "test message 1", 1669947792)), messageDAO.getAllMessages());
+        Message inserted = messageDAO.insertMessage(new Message(1, "test message 3", 1669947900));
+        messageDAO.close();
+        messageDAO = open();
+        Assert.assertEquals(List.of(new Message(1, 1, "test message 1", 1669947792), inserted),
+                messageDAO.getAllMessages());
+    }
+
+    /**
+     * A batch of messages is written as one record, and is all there again after reopening.
+     */
+    @Test
+    public void batchSurvivesReopen() throws IOException {
+        List<Message> inserted = messageDAO.insertMessages(List.of(new Message(1, "test message 1", 1669947792),
+                new Message(2, "test message 2", 1669947800), new Message(1, "test message 3", 1669947900)), 100);
+        messageDAO.close();
+        messageDAO = open();
+
+        Assert.assertEquals(inserted, messageDAO.getAllMessages());
+        Assert.assertEquals(4, messageDAO.insertMessage(new Message(2, "test message 4", 1669948000)).getMessage_id());
+    }
+
+    /**
+     * A batch damaged anywhere on disk, as when a crash tears it, is dropped as a whole on replay.
+     */
+    @Test
+    public void damagedBatchIsDiscardedWhole() throws IOException {
+        Message first = messageDAO.insertMessage(new Message(1, "test message 1", 1669947792));
+        messageDAO.insertMessages(List.of(new Message(1, "test message 2", 1669947800),
+                new Message(2, "test message 3", 1669947900)), 100);
+        messageDAO.close();
+
+        //flip the last byte of the batch, in the text of its second message
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("0000000001.log").toFile(), "rw")){
+            long last = (8 + 17) + "test message 1".length() + 8 + 1 + 2 * (8 + 17) + "test message 2".length()
+                    + "test message 3".length() - 1;
+            file.seek(last);
+            byte b = file.readByte();
+            file.seek(last);
+            file.writeByte(b ^ 1);
+        }
+        messageDAO = open();
+
+        Assert.assertEquals(List.of(first), messageDAO.getAllMessages());
+    }
+
+    /**
+     * The copy left behind by a compaction that did not finish is deleted on reopen, and the log is as it was.
+     */
+    @Test
+    public void unfinishedCompactionIsDiscarded() throws IOException {
+        Message first = messageDAO.insertMessage(new Message(1, "test message 1", 1669947792));
+        messageDAO.close();
+        Files.write(directory.resolve("0000000001.compact"), new byte[]{1, 2, 3});
+        messageDAO = open();
+
+        Assert.assertFalse(Files.exists(directory.resolve("0000000001.compact")));
+        Assert.assertEquals(List.of(first), messageDAO.getAllMessages());
+    }
+
+    /**
+     * Compaction deletes mostly dead segments and keeps every live message, also across a reopen.
+     */
+    @Test
+    public void compactionKeepsLiveMessages() throws IOException {
+        List<Message> kept = new ArrayList<>();
+        for (int i = 0; i < 500; i++){
+            Message message = messageDAO.insertMessage(new Message(1 + i % 3, "test message " + i, 1669947792L + i));
+            if (i % 10 == 0){ kept.add(message); }
+        }
+        for (int i = 0; i < 500; i++){
+            if (i % 10 != 0){ messageDAO.deleteMessage(i + 1); }
+        }
+        int segments = messageDAO.getSegmentCount();
+
+        Assert.assertTrue(messageDAO.compact() > 0);
+        Assert.assertTrue(messageDAO.getSegmentCount() < segments);
+        Assert.assertEquals(kept, messageDAO.getAllMessages());
+
+        messageDAO.close();
+        messageDAO = open();
+        Assert.assertEquals(kept, messageDAO.getAllMessages());
+        Assert.assertEquals(kept.subList(0, 10), messageDAO.getMessagesPage(0, Long.MAX_VALUE, null, 10));
+    }
+
+    /**
+     * Deleting the newest message and compacting away its records does not let its id be handed out again after a
+     * reopen.
+     */
+    @Test
+    public void compactionKeepsTheHighestId() throws IOException {
+        for (int i = 0; i < 50; i++){
+            messageDAO.insertMessage(new Message(1, "test message " + i, 1669947792L + i));
+        }
+        for (int id = 2; id <= 50; id++){
+            messageDAO.deleteMessage(id);
+        }
+        //roll the log on with updates, which add no new ids
+        for (int i = 0; messageDAO.getSegmentCount() < 3; i++){
+            messageDAO.updateMessage(1, new Message(0, "updated message " + i, 0));
+        }
+
+        Assert.assertTrue(messageDAO.compact() > 0);
+        messageDAO.close();
+        messageDAO = open();
+
+        Assert.assertEquals(1, messageDAO.size());
+        Assert.assertEquals(51, messageDAO.insertMessage(new Message(1, "test message 51", 1669948000)).getMessage_id());
+    }
+
+    /**
+     * A stream does not hold the lock while its consumer runs, so a compaction that moves the records still to be
+     * streamed and deletes their segments goes through, and the stream carries on from the moved copies. The 300
+     * messages streamed are more than one batch.
+     */
+    @Test
+    public void streamSurvivesCompaction() throws Exception {
+        List<Message> kept = new ArrayList<>();
+        for (int i = 0; i < 3000; i++){
+            Message message = messageDAO.insertMessage(new Message(1, "test message " + i, 1669947792L + i));
+            if (i % 10 == 0){ kept.add(message); }
+        }
+        for (int i = 0; i < 3000; i++){
+            if (i % 10 != 0){ messageDAO.deleteMessage(i + 1); }
+        }
+
+        List<Message> streamed = new ArrayList<>();
+        messageDAO.streamAllMessagesPostedBy(1, message -> {
+            if (streamed.isEmpty()){
+                try {
+                    Assert.assertTrue(CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return messageDAO.compact();
+                        }
+                        catch (IOException e){
+                            throw new RuntimeException(e);
+                        }
+                    }).get(5, TimeUnit.SECONDS) > 0);
+                }
+                catch (Exception e){
+                    throw new AssertionError("the compaction was blocked by the stream", e);
+                }
+            }
+            streamed.add(message);
+        });
+
+        List<Message> newestFirst = new ArrayList<>(kept);
+        Collections.reverse(newestFirst);
+        Assert.assertEquals(newestFirst, streamed);
+    }
+
+    /**
+     * Stopping the API closes the message log it opened, so the log can be opened again.
+     */
+    @Test
+    public void stoppingTheApiClosesTheLog() throws IOException {
+        ConnectionUtil.resetTestDatabase();
+        Path apiDirectory = directory.resolve("api");
+        System.setProperty("message.store", "LOG");
+        System.setProperty("message.log.dir", apiDirectory.toString());
+        Javalin app;
+        try {
+            app = new SocialMediaController().startAPI();
+        }
+        finally {
+            System.clearProperty("message.store");
+            System.clearProperty("message.log.dir");
+        }
+        app.start(8080);
+        app.stop();
+
+        new LogMessageDAO(apiDirectory, 4096, false, 0).close();
+    }
+
+    private LogMessageDAO open() throws IOException {
+        return new LogMessageDAO(directory, 4096, false, 0);
+    }
+}
@@ -0,0 +1,198 @@
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.MessageDAO;
+import DAO.RowConsumer;
+import Model.Message;
+import Model.MessageSearchResult;
+import Service.MessageService;
+
+public class MessageServiceCacheTest {
+    MessageDAO messageDAO;
+    MessageService messageService;
+
+    /**
+     * Before every test, create a MessageService on top of a mock MessageDAO.
+     */
+    @Before
+    public void setUp() {
+        messageDAO = mock(MessageDAO.class);
+        messageService = new MessageService(messageDAO);
+    }
+
+    /**
+     * Looking the same message up twice only goes to the DAO once.
+     */
+    @Test
+    public void getMessageByIdIsCached() {
+        Message message = new Message(1, 1, "test message 1", 1669947792);
+        when(messageDAO.getMessageById(1)).thenReturn(message);
+
+        Assert.assertEquals(message, messageService.getMessageById(1));
+        Assert.assertEquals(message, messageService.getMessageById(1));
+
+        verify(messageDAO, times(1)).getMessageById(1);
+        Assert.assertEquals(0.5, messageService.getMessageCache().getHitRatio(), 0.0);
+    }
+
+    /**
+     * Updating a message throws away the cached copy, so the next lookup sees the new text.
+     */
+    @Test
+    public void updateMessageInvalidatesCache() {
+        Message original = new Message(1, 1, "test message 1", 1669947792);
+        Message updated = new Message(1, 1, "updated message", 1669947792);
+        Message change = new Message(1, "updated message", 1669947792);
+        when(messageDAO.getMessageById(1)).thenReturn(original, updated);
+        when(messageDAO.updateMessage(1, change)).thenReturn(updated);
+
+        messageService.getMessageById(1);
+        Message result = messageService.updateMessage(1, change);
+
+        Assert.assertEquals(updated, result);
+        Assert.assertEquals(updated, messageService.getMessageById(1));
+        verify(messageDAO, times(2)).getMessageById(1);
+    }
+
+    /**
+     * A lookup that read the message before an update, but finishes after it, does not cache the old text.
+     */
+    @Test
+    public void slowLoadDoesNotOverwriteUpdate() throws InterruptedException {
+        Message original = new Message(1, 1, "test message 1", 1669947792);
+        Message updated = new Message(1, 1, "updated message", 1669947792);
+        Message change = new Message(1, "updated message", 1669947792);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(messageDAO.getMessageById(1)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await();
+            return original;
+        }).thenReturn(updated);
+        when(messageDAO.updateMessage(1, change)).thenReturn(updated);
+
+        Thread reader = new Thread(() -> messageService.getMessageById(1));
+        reader.start();
+        loading.await();
+        messageService.updateMessage(1, change);
+        release.countDown();
+        reader.join();
+
+        Assert.assertEquals(updated, messageService.getMessageById(1));
+        Assert.assertEquals(updated, messageService.getMessageById(1));
+        verify(messageDAO, times(2)).getMessageById(1);
+    }
+
+    /**
+     * A delete that comes in while an update of the same message is between its DAO call and the cache and index,
+     * waits for the update to finish, so the deleted message is neither cached nor found by a search afterwards.
+     */
+    @Test
+    public void deleteDuringUpdateIsNotUndone() throws InterruptedException {
+        Message updated = new Message(1, 1, "updated message", 1669947792);
+        Message change = new Message(1, "updated message", 1669947792);
+        CountDownLatch updating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(messageDAO.updateMessage(1, change)).thenAnswer(invocation -> {
+            updating.countDown();
+            release.await();
+            return updated;
+        });
+        when(messageDAO.deleteMessage(1)).thenReturn(updated);
+
+        Thread updater = new Thread(() -> messageService.updateMessage(1, change));
+        updater.start();
+        updating.await();
+        Thread deleter = new Thread(() -> messageService.deleteMessage(1));
+        deleter.start();
+        while (deleter.getState() != Thread.State.WAITING && deleter.getState() != Thread.State.TERMINATED){
+            Thread.sleep(1);
+        }
+        release.countDown();
+        updater.join();
+        deleter.join();
+
+        Assert.assertNull(messageService.getMessageById(1));
+        Assert.assertEquals(0, messageService.searchMessages("updated", 0, 10).getTotal_matches());
+    }
+
+    /**
+     * Deleting a message removes it from the cache.
+     */
+    @Test
+    public void deleteMessageInvalidatesCache() {
+        Message message = new Message(1, 1, "test message 1", 1669947792);
+        when(messageDAO.getMessageById(1)).thenReturn(message, (Message) null);
+        when(messageDAO.deleteMessage(1)).thenReturn(message);
+
+        Assert.assertEquals(message, messageService.getMessageById(1));
+        Assert.assertEquals(message, messageService.deleteMessage(message));
+        Assert.assertNull(messageService.getMessageById(1));
+    }
+
+    /**
+     * Search hits that are not cached are loaded with one batch lookup, in the order the index ranked them, and
+     * cached for the next search.
+     */
+    @Test
+    public void searchLoadsMissesInOneCall() throws Exception {
+        Message first = new Message(1, 1, "apple pie", 1669947792);
+        Message second = new Message(2, 1, "apple apple tart", 1669947793);
+        doAnswer(invocation -> {
+            RowConsumer<Message> consumer = invocation.getArgument(0);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).when(messageDAO).streamAllMessages(any());
+        when(messageDAO.getMessagesById(any())).thenAnswer(invocation -> {
+            int[] ids = invocation.getArgument(0);
+            return ids[0] == 2 ? List.of(second, first) : List.of(first, second);
+        });
+        messageService = new MessageService(messageDAO);
+
+        List<Message> messages = messageService.searchMessages("apple", 0, 10).getMessages();
+        Assert.assertEquals(List.of(second, first), messages);
+        Assert.assertEquals(messages, messageService.searchMessages("apple", 0, 10).getMessages());
+        verify(messageDAO, times(1)).getMessagesById(any());
+        verify(messageDAO, never()).getMessageById(anyInt());
+    }
+
+    /**
+     * A hit whose message is gone from the DAO is dropped from the index, and the search runs again, so the page is
+     * full and the total only counts messages that exist.
+     */
+    @Test
+    public void searchDropsHitsWithoutMessage() throws Exception {
+        Message kept = new Message(1, 1, "apple pie", 1669947792);
+        Message deleted = new Message(2, 1, "apple tart", 1669947793);
+        doAnswer(invocation -> {
+            RowConsumer<Message> consumer = invocation.getArgument(0);
+            consumer.accept(kept);
+            consumer.accept(deleted);
+            return null;
+        }).when(messageDAO).streamAllMessages(any());
+        when(messageDAO.getMessagesById(any())).thenAnswer(invocation -> {
+            int[] ids = invocation.getArgument(0);
+            return ids.length == 1 && ids[0] == 1 ? List.of(kept) : List.of();
+        });
+        messageService = new MessageService(messageDAO);
+
+        MessageSearchResult result = messageService.searchMessages("apple", 0, 1);
+        Assert.assertEquals(List.of(kept), result.getMessages());
+        Assert.assertEquals(1, result.getTotal_matches());
+        Assert.assertEquals(1, messageService.searchMessages("apple", 0, 10).getTotal_matches());
+    }
+}
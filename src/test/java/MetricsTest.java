@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.LatencyHistogram;
+import io.javalin.Javalin;
+
+public class MetricsTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/metrics after two requests to GET localhost:8080/messages/1 and
+     * one to GET localhost:8080/messages/oops
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the route's latency summary with a count of 3, its responses by status class with the
+     *  unparseable id counted as an error, and the MessageDAO, connection pool and cache metrics
+     */
+    @Test
+    public void metricsCountRequests() throws IOException, InterruptedException {
+        send("/messages/1");
+        send("/messages/1");
+        send("/messages/oops");
+
+        HttpResponse<String> response = send("/metrics");
+        String body = response.body();
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+        Assert.assertTrue(body.contains("# TYPE http_request_duration_seconds summary\n"));
+        Assert.assertTrue(body.contains(
+                "http_request_duration_seconds_count{method=\"GET\",path=\"/messages/{message_id}\"} 3\n"));
+        Assert.assertTrue(body.contains(
+                "http_responses_total{method=\"GET\",path=\"/messages/{message_id}\",status=\"2xx\"} 2\n"));
+        Assert.assertTrue(body.contains(
+                "http_responses_total{method=\"GET\",path=\"/messages/{message_id}\",status=\"5xx\"} 1\n"));
+        Assert.assertTrue(body.contains(
+                "http_request_errors_total{method=\"GET\",path=\"/messages/{message_id}\"} 1\n"));
+        Assert.assertTrue(body.contains(
+                "http_requests_in_flight{method=\"GET\",path=\"/messages/{message_id}\"} 0\n"));
+        //the second lookup is served from the message cache
+        Assert.assertTrue(body.contains(
+                "dao_method_duration_seconds_count{dao=\"MessageDAO\",method=\"getMessageById\"} 1\n"));
+        Assert.assertTrue(body.contains("cache_hits_total{cache=\"messages\"} 1\n"));
+        Assert.assertTrue(body.contains("db_pool_wait_duration_seconds_count "));
+        Assert.assertTrue(body.contains("db_statement_cache_hits_total "));
+    }
+
+    /**
+     * Percentiles come back within the histogram's precision.
+     */
+    @Test
+    public void histogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++){
+            histogram.record(micros * 1000);
+        }
+
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(1_000_000, histogram.getMaxNanos());
+        Assert.assertEquals(500_000, histogram.getValueAtPercentile(50), 500_000 * 0.035);
+        Assert.assertEquals(990_000, histogram.getValueAtPercentile(99), 990_000 * 0.035);
+        Assert.assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    private HttpResponse<String> send(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,91 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.MigrationRunner;
+
+public class MigrationRunnerTest {
+    Connection connection;
+
+    /**
+     * Before every test, open a fresh in-memory database that no migration has touched.
+     */
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:migration_test", "sa", "sa");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    /**
+     * The first run applies every script and records it; the second finds nothing to do.
+     */
+    @Test
+    public void migrateAppliesEachScriptOnce() throws SQLException {
+        MigrationRunner runner = new MigrationRunner("db/test-migration");
+
+        Assert.assertEquals(2, runner.migrate(connection));
+        Assert.assertEquals(0, runner.migrate(connection));
+        Assert.assertEquals(0, new MigrationRunner("db/test-migration").migrate(connection));
+        Assert.assertEquals(2, count("SELECT COUNT(*) FROM schema_history"));
+        Assert.assertEquals(0, count("SELECT COUNT(*) FROM widget"));
+    }
+
+    /**
+     * A script that has been edited since it was applied stops the migration.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void migrateRejectsChangedScript() throws SQLException {
+        MigrationRunner runner = new MigrationRunner("db/test-migration");
+        runner.migrate(connection);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("UPDATE schema_history SET checksum = checksum + 1 WHERE version = 1");
+        }
+
+        runner.migrate(connection);
+    }
+
+    /**
+     * A database set up by the old drop-and-recreate script keeps its rows when the application migrations run on it.
+     */
+    @Test
+    public void applicationMigrationsKeepExistingData() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table account (account_id int primary key auto_increment, "
+                    + "username varchar(255) unique, password varchar(255))");
+            statement.execute("create table message (message_id int primary key auto_increment, posted_by int, "
+                    + "message_text varchar(255), time_posted_epoch bigint, "
+                    + "foreign key (posted_by) references account(account_id))");
+            statement.execute("insert into account (username, password) values ('testuser1', 'password')");
+            statement.execute("insert into message (posted_by, message_text, time_posted_epoch) "
+                    + "values (1, 'test message 1', 1669947792)");
+        }
+
+        MigrationRunner runner = new MigrationRunner("db/migration");
+        Assert.assertEquals(runner.getMigrations().size(), runner.migrate(connection));
+        Assert.assertEquals(1, count("SELECT COUNT(*) FROM message"));
+        Assert.assertEquals(1, count("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES "
+                + "WHERE INDEX_NAME = 'MESSAGE_POSTED_BY_TIME_IDX'"));
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
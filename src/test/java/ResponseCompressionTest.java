@@ -0,0 +1,160 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import Util.ResponseCompression;
+import io.javalin.Javalin;
+
+public class ResponseCompressionTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, create a new webClient and ObjectMapper, and
+     * post enough messages for account 1 that its list is worth compressing.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+
+        StringBuilder batch = new StringBuilder("[");
+        for (int i = 0; i < 100; i++){
+            if (i > 0){ batch.append(','); }
+            batch.append("{\"posted_by\":1,\"message_text\":\"compressible message ").append(i)
+                    .append("\",\"time_posted_epoch\":").append(1669947800 + i).append('}');
+        }
+        batch.append(']');
+        HttpRequest postBatchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(batch.toString()))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(postBatchRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/accounts/1/messages with Accept-Encoding gzip, deflate and none
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the same 101 messages each time, gzipped, deflated and as they are, all from one query
+     */
+    @Test
+    public void listCompressedAndCached() throws IOException, InterruptedException {
+        HttpResponse<byte[]> gzipped = send("/accounts/1/messages", "gzip");
+        Assert.assertEquals(200, gzipped.statusCode());
+        Assert.assertEquals("gzip", gzipped.headers().firstValue("Content-Encoding").orElse(null));
+        Assert.assertEquals("Accept, Accept-Encoding", gzipped.headers().firstValue("Vary").orElse(null));
+        String json = decode(new GZIPInputStream(new ByteArrayInputStream(gzipped.body())));
+        Assert.assertTrue(gzipped.body().length < json.length());
+        List<Message> messages = objectMapper.readValue(json, new TypeReference<List<Message>>(){});
+        Assert.assertEquals(101, messages.size());
+
+        HttpResponse<byte[]> deflated = send("/accounts/1/messages", "gzip;q=0.5, deflate");
+        Assert.assertEquals("deflate", deflated.headers().firstValue("Content-Encoding").orElse(null));
+        Assert.assertEquals(json, decode(new InflaterInputStream(new ByteArrayInputStream(deflated.body()))));
+
+        HttpResponse<byte[]> identity = send("/accounts/1/messages", null);
+        Assert.assertFalse(identity.headers().firstValue("Content-Encoding").isPresent());
+        Assert.assertEquals(json, new String(identity.body(), StandardCharsets.UTF_8));
+
+        //only the first request loaded and serialized the list
+        String metrics = new String(send("/metrics", null).body(), StandardCharsets.UTF_8);
+        Assert.assertTrue(metrics.contains("cache_hits_total{cache=\"responses\"} 2\n"));
+        Assert.assertTrue(metrics.contains("cache_misses_total{cache=\"responses\"} 1\n"));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?stream=true with Accept-Encoding gzip
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the 101 messages, gzipped while they are streamed
+     */
+    @Test
+    public void streamCompressed() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = send("/accounts/1/messages?stream=true", "gzip");
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(null));
+        String json = decode(new GZIPInputStream(new ByteArrayInputStream(response.body())));
+        Assert.assertEquals(101, objectMapper.readValue(json, new TypeReference<List<Message>>(){}).size());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1 with Accept-Encoding gzip
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the message as it is, since it is under api.compression.minSize
+     */
+    @Test
+    public void smallBodyNotCompressed() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = send("/messages/1", "gzip");
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertFalse(response.headers().firstValue("Content-Encoding").isPresent());
+        Assert.assertTrue(new String(response.body(), StandardCharsets.UTF_8).contains("\"message_id\":1"));
+    }
+
+    /**
+     * The highest q-value wins, ties go to the server's order, * covers unnamed encodings and q=0 refuses one.
+     */
+    @Test
+    public void negotiate() {
+        ResponseCompression compression = new ResponseCompression(
+                List.of(ResponseCompression.Encoding.GZIP, ResponseCompression.Encoding.DEFLATE), 0, 6);
+        Assert.assertEquals(ResponseCompression.Encoding.GZIP, compression.negotiate("deflate, gzip"));
+        Assert.assertEquals(ResponseCompression.Encoding.DEFLATE, compression.negotiate("gzip;q=0.2, deflate;q=0.8"));
+        Assert.assertEquals(ResponseCompression.Encoding.DEFLATE, compression.negotiate("gzip;q=0, *"));
+        Assert.assertNull(compression.negotiate("br, identity"));
+        Assert.assertNull(compression.negotiate(null));
+        Assert.assertNull(new ResponseCompression(List.of(), 0, 6).negotiate("gzip"));
+    }
+
+    private String decode(InputStream in) throws IOException {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private HttpResponse<byte[]> send(String path, String acceptEncoding) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path));
+        if (acceptEncoding != null){
+            request.header("Accept-Encoding", acceptEncoding);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
@@ -89,4 +89,41 @@ public class RetrieveAllMessagesForUserTest {
         List<Message> actualResult = objectMapper.readValue(response.body().toString(), new TypeReference<List<Message>>(){});
         Assert.assertTrue(actualResult.isEmpty());
     }
+
+    /**
+     * Sending http requests to GET localhost:8080/accounts/1/messages, whole and streamed, after posting one message
+     * older and one newer than the existing one
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the user's messages, newest first by time_posted_epoch
+     */
+    @Test
+    public void getAllMessagesFromUserNewestFirst() throws IOException, InterruptedException {
+        for (String message : List.of(
+                "{\"posted_by\":1,\"message_text\":\"older message\",\"time_posted_epoch\":1669947000}",
+                "{\"posted_by\":1,\"message_text\":\"newer message\",\"time_posted_epoch\":1669948000}")){
+            HttpRequest postRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString(message))
+                    .header("Content-Type", "application/json")
+                    .build();
+            Assert.assertEquals(200, webClient.send(postRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        }
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(3, 1, "newer message", 1669948000));
+        expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+        expectedResult.add(new Message(2, 1, "older message", 1669947000));
+        for (String stream : List.of("false", "true")){
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/accounts/1/messages?stream=" + stream))
+                    .build();
+            HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+            Assert.assertEquals(200, response.statusCode());
+            List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+            Assert.assertEquals(expectedResult, actualResult);
+        }
+    }
 }
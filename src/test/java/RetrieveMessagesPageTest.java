@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveMessagesPageTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, add four more messages, restart the Javalin app, and create a new
+     * webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        addMessages();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages?limit=2, then following the X-Next-Cursor header
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the five messages in pages of two, ordered by time_posted_epoch then message_id
+     *  X-Next-Cursor: present on every page but the last
+     */
+    @Test
+    public void getMessagesPagesFollowCursor() throws IOException, InterruptedException {
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+        expectedResult.add(new Message(2, 1, "test message 2", 1669947800));
+        expectedResult.add(new Message(3, 1, "test message 3", 1669947800));
+        expectedResult.add(new Message(4, 1, "test message 4", 1669947900));
+        expectedResult.add(new Message(5, 1, "test message 5", 1669948000));
+
+        List<Message> actualResult = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            String uri = "http://localhost:8080/messages?limit=2" + (cursor == null ? "" : "&after=" + cursor);
+            HttpRequest request = HttpRequest.newBuilder().uri(URI.create(uri)).build();
+            HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(200, response.statusCode());
+
+            List<Message> page = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+            Assert.assertTrue(page.size() <= 2);
+            actualResult.addAll(page);
+            cursor = response.headers().firstValue("X-Next-Cursor").orElse(null);
+            pages++;
+        } while (cursor != null);
+
+        Assert.assertEquals(3, pages);
+        Assert.assertEquals(expectedResult, actualResult);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?since=1669947800&until=1669948000
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: only the messages posted inside the window
+     */
+    @Test
+    public void getMessagesInTimeWindow() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?since=1669947800&until=1669948000"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertFalse(response.headers().firstValue("X-Next-Cursor").isPresent());
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(2, 1, "test message 2", 1669947800));
+        expectedResult.add(new Message(3, 1, "test message 3", 1669947800));
+        expectedResult.add(new Message(4, 1, "test message 4", 1669947900));
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?limit=0
+     *
+     * Expected Response:
+     *  Status Code: 400
+     *  Response Body:
+     */
+    @Test
+    public void getMessagesInvalidLimit() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?limit=0"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(400, response.statusCode());
+        Assert.assertEquals("", response.body());
+    }
+
+    private void addMessages(){
+        try (Connection conn = ConnectionUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "insert into message (posted_by, message_text, time_posted_epoch) values (1, ?, ?)")) {
+            long[] times = {1669947800, 1669947800, 1669947900, 1669948000};
+            for (int i = 0; i < times.length; i++){
+                ps.setString(1, "test message " + (i + 2));
+                ps.setLong(2, times[i]);
+                ps.executeUpdate();
+            }
+        } catch (SQLException e) {
+                e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class SearchMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, add four more messages, restart the Javalin app (which indexes them),
+     * and create a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        addMessages();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search?q=apple%20banana
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the message holding both terms first, then the one repeating "apple", then the other
+     *  X-Total-Count: 3
+     */
+    @Test
+    public void searchRanksMessagesHoldingMoreTerms() throws IOException, InterruptedException {
+        HttpResponse<String> response = search("q=apple%20banana");
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("3", response.headers().firstValue("X-Total-Count").orElse(null));
+        Assert.assertEquals(List.of(3, 4, 2), ids(response));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search?q=APPLE&limit=1&offset=1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: only the second best match, found regardless of case
+     *  X-Total-Count: 3
+     */
+    @Test
+    public void searchPagesWithOffset() throws IOException, InterruptedException {
+        HttpResponse<String> response = search("q=APPLE&limit=1&offset=1");
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("3", response.headers().firstValue("X-Total-Count").orElse(null));
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(2, 1, "apple pie recipe", 1669947800));
+        Assert.assertEquals(expectedResult,
+                objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){}));
+    }
+
+    /**
+     * Updating message 5 to mention apples and deleting message 4, then sending an http request to
+     * GET localhost:8080/messages/search?q=apple
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the updated message is found and the deleted one is not
+     */
+    @Test
+    public void searchFollowsUpdatesAndDeletes() throws IOException, InterruptedException {
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/5"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"apple news\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/4"))
+                .DELETE()
+                .build();
+        Assert.assertEquals(200, webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> response = search("q=apple");
+
+        Assert.assertEquals(200, response.statusCode());
+        List<Integer> actualResult = ids(response);
+        Assert.assertEquals(3, actualResult.size());
+        Assert.assertTrue(actualResult.contains(5));
+        Assert.assertFalse(actualResult.contains(4));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search without q
+     *
+     * Expected Response:
+     *  Status Code: 400
+     *  Response Body:
+     */
+    @Test
+    public void searchWithoutQuery() throws IOException, InterruptedException {
+        HttpResponse<String> response = search("q=%20");
+
+        Assert.assertEquals(400, response.statusCode());
+        Assert.assertEquals("", response.body());
+    }
+
+    private HttpResponse<String> search(String query) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/search?" + query))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<Integer> ids(HttpResponse<String> response) throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        for (Message message : objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){})){
+            ids.add(message.getMessage_id());
+        }
+        return ids;
+    }
+
+    private void addMessages(){
+        try (Connection conn = ConnectionUtil.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "insert into message (posted_by, message_text, time_posted_epoch) values (1, ?, ?)")) {
+            String[] texts = {"apple pie recipe", "banana bread and apple", "Apple, apple, APPLE!", "nothing to see"};
+            for (int i = 0; i < texts.length; i++){
+                ps.setString(1, texts[i]);
+                ps.setLong(2, 1669947800 + i);
+                ps.executeUpdate();
+            }
+        } catch (SQLException e) {
+                e.printStackTrace();
+        }
+    }
+}
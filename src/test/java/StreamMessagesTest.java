@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.AccountDAO;
+import DAO.JdbcMessageDAO;
+import Model.Account;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class StreamMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?stream=true
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON represenation of a list of message objects
+     */
+    @Test
+    public void streamAllMessages() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?stream=true"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/2/messages?stream=true (account 2 has no messages)
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON represenation of an empty list
+     */
+    @Test
+    public void streamMessagesForUserNoMessages() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/2/messages?stream=true"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("[]", response.body());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts?stream=true
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON represenation of a list of account objects
+     */
+    @Test
+    public void streamAllAccounts() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts?stream=true"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+
+        List<Account> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Account>>(){});
+        Assert.assertEquals(1, actualResult.size());
+        Assert.assertEquals("testuser1", actualResult.get(0).getUsername());
+    }
+
+    /**
+     * A streamed query that fails is reported to the caller instead of looking like a list that simply ended, and
+     * sending an http request to GET localhost:8080/accounts?stream=true while it fails
+     *
+     * Expected Response:
+     *  Status Code: 500
+     *  Response Body: an array that is never closed, not an empty list
+     */
+    @Test
+    public void streamQueryFailureIsThrown() throws SQLException, IOException, InterruptedException {
+        try (Connection connection = ConnectionUtil.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE message");
+            statement.execute("DROP TABLE account");
+        }
+
+        Assert.assertThrows(IOException.class, () -> new JdbcMessageDAO().streamAllMessages(message -> {}));
+        Assert.assertThrows(IOException.class, () -> new JdbcMessageDAO().streamAllMessagesPostedBy(1, message -> {}));
+        Assert.assertThrows(IOException.class, () -> new AccountDAO().streamAllAccounts(account -> {}));
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts?stream=true"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(500, response.statusCode());
+        Assert.assertThrows(IOException.class,
+                () -> objectMapper.readValue(response.body(), new TypeReference<List<Account>>(){}));
+    }
+}
@@ -0,0 +1,107 @@
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.MessageDAO;
+import Model.Message;
+import Service.TimelineStore;
+import Util.BoundedCache;
+
+public class TimelineStoreTest {
+    MessageDAO messageDAO;
+    TimelineStore timelineStore;
+    BoundedCache<Integer, Message> messageCache;
+
+    /**
+     * Before every test, create a TimelineStore keeping at most three ids per account on top of a mock MessageDAO.
+     */
+    @Before
+    public void setUp() {
+        messageDAO = mock(MessageDAO.class);
+        messageCache = new BoundedCache<>(100, 60000);
+        timelineStore = new TimelineStore(messageDAO, 100, 3, 60000, messageCache);
+    }
+
+    /**
+     * A timeline is loaded once, then kept current by add and remove without going back to the DAO.
+     */
+    @Test
+    public void timelineIsLoadedOnceAndKeptCurrent() {
+        when(messageDAO.getMessagesPostedByPage(1, 0, 4)).thenReturn(List.of(
+                new Message(2, 1, "test message 2", 1669947800),
+                new Message(1, 1, "test message 1", 1669947792)));
+
+        Assert.assertArrayEquals(new int[]{2, 1}, timelineStore.getAll(1));
+        Assert.assertEquals(2, messageCache.size());
+
+        timelineStore.add(new Message(3, 1, "test message 3", 1669947900));
+        Assert.assertArrayEquals(new int[]{3, 2, 1}, timelineStore.getAll(1));
+
+        timelineStore.remove(new Message(2, 1, "test message 2", 1669947800));
+        Assert.assertArrayEquals(new int[]{3, 1}, timelineStore.getAll(1));
+        Assert.assertArrayEquals(new int[]{1}, timelineStore.getPage(1, 1, 10));
+
+        verify(messageDAO, times(1)).getMessagesPostedByPage(1, 0, 4);
+    }
+
+    /**
+     * An account with more messages than a timeline keeps only has its newest pages served from memory.
+     */
+    @Test
+    public void longTimelineLeavesOlderPagesToTheDatabase() {
+        when(messageDAO.getMessagesPostedByPage(1, 0, 4)).thenReturn(List.of(
+                new Message(4, 1, "test message 4", 1669948000),
+                new Message(3, 1, "test message 3", 1669947900),
+                new Message(2, 1, "test message 2", 1669947800),
+                new Message(1, 1, "test message 1", 1669947792)));
+
+        Assert.assertNull(timelineStore.getAll(1));
+        Assert.assertArrayEquals(new int[]{4, 3}, timelineStore.getPage(1, 0, 2));
+        Assert.assertNull(timelineStore.getPage(1, 2, 2));
+
+        //a new message pushes the oldest kept id out
+        timelineStore.add(new Message(5, 1, "test message 5", 1669948100));
+        Assert.assertArrayEquals(new int[]{5, 4, 3}, timelineStore.getPage(1, 0, 3));
+    }
+
+    /**
+     * Adding a message to an account nobody has read leaves it cold, so the next read loads it from the DAO.
+     */
+    @Test
+    public void addToColdAccountDoesNotLoadIt() {
+        timelineStore.add(new Message(1, 2, "test message 1", 1669947792));
+        verify(messageDAO, times(0)).getMessagesPostedByPage(2, 0, 4);
+
+        when(messageDAO.getMessagesPostedByPage(2, 0, 4)).thenReturn(List.of(
+                new Message(1, 2, "test message 1", 1669947792)));
+        Assert.assertArrayEquals(new int[]{1}, timelineStore.getAll(2));
+    }
+
+    /**
+     * Messages read by a timeline load that overlaps an update or a delete are not put back in the message cache,
+     * since they may be older than what the update or delete left there.
+     */
+    @Test
+    public void loadOverlappingWritesDoesNotCacheOldMessages() {
+        Message updated = new Message(2, 1, "updated message", 1669947800);
+        when(messageDAO.getMessagesPostedByPage(1, 0, 4)).thenAnswer(invocation -> {
+            //the update and the delete land while the rows are being read
+            messageCache.put(2, updated);
+            messageCache.invalidate(1);
+            return List.of(
+                    new Message(2, 1, "test message 2", 1669947800),
+                    new Message(1, 1, "test message 1", 1669947792));
+        });
+
+        Assert.assertArrayEquals(new int[]{2, 1}, timelineStore.getAll(1));
+        Assert.assertEquals(updated, messageCache.getIfPresent(2));
+        Assert.assertNull(messageCache.getIfPresent(1));
+    }
+}
@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class TraceTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to PATCH localhost:8080/messages/1 with an X-Trace header, then to GET
+     * localhost:8080/admin/traces
+     *
+     * Expected Response:
+     *  Status Code: 200, with an X-Trace-Id header on the PATCH
+     *  Response Body: the PATCH's trace, its root span for the route with the service call, the SQL it ran and the
+     *  JSON it read and wrote nested inside
+     */
+    @Test
+    public void tracedRequestIsRecorded() throws IOException, InterruptedException {
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\" }"))
+                .header("Content-Type", "application/json")
+                .header("X-Trace", "1")
+                .build();
+        HttpResponse<String> patchResponse = webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, patchResponse.statusCode());
+        String traceId = patchResponse.headers().firstValue("X-Trace-Id").orElse(null);
+        Assert.assertNotNull(traceId);
+
+        HttpResponse<String> response = send("/admin/traces?limit=1");
+        Assert.assertEquals(200, response.statusCode());
+        JsonNode trace = objectMapper.readTree(response.body()).get(0);
+        Assert.assertEquals(traceId, trace.get("trace_id").asText());
+        Assert.assertEquals("PATCH /messages/{message_id}", trace.get("name").asText());
+
+        JsonNode spans = trace.get("spans");
+        Assert.assertEquals(-1, spans.get(0).get("parent").asInt());
+        Assert.assertEquals("200", spans.get(0).get("tags").get("status").asText());
+        Assert.assertTrue(hasSpan(spans, "json.read", 1));
+        Assert.assertTrue(hasSpan(spans, "MessageService.updateMessage", 1));
+        Assert.assertTrue(hasSpan(spans, "json.write", 1));
+
+        //the update reads the row back from the same statement, so it is the request's only query
+        int statements = 0;
+        for (JsonNode span : spans){
+            if (span.get("name").asText().startsWith("sql.")){
+                statements++;
+                Assert.assertTrue(span.get("depth").asInt() > 1);
+                Assert.assertTrue(span.get("tags").get("sql").asText().contains("(UPDATE message SET"));
+                Assert.assertEquals("1", span.get("tags").get("rows").asText());
+            }
+        }
+        Assert.assertEquals(1, statements);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/admin/traces?limit=oops
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void tracesInvalidLimit() throws IOException, InterruptedException {
+        Assert.assertEquals(400, send("/admin/traces?limit=oops").statusCode());
+    }
+
+    private boolean hasSpan(JsonNode spans, String name, int depth){
+        for (JsonNode span : spans){
+            if (span.get("name").asText().equals(name) && span.get("depth").asInt() == depth){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private HttpResponse<String> send(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class VirtualHandlerTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app with api.executionMode=VIRTUAL, and create a new
+     * webClient.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        String previous = System.setProperty("api.executionMode", "VIRTUAL");
+        try {
+            socialMediaController = new SocialMediaController();
+        }
+        finally {
+            if (previous == null){ System.clearProperty("api.executionMode"); }
+            else { System.setProperty("api.executionMode", previous); }
+        }
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * With every permit of the database gate taken, a handler that needs the database waits at the gate instead of
+     * in the connection pool, while one that does not, GET localhost:8080/metrics, still responds. Giving a
+     * connection back lets the waiting handler through.
+     *
+     * Expected Response:
+     *  Status Code: 200 for GET localhost:8080/accounts once a connection is returned
+     */
+    @Test
+    public void gateLimitsDatabaseConcurrency() throws Exception {
+        List<Connection> borrowed = new ArrayList<>();
+        try {
+            for (int i = 0; i < ConnectionUtil.getPool().getMaxSize(); i++){
+                borrowed.add(ConnectionUtil.getConnection());
+            }
+            CompletableFuture<HttpResponse<String>> accounts = webClient.sendAsync(request("/accounts"),
+                    HttpResponse.BodyHandlers.ofString());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!send("/metrics").body().contains("db_gate_waiting 1.0\n")){
+                Assert.assertTrue("the handler never reached the gate", System.nanoTime() < deadline);
+                Thread.sleep(50);
+            }
+            Assert.assertFalse(accounts.isDone());
+            Assert.assertEquals(0, ConnectionUtil.getPool().idleCount());
+
+            borrowed.remove(0).close();
+            Assert.assertEquals(200, accounts.get(5, TimeUnit.SECONDS).statusCode());
+        }
+        finally {
+            for (Connection connection : borrowed){
+                connection.close();
+            }
+        }
+    }
+
+    private HttpResponse<String> send(String path) throws IOException, InterruptedException {
+        return webClient.send(request(path), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpRequest request(String path){
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+    }
+}
@@ -0,0 +1,145 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import Controller.SocialMediaController;
+import Model.Account;
+import Model.Message;
+import Util.ConnectionUtil;
+import Util.WireFormat;
+import io.javalin.Javalin;
+
+public class WireFormatTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper cborMapper;
+    ObjectMapper smileMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and a CBOR and a
+     * Smile ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        cborMapper = new ObjectMapper(new CBORFactory());
+        smileMapper = new ObjectMapper(new SmileFactory());
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with a CBOR body, asking for CBOR back
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the new message in CBOR
+     */
+    @Test
+    public void postMessageCbor() throws IOException, InterruptedException {
+        byte[] body = cborMapper.writeValueAsBytes(new Message(1, "hello cbor", 1669947792));
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .header("Content-Type", "application/cbor")
+                .header("Accept", "application/cbor")
+                .build();
+        HttpResponse<byte[]> response = webClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("application/cbor", response.headers().firstValue("Content-Type").orElse(null));
+        Assert.assertEquals(new Message(2, 1, "hello cbor", 1669947792),
+                cborMapper.readValue(response.body(), Message.class));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/login with a Smile body and no Accept header
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the account in Smile, the format the request was sent in
+     */
+    @Test
+    public void loginSmile() throws IOException, InterruptedException {
+        byte[] body = smileMapper.writeValueAsBytes(new Account("testuser1", "password"));
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .header("Content-Type", "application/x-jackson-smile")
+                .build();
+        HttpResponse<byte[]> response = webClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals(new Account(1, "testuser1", "password"),
+                smileMapper.readValue(response.body(), Account.class));
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/accounts/1/messages in JSON and in CBOR, whole and streamed
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the account's message in each format, with a different ETag per format
+     */
+    @Test
+    public void listCbor() throws IOException, InterruptedException {
+        HttpResponse<byte[]> json = send("/accounts/1/messages", "application/json");
+        HttpResponse<byte[]> cbor = send("/accounts/1/messages", "application/cbor");
+        HttpResponse<byte[]> streamed = send("/accounts/1/messages?stream=true", "application/cbor");
+
+        Message expected = new Message(1, 1, "test message 1", 1669947792);
+        Assert.assertEquals(List.of(expected), cborMapper.readValue(cbor.body(), new TypeReference<List<Message>>(){}));
+        Assert.assertEquals(List.of(expected),
+                cborMapper.readValue(streamed.body(), new TypeReference<List<Message>>(){}));
+        Assert.assertNotEquals(json.headers().firstValue("ETag").orElse(null),
+                cbor.headers().firstValue("ETag").orElse(null));
+        Assert.assertTrue(json.headers().firstValue("Vary").orElse("").contains("Accept"));
+    }
+
+    /**
+     * The Accept header picks the format by q-value; wildcards and unknown types fall back.
+     */
+    @Test
+    public void negotiate() {
+        Assert.assertEquals(WireFormat.CBOR, WireFormat.negotiate("application/cbor", WireFormat.JSON));
+        Assert.assertEquals(WireFormat.SMILE, WireFormat.negotiate(
+                "application/json;q=0.5, application/x-jackson-smile", WireFormat.JSON));
+        Assert.assertEquals(WireFormat.CBOR, WireFormat.negotiate("application/cbor, */*;q=0.1", WireFormat.JSON));
+        Assert.assertEquals(WireFormat.SMILE, WireFormat.negotiate("*/*", WireFormat.SMILE));
+        Assert.assertEquals(WireFormat.JSON, WireFormat.negotiate("text/html", WireFormat.JSON));
+        Assert.assertEquals(WireFormat.JSON, WireFormat.negotiate(null, WireFormat.JSON));
+        Assert.assertEquals(WireFormat.CBOR, WireFormat.fromContentType("application/cbor; charset=binary"));
+        Assert.assertEquals(WireFormat.JSON, WireFormat.fromContentType("text/plain"));
+    }
+
+    private HttpResponse<byte[]> send(String path, String accept) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .header("Accept", accept)
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
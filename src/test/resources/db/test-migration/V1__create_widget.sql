@@ -0,0 +1,4 @@
+create table if not exists widget (
+    widget_id int primary key auto_increment,
+    name varchar(255)
+);
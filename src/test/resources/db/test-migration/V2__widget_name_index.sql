@@ -0,0 +1 @@
+create index if not exists widget_name_idx on widget (name);